@@ -118,6 +118,18 @@ public class AlternatingRoad extends Road{
         super.location2 = location2;
     }
 
+    /**
+     * Initialize a new non-terminated alternating road with given ID, first and second location, speed limit and roadspeed,
+     * possibly as part of a batch of roads whose IDs and adjoining roads are registered all at once.
+     *
+     * @see Road#Road(String, Location, Location, int, float, float, boolean)
+     */
+    AlternatingRoad(String id, Location location1, Location location2, int length, float speedlimit, float roadSpeed, boolean isDeferred) {
+        super(id, location1, location2, length, speedlimit, roadSpeed, isDeferred);
+        startLocation = location1;
+        endLocation = location2;
+    }
+
     /**
      * If the road is traveling in the direction of endpoint two does nothing, else runs the method from Road.
      * @param delay The new delay time for the road going towards endpoint one
@@ -241,6 +253,26 @@ public class AlternatingRoad extends Road{
   	}
 
 
+    /**
+     * Checks whether the road is currently travelling in the direction of endpoint one.
+     * @return True if the road is not travelling in the direction of endpoint two.
+     *  |   result == !directionOfRoad
+     */
+    @Override
+    public boolean canTravelTowardsEndPointOne() {
+        return !directionOfRoad;
+    }
+
+    /**
+     * Checks whether the road is currently travelling in the direction of endpoint two.
+     * @return True if the road is travelling in the direction of endpoint two.
+     *  |   result == directionOfRoad
+     */
+    @Override
+    public boolean canTravelTowardsEndPointTwo() {
+        return directionOfRoad;
+    }
+
     /**
 	 * Get all valid start locations for this road
 	 * For an alternating road, this returns the start location, which is updated by changing the direction
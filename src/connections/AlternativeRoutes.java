@@ -0,0 +1,340 @@
+package connections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A class of sets of alternative routes between two locations, holding the fastest route and a number of
+ * meaningfully different routes that are not much slower, together with how much of the fastest route each of
+ * them shares.
+ *
+ * Alternatives are found with the plateau method. One search grows a tree of fastest routes from the start
+ * location, another grows a tree of fastest routes towards the end location, both up to the largest travel time
+ * allowed for an alternative. A plateau is a chain of roads lying on both trees; the route from the start location
+ * to the plateau, over the plateau and on to the end location is a route that is locally the fastest. Long plateaus
+ * give good alternatives, and all of them are read from the same two trees, so finding several alternatives costs
+ * about as much as two queries.
+ *
+ * @invar The first route is the fastest route, and all routes are ordered by travel time.
+ * 		| for each I in 1..getRouteCount()-1:
+ * 		|	getTravelTimes()[I-1] <= getTravelTimes()[I]
+ * @invar The overlap of each route lies between zero and one, and that of the fastest route is one.
+ * 		| for each I in 0..getRouteCount()-1:
+ * 		|	0 <= getOverlaps()[I] && getOverlaps()[I] <= 1
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class AlternativeRoutes {
+
+	/**
+	 * The largest ratio between the travel time of an alternative and that of the fastest route used by default.
+	 */
+	public static final double DEFAULT_MAX_STRETCH = 1.25;
+
+	/**
+	 * The largest fraction of its length that an alternative may share with another route by default.
+	 */
+	public static final double DEFAULT_MAX_OVERLAP = 0.8;
+
+	/**
+	 * The search states of each thread growing the trees from the start and towards the end location.
+	 */
+	private static final ThreadLocal<SearchSpace[]> searches =
+			ThreadLocal.withInitial(() -> new SearchSpace[] { new SearchSpace(), new SearchSpace() });
+
+	/**
+	 * The routes of this set, ordered by travel time.
+	 */
+	private final Route[] routes;
+
+	/**
+	 * The travel time in seconds of each route.
+	 */
+	private final float[] travelTimes;
+
+	/**
+	 * The fraction of the length of the fastest route that each route shares with it.
+	 */
+	private final float[] overlaps;
+
+	/**
+	 * The number of locations settled by both searches.
+	 */
+	private final int settledCount;
+
+	/**
+	 * Initialize a new set of alternative routes with the given routes, travel times and overlaps.
+	 */
+	private AlternativeRoutes(Route[] routes, float[] travelTimes, float[] overlaps, int settledCount) {
+		this.routes = routes;
+		this.travelTimes = travelTimes;
+		this.overlaps = overlaps;
+		this.settledCount = settledCount;
+	}
+
+	/**
+	 * Returns up to the given number of routes from the given start location to the given end location, using the
+	 * default largest stretch and overlap.
+	 *
+	 * @param start The location at which the routes start.
+	 * @param end   The location at which the routes end.
+	 * @param count The largest number of routes to return, including the fastest route.
+	 * @return The alternative routes between the given locations.
+	 * 		| result == calculate(start, end, count, DEFAULT_MAX_STRETCH, DEFAULT_MAX_OVERLAP)
+	 * @throws NullPointerException
+	 * 		One of the given locations is null
+	 * 		| start == null || end == null
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated, or the given count is not positive
+	 * 		| start.isTerminated() || end.isTerminated() || count <= 0
+	 */
+	public static AlternativeRoutes calculate(Location start, Location end, int count) throws NullPointerException, IllegalArgumentException {
+		return calculate(start, end, count, DEFAULT_MAX_STRETCH, DEFAULT_MAX_OVERLAP);
+	}
+
+	/**
+	 * Returns up to the given number of routes from the given start location to the given end location. The first
+	 * route is the fastest route. Each other route is at most the given stretch slower than the fastest route, visits
+	 * no location twice, and shares at most the given fraction of its length with each route returned before it.
+	 *
+	 * @param start      The location at which the routes start.
+	 * @param end        The location at which the routes end.
+	 * @param count      The largest number of routes to return, including the fastest route.
+	 * @param maxStretch The largest ratio between the travel time of an alternative and that of the fastest route.
+	 * @param maxOverlap The largest fraction of its length that an alternative may share with another route.
+	 * @return The alternative routes between the given locations, which are none if the end location cannot be
+	 * 			reached and at most the given count otherwise.
+	 * 		| result.getRouteCount() <= count
+	 * @throws NullPointerException
+	 * 		One of the given locations is null
+	 * 		| start == null || end == null
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated, the given count is not positive, the given stretch is
+	 * 		smaller than one or the given overlap does not lie between zero and one
+	 * 		| start.isTerminated() || end.isTerminated() || count <= 0 || !(maxStretch >= 1)
+	 * 		|	|| !(0 <= maxOverlap && maxOverlap <= 1)
+	 */
+	public static AlternativeRoutes calculate(Location start, Location end, int count, double maxStretch, double maxOverlap)
+			throws NullPointerException, IllegalArgumentException {
+		if (start == null || end == null)
+			throw new NullPointerException();
+		if (start.isTerminated() || end.isTerminated() || count <= 0 || !(maxStretch >= 1)
+				|| !(0 <= maxOverlap && maxOverlap <= 1))
+			throw new IllegalArgumentException();
+		SearchSpace forward = searches.get()[0];
+		SearchSpace backward = searches.get()[1];
+		forward.reset();
+		backward.reset();
+		double best = grow(forward, start, end, true, Double.POSITIVE_INFINITY);
+		if (best == Double.POSITIVE_INFINITY)
+			return new AlternativeRoutes(new Route[0], new float[0], new float[0], forward.settled);
+		double limit = best * maxStretch;
+		grow(forward, start, null, true, limit);
+		grow(backward, end, null, false, limit);
+
+		// Collect the plateaus within the limit, longest first.
+		List<double[]> plateaus = new ArrayList<>();
+		for (int u = 0; u < forward.getSize(); u++) {
+			if (forward.distance[u] > limit || nextOnPlateau(forward, backward, u) < 0)
+				continue;
+			if (forward.parent[u] >= 0 && nextOnPlateau(forward, backward, forward.parent[u]) == u)
+				continue;
+			double total = forward.distance[u] + backward.distance[backward.find(forward.locations[u])];
+			if (total > limit)
+				continue;
+			int last = u;
+			for (int next = nextOnPlateau(forward, backward, u); next >= 0; next = nextOnPlateau(forward, backward, next))
+				last = next;
+			plateaus.add(new double[] { forward.distance[last] - forward.distance[u], total, u });
+		}
+		plateaus.sort((first, second) -> Double.compare(second[0], first[0]));
+
+		// Take the routes over the longest plateaus that do not overlap too much with the routes taken before.
+		List<Road[]> chosen = new ArrayList<>();
+		List<Double> chosenTimes = new ArrayList<>();
+		Road[] fastest = routeVia(forward, backward, forward.find(end));
+		chosen.add(fastest);
+		chosenTimes.add(best);
+		for (double[] plateau : plateaus) {
+			if (chosen.size() >= count)
+				break;
+			Road[] roads = routeVia(forward, backward, (int) plateau[2]);
+			if (Arrays.equals(roads, fastest) || !isSimple(start, roads))
+				continue;
+			boolean isDistinct = true;
+			for (Road[] other : chosen) {
+				if (sharedLength(roads, other) > maxOverlap * lengthOf(roads)) {
+					isDistinct = false;
+					break;
+				}
+			}
+			if (isDistinct) {
+				chosen.add(roads);
+				chosenTimes.add(plateau[1]);
+			}
+		}
+
+		// Order the routes by travel time and compare each of them with the fastest route.
+		Integer[] order = new Integer[chosen.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, (first, second) -> Double.compare(chosenTimes.get(first), chosenTimes.get(second)));
+		Route[] routes = new Route[order.length];
+		float[] travelTimes = new float[order.length];
+		float[] overlaps = new float[order.length];
+		double fastestLength = lengthOf(fastest);
+		for (int i = 0; i < order.length; i++) {
+			Road[] roads = chosen.get(order[i]);
+			routes[i] = new Route(start, (Object[]) roads);
+			travelTimes[i] = (float) (double) chosenTimes.get(order[i]);
+			overlaps[i] = fastestLength == 0 ? 1 : (float) (sharedLength(roads, fastest) / fastestLength);
+		}
+		return new AlternativeRoutes(routes, travelTimes, overlaps, forward.settled + backward.settled);
+	}
+
+	/**
+	 * Grows the given search tree from the given origin, forward over the roads leaving each location or backward over
+	 * the roads arriving at it, until the given goal is settled or every location within the given limit is settled.
+	 * A tree that is grown again continues where it stopped.
+	 *
+	 * @return The travel time to the given goal, or infinity if there is no goal or it cannot be reached.
+	 */
+	private static double grow(SearchSpace space, Location origin, Location goal, boolean isForward, double limit) {
+		if (space.getSize() == 0) {
+			int index = space.indexOf(origin);
+			space.distance[index] = 0;
+			space.heap.insertOrDecrease(index, 0);
+		}
+		while (!space.heap.isEmpty() && space.heap.peekKey() <= limit) {
+			int u = space.heap.peek();
+			Location location = space.locations[u];
+			if (location == goal)
+				return space.distance[u];
+			space.heap.poll();
+			space.settled++;
+			double distance = space.distance[u];
+			for (Road road : location.getAdjoiningRoadsView()) {
+				float time = isForward ? road.calculateTravelTimeFrom(location) : road.calculateTravelTimeTo(location);
+				if (time == Float.POSITIVE_INFINITY)
+					continue;
+				int v = space.indexOf(road.getOtherEndPoint(location));
+				double newDistance = distance + time;
+				if (newDistance < space.distance[v]) {
+					space.distance[v] = newDistance;
+					space.parent[v] = u;
+					space.parentRoad[v] = road;
+					space.heap.insertOrDecrease(v, newDistance);
+				}
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the forward search index of the location following the given one on a plateau, or -1 if the road
+	 * towards the end location on the backward tree does not lie on the forward tree.
+	 */
+	private static int nextOnPlateau(SearchSpace forward, SearchSpace backward, int u) {
+		int b = backward.find(forward.locations[u]);
+		if (b < 0 || backward.parent[b] < 0)
+			return -1;
+		int next = forward.find(backward.locations[backward.parent[b]]);
+		if (next < 0 || forward.parent[next] != u || forward.parentRoad[next] != backward.parentRoad[b])
+			return -1;
+		return next;
+	}
+
+	/**
+	 * Returns the roads of the route over the forward tree to the location at the given forward search index, and
+	 * from there over the backward tree to the end location.
+	 */
+	private static Road[] routeVia(SearchSpace forward, SearchSpace backward, int u) {
+		Road[] roads = forward.pathTo(u);
+		Road[] backwardRoads = backward.pathTo(backward.find(forward.locations[u]));
+		int length = roads.length;
+		roads = Arrays.copyOf(roads, length + backwardRoads.length);
+		for (int i = 0; i < backwardRoads.length; i++)
+			roads[length + i] = backwardRoads[backwardRoads.length - 1 - i];
+		return roads;
+	}
+
+	/**
+	 * Checks whether the route from the given start location over the given roads visits no location twice.
+	 */
+	private static boolean isSimple(Location start, Road[] roads) {
+		Set<Location> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		visited.add(start);
+		Location location = start;
+		for (Road road : roads) {
+			location = road.getOtherEndPoint(location);
+			if (!visited.add(location))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the total length in meters of the given roads.
+	 */
+	private static double lengthOf(Road[] roads) {
+		double length = 0;
+		for (Road road : roads)
+			length += road.getLength();
+		return length;
+	}
+
+	/**
+	 * Returns the total length in meters of the roads that lie on both given routes.
+	 */
+	private static double sharedLength(Road[] roads, Road[] other) {
+		Set<Road> otherRoads = Collections.newSetFromMap(new IdentityHashMap<>());
+		otherRoads.addAll(Arrays.asList(other));
+		double length = 0;
+		for (Road road : roads) {
+			if (otherRoads.contains(road))
+				length += road.getLength();
+		}
+		return length;
+	}
+
+	/**
+	 * Returns the number of routes in this set.
+	 */
+	public int getRouteCount() {
+		return routes.length;
+	}
+
+	/**
+	 * Returns the routes of this set, fastest first.
+	 */
+	public Route[] getRoutes() {
+		return routes.clone();
+	}
+
+	/**
+	 * Returns the travel time in seconds of each route, in the order of the routes.
+	 */
+	public float[] getTravelTimes() {
+		return travelTimes.clone();
+	}
+
+	/**
+	 * Returns the fraction of the length of the fastest route that each route shares with it, in the order of the
+	 * routes.
+	 */
+	public float[] getOverlaps() {
+		return overlaps.clone();
+	}
+
+	/**
+	 * Returns the number of locations settled while searching these routes.
+	 */
+	public int getSettledCount() {
+		return settledCount;
+	}
+}
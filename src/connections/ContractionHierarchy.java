@@ -0,0 +1,974 @@
+package connections;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A class of contraction hierarchies over a network of locations, answering fastest route queries with a
+ * bidirectional search that only ever moves upward in the hierarchy.
+ *
+ * A hierarchy is built by contracting the locations one by one in order of importance. Contracting a location
+ * removes it from the remaining network and inserts a shortcut between two of its neighbours whenever the
+ * route through the contracted location is the only fastest route between them. Each shortcut remembers the
+ * two arcs it replaces, so routes over shortcuts are unpacked back into the original roads. Locations that do
+ * not share a road are contracted in parallel.
+ *
+ * A hierarchy also computes tables of travel times between many start and many end locations at once. Each end
+ * location is searched backward once, leaving its travel time in a bucket at every location it reaches upward, and
+ * each start location is searched forward once, scanning the buckets of the locations it reaches. The rows of a table
+ * are computed in parallel.
+ *
+ * The travel times of the hierarchy are those of the roads at the time it was built. A hierarchy can be saved
+ * and loaded again, to avoid contracting the same network at every start.
+ *
+ * @invar Each location of the hierarchy has a distinct rank.
+ * 		| for each I,J in 0..getLocationCount()-1:
+ * 		|	I != J implies rank[I] != rank[J]
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class ContractionHierarchy {
+
+	/**
+	 * The number identifying the file format of saved hierarchies.
+	 */
+	private static final int FILE_MAGIC = 0x43484E31;
+
+	/**
+	 * The version of the file format of saved hierarchies.
+	 */
+	private static final int FILE_VERSION = 2;
+
+	/**
+	 * The number of elements of an array allocated before any of them is read, so a corrupt length in a file
+	 * cannot claim more memory than about twice the size of the file.
+	 */
+	private static final int READ_CHUNK = 4096;
+
+	/**
+	 * The maximum number of locations a witness search settles before assuming no witness exists.
+	 */
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	/**
+	 * The locations of this hierarchy, in the order in which a Hilbert curve through their coordinates visits them.
+	 */
+	private final Location[] locations;
+
+	/**
+	 * Map from each location of this hierarchy to its index.
+	 */
+	private final IdentityHashMap<Location, Integer> indices;
+
+	/**
+	 * The roads of this hierarchy.
+	 */
+	private final Road[] roads;
+
+	/**
+	 * The position of each location in the contraction order.
+	 */
+	private final int[] rank;
+
+	/**
+	 * The index of the road each arc travels, or -1 if the arc is a shortcut.
+	 */
+	private final int[] arcRoad;
+
+	/**
+	 * The first arc replaced by each shortcut, or -1 if the arc is a road.
+	 */
+	private final int[] arcFirst;
+
+	/**
+	 * The second arc replaced by each shortcut, or -1 if the arc is a road.
+	 */
+	private final int[] arcSecond;
+
+	/**
+	 * The travel time in seconds of each arc.
+	 */
+	private final double[] arcWeight;
+
+	/**
+	 * The upward arcs leaving each location, in compressed sparse row form.
+	 */
+	private final int[] upFirst, upHead, upArc;
+
+	/**
+	 * The upward arcs arriving at each location, in compressed sparse row form, with the location at
+	 * which they start as head.
+	 */
+	private final int[] downFirst, downHead, downArc;
+
+	/**
+	 * The query state of each thread querying this hierarchy.
+	 */
+	private final ThreadLocal<UpwardSearch> searches = ThreadLocal.withInitial(this::newSearch);
+
+	/**
+	 * Initialize a new contraction hierarchy over the given locations and all roads between them, using the current
+	 * travel time of each road in each direction it can be travelled.
+	 *
+	 * @param locations The locations of the network.
+	 * @throws NullPointerException
+	 * 		The given collection is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated or given twice
+	 * 		| for some location in locations: location.isTerminated()
+	 */
+	public ContractionHierarchy(Collection<Location> locations) throws NullPointerException, IllegalArgumentException {
+		this.locations = HilbertCurve.sort(locations).toArray(new Location[0]);
+		this.indices = indexLocations(this.locations);
+		IdentityHashMap<Road, Integer> roadIndices = new IdentityHashMap<>();
+		List<Road> roadList = new ArrayList<>();
+		Contraction contraction = new Contraction(this.locations.length);
+		for (int u = 0; u < this.locations.length; u++) {
+			Location location = this.locations[u];
+			for (Road road : location.getAdjoiningRoadsView()) {
+				Integer v = indices.get(road.getOtherEndPoint(location));
+				if (v == null || v == u)
+					continue;
+				float time = road.calculateTravelTimeFrom(location);
+				if (time == Float.POSITIVE_INFINITY)
+					continue;
+				Integer roadIndex = roadIndices.get(road);
+				if (roadIndex == null) {
+					roadIndex = roadList.size();
+					roadIndices.put(road, roadIndex);
+					roadList.add(road);
+				}
+				contraction.addArc(u, v, time, roadIndex, -1, -1);
+			}
+		}
+		this.roads = roadList.toArray(new Road[0]);
+		contraction.contract();
+		this.rank = contraction.rank;
+		this.arcRoad = contraction.arcRoad.toArray();
+		this.arcFirst = contraction.arcFirst.toArray();
+		this.arcSecond = contraction.arcSecond.toArray();
+		this.arcWeight = Arrays.copyOf(contraction.arcWeight, arcRoad.length);
+		int n = this.locations.length;
+		this.upFirst = new int[n + 1];
+		this.downFirst = new int[n + 1];
+		int upCount = 0, downCount = 0;
+		for (int v = 0; v < n; v++) {
+			upCount += contraction.upArcs[v].size();
+			downCount += contraction.downArcs[v].size();
+		}
+		this.upHead = new int[upCount];
+		this.upArc = new int[upCount];
+		this.downHead = new int[downCount];
+		this.downArc = new int[downCount];
+		int up = 0, down = 0;
+		for (int v = 0; v < n; v++) {
+			upFirst[v] = up;
+			for (int i = 0; i < contraction.upArcs[v].size(); i++, up++) {
+				int arc = contraction.upArcs[v].get(i);
+				upHead[up] = contraction.arcTo.get(arc);
+				upArc[up] = arc;
+			}
+			downFirst[v] = down;
+			for (int i = 0; i < contraction.downArcs[v].size(); i++, down++) {
+				int arc = contraction.downArcs[v].get(i);
+				downHead[down] = contraction.arcFrom.get(arc);
+				downArc[down] = arc;
+			}
+		}
+		upFirst[n] = up;
+		downFirst[n] = down;
+	}
+
+	/**
+	 * Initialize a new contraction hierarchy from previously computed parts.
+	 */
+	private ContractionHierarchy(Location[] locations, Road[] roads, int[] rank, int[] arcRoad, int[] arcFirst,
+			int[] arcSecond, double[] arcWeight, int[] upFirst, int[] upHead, int[] upArc, int[] downFirst,
+			int[] downHead, int[] downArc) {
+		this.locations = locations;
+		this.indices = indexLocations(locations);
+		this.roads = roads;
+		this.rank = rank;
+		this.arcRoad = arcRoad;
+		this.arcFirst = arcFirst;
+		this.arcSecond = arcSecond;
+		this.arcWeight = arcWeight;
+		this.upFirst = upFirst;
+		this.upHead = upHead;
+		this.upArc = upArc;
+		this.downFirst = downFirst;
+		this.downHead = downHead;
+		this.downArc = downArc;
+	}
+
+	/**
+	 * Returns a map from each of the given locations to its index in the given array.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated or given twice
+	 */
+	private static IdentityHashMap<Location, Integer> indexLocations(Location[] locations) throws IllegalArgumentException {
+		IdentityHashMap<Location, Integer> indices = new IdentityHashMap<>();
+		for (int i = 0; i < locations.length; i++) {
+			if (locations[i].isTerminated() || indices.put(locations[i], i) != null)
+				throw new IllegalArgumentException();
+		}
+		return indices;
+	}
+
+	/**
+	 * Returns the number of locations in this hierarchy.
+	 */
+	public int getLocationCount() {
+		return locations.length;
+	}
+
+	/**
+	 * Returns the number of shortcuts inserted while contracting this hierarchy.
+	 */
+	public int getShortcutCount() {
+		int count = 0;
+		for (int road : arcRoad) {
+			if (road < 0)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the position of the given location in the contraction order of this hierarchy.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		The given location is not part of this hierarchy
+	 */
+	public int getRank(Location location) throws IllegalArgumentException {
+		return rank[indexOf(location)];
+	}
+
+	/**
+	 * Returns the index of the given location in this hierarchy.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		The given location is not part of this hierarchy
+	 * 		| !indices.containsKey(location)
+	 */
+	int indexOf(Location location) throws IllegalArgumentException {
+		Integer index = indices.get(location);
+		if (index == null)
+			throw new IllegalArgumentException();
+		return index;
+	}
+
+	/**
+	 * Returns the fastest route from the given start location to the given end location.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return A route from start to end with the smallest total travel time at the time this hierarchy was built,
+	 * 			or null if no such route exists.
+	 * 		| if (result != null)
+	 * 		|	result.getStartLocations()[0] == start && result.getEndLocation() == end
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is not part of this hierarchy
+	 */
+	public Route findFastestRoute(Location start, Location end) throws IllegalArgumentException {
+		UpwardSearch search = searches.get();
+		if (search.run(indexOf(start), indexOf(end)) == Double.POSITIVE_INFINITY)
+			return null;
+		IntList arcs = search.getArcs();
+		List<Road> route = new ArrayList<>();
+		for (int i = 0; i < arcs.size(); i++)
+			unpack(arcs.get(i), route);
+		return new Route(start, route.toArray());
+	}
+
+	/**
+	 * Returns the travel time in seconds of the fastest route from the given start location to the given end location.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return The total travel time of the fastest route at the time this hierarchy was built, or infinity if no
+	 * 			route exists.
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is not part of this hierarchy
+	 */
+	public float calculateFastestTravelTime(Location start, Location end) throws IllegalArgumentException {
+		return (float) searches.get().run(indexOf(start), indexOf(end));
+	}
+
+	/**
+	 * Returns the travel times in seconds of the fastest routes from each of the given start locations to each of the
+	 * given end locations.
+	 *
+	 * @param starts The locations at which the routes start.
+	 * @param ends   The locations at which the routes end.
+	 * @return A table with a row for each start location and a column for each end location, in the order in which
+	 * 			they are given, holding the travel time of the fastest route or infinity if no route exists.
+	 * 		| for each I in 0..starts.size()-1, J in 0..ends.size()-1:
+	 * 		|	result[I][J] == calculateFastestTravelTime(starts.get(I), ends.get(J))
+	 * @throws NullPointerException
+	 * 		One of the given lists is null
+	 * 		| starts == null || ends == null
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is not part of this hierarchy
+	 */
+	public float[][] calculateTravelTimeMatrix(List<Location> starts, List<Location> ends) throws NullPointerException, IllegalArgumentException {
+		int[] sources = new int[starts.size()];
+		for (int i = 0; i < sources.length; i++)
+			sources[i] = indexOf(starts.get(i));
+		int[] targets = new int[ends.size()];
+		for (int j = 0; j < targets.length; j++)
+			targets[j] = indexOf(ends.get(j));
+
+		// Search each end location backward, recording the locations it reaches.
+		int[][] reached = new int[targets.length][];
+		double[][] reachedDistance = new double[targets.length][];
+		IntStream.range(0, targets.length).parallel().forEach(j -> {
+			UpwardSearch search = searches.get();
+			search.explore(targets[j], false);
+			reached[j] = search.touched.toArray();
+			reachedDistance[j] = new double[reached[j].length];
+			for (int i = 0; i < reached[j].length; i++)
+				reachedDistance[j][i] = search.backwardDistance[reached[j][i]];
+		});
+
+		// Gather the travel times to the end locations in a bucket at each reached location.
+		int n = getLocationCount();
+		int[] bucketFirst = new int[n + 1];
+		for (int[] nodes : reached) {
+			for (int v : nodes)
+				bucketFirst[v + 1]++;
+		}
+		for (int v = 0; v < n; v++)
+			bucketFirst[v + 1] += bucketFirst[v];
+		int[] bucketTarget = new int[bucketFirst[n]];
+		double[] bucketDistance = new double[bucketFirst[n]];
+		int[] fill = Arrays.copyOf(bucketFirst, n);
+		for (int j = 0; j < targets.length; j++) {
+			for (int i = 0; i < reached[j].length; i++) {
+				int position = fill[reached[j][i]]++;
+				bucketTarget[position] = j;
+				bucketDistance[position] = reachedDistance[j][i];
+			}
+		}
+
+		// Search each start location forward, combining its travel times with the buckets it reaches.
+		float[][] matrix = new float[sources.length][targets.length];
+		IntStream.range(0, sources.length).parallel().forEach(i -> {
+			UpwardSearch search = searches.get();
+			search.explore(sources[i], true);
+			double[] best = new double[targets.length];
+			Arrays.fill(best, Double.POSITIVE_INFINITY);
+			for (int k = 0; k < search.touched.size(); k++) {
+				int v = search.touched.get(k);
+				double distance = search.forwardDistance[v];
+				for (int b = bucketFirst[v]; b < bucketFirst[v + 1]; b++) {
+					if (distance + bucketDistance[b] < best[bucketTarget[b]])
+						best[bucketTarget[b]] = distance + bucketDistance[b];
+				}
+			}
+			for (int j = 0; j < targets.length; j++)
+				matrix[i][j] = (float) best[j];
+		});
+		return matrix;
+	}
+
+	/**
+	 * Returns a new query state for this hierarchy.
+	 */
+	private UpwardSearch newSearch() {
+		return new UpwardSearch(getLocationCount(), new UpwardSearch.Arcs(upFirst, upHead, upArc),
+				new UpwardSearch.Arcs(downFirst, downHead, downArc), arcWeight);
+	}
+
+	/**
+	 * Returns the number of locations settled by the last query of the current thread, in both directions.
+	 */
+	public int getSettledCount() {
+		return searches.get().settled;
+	}
+
+	/**
+	 * Appends the roads travelled by the given arc to the given list, unpacking shortcuts into the arcs they replace.
+	 */
+	private void unpack(int arc, List<Road> route) {
+		IntList stack = new IntList();
+		stack.add(arc);
+		while (stack.size() > 0) {
+			int top = stack.removeLast();
+			if (arcRoad[top] >= 0) {
+				route.add(roads[arcRoad[top]]);
+			} else {
+				stack.add(arcSecond[top]);
+				stack.add(arcFirst[top]);
+			}
+		}
+	}
+
+	/**
+	 * Saves this hierarchy to the given stream. Roads are saved by the packed form of their ID, locations by their position in the
+	 * Hilbert order of the collection this hierarchy was built from.
+	 *
+	 * @param out The stream to write to.
+	 * @throws IOException
+	 * 		The hierarchy could not be written to the given stream
+	 */
+	public void save(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(FILE_MAGIC);
+		data.writeInt(FILE_VERSION);
+		data.writeInt(locations.length);
+		data.writeInt(roads.length);
+		for (Road road : roads)
+			data.writeLong(road.getPackedID());
+		writeInts(data, rank);
+		writeInts(data, arcRoad);
+		writeInts(data, arcFirst);
+		writeInts(data, arcSecond);
+		writeInts(data, upFirst);
+		writeInts(data, upHead);
+		writeInts(data, upArc);
+		writeDoubles(data, weightsOf(upArc));
+		writeInts(data, downFirst);
+		writeInts(data, downHead);
+		writeInts(data, downArc);
+		writeDoubles(data, weightsOf(downArc));
+		data.flush();
+	}
+
+	/**
+	 * Loads a hierarchy saved by {@link #save(OutputStream)}.
+	 *
+	 * @param in The stream to read from.
+	 * @param locations The locations the hierarchy was built from, in the same order.
+	 * @throws IOException
+	 * 		The hierarchy could not be read from the given stream
+	 * @throws IllegalArgumentException
+	 * 		The stream does not contain a saved hierarchy, the given locations do not match the saved hierarchy, or
+	 * 		the saved arrays do not fit together: an array has the wrong length, the ranks are not a permutation of the
+	 * 		locations, or an arc refers to a road, arc or location that does not exist
+	 */
+	public static ContractionHierarchy load(InputStream in, List<Location> locations) throws IOException, IllegalArgumentException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != FILE_MAGIC || data.readInt() != FILE_VERSION)
+			throw new IllegalArgumentException();
+		if (data.readInt() != locations.size())
+			throw new IllegalArgumentException();
+		LongHashMap<Road> roadsByID = new LongHashMap<>();
+		for (Location location : locations) {
+			for (Road road : location.getAdjoiningRoadsView())
+				roadsByID.put(road.getPackedID(), road);
+		}
+		int roadCount = readLength(data);
+		if (roadCount > roadsByID.size())
+			throw new IllegalArgumentException();
+		Road[] roads = new Road[roadCount];
+		for (int i = 0; i < roads.length; i++) {
+			roads[i] = roadsByID.get(data.readLong());
+			if (roads[i] == null)
+				throw new IllegalArgumentException();
+		}
+		int[] rank = readInts(data), arcRoad = readInts(data), arcFirst = readInts(data), arcSecond = readInts(data);
+		int[] upFirst = readInts(data), upHead = readInts(data), upArc = readInts(data);
+		double[] upWeight = readDoubles(data);
+		int[] downFirst = readInts(data), downHead = readInts(data), downArc = readInts(data);
+		double[] downWeight = readDoubles(data);
+		int n = locations.size(), arcCount = arcRoad.length;
+		checkRank(rank, n);
+		if (arcFirst.length != arcCount || arcSecond.length != arcCount)
+			throw new IllegalArgumentException();
+		for (int arc = 0; arc < arcCount; arc++) {
+			// A shortcut replaces arcs that existed before it, so unpacking a shortcut always ends.
+			if (arcRoad[arc] >= 0 ? arcRoad[arc] >= roads.length || arcFirst[arc] != -1 || arcSecond[arc] != -1
+					: arcRoad[arc] != -1 || !isBetween(arcFirst[arc], 0, arc) || !isBetween(arcSecond[arc], 0, arc))
+				throw new IllegalArgumentException();
+		}
+		checkArcs(upFirst, upHead, upArc, upWeight, n, arcCount);
+		checkArcs(downFirst, downHead, downArc, downWeight, n, arcCount);
+		// Each arc is saved with its travel time in the list of the location it leaves and of the one it arrives at.
+		double[] arcWeight = new double[arcRoad.length];
+		for (int i = 0; i < upArc.length; i++)
+			arcWeight[upArc[i]] = upWeight[i];
+		for (int i = 0; i < downArc.length; i++)
+			arcWeight[downArc[i]] = downWeight[i];
+		return new ContractionHierarchy(HilbertCurve.sort(locations).toArray(new Location[0]), roads, rank, arcRoad,
+				arcFirst, arcSecond, arcWeight, upFirst, upHead, upArc, downFirst, downHead, downArc);
+	}
+
+	/**
+	 * Checks that the given ranks are a permutation of the given number of locations.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		The given ranks are not such a permutation
+	 */
+	private static void checkRank(int[] rank, int n) throws IllegalArgumentException {
+		if (rank.length != n)
+			throw new IllegalArgumentException();
+		boolean[] isTaken = new boolean[n];
+		for (int r : rank) {
+			if (!isBetween(r, 0, n) || isTaken[r])
+				throw new IllegalArgumentException();
+			isTaken[r] = true;
+		}
+	}
+
+	/**
+	 * Checks that the given arrays are the compressed sparse rows of arcs between the given number of locations,
+	 * with a valid arc and a travel time for each position.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		The given arrays are not such rows
+	 */
+	private static void checkArcs(int[] first, int[] head, int[] arc, double[] weight, int n, int arcCount)
+			throws IllegalArgumentException {
+		if (first.length != n + 1 || first[0] != 0 || first[n] != head.length || arc.length != head.length
+				|| weight.length != head.length)
+			throw new IllegalArgumentException();
+		for (int v = 0; v < n; v++) {
+			if (first[v] > first[v + 1])
+				throw new IllegalArgumentException();
+		}
+		for (int i = 0; i < head.length; i++) {
+			if (!isBetween(head[i], 0, n) || !isBetween(arc[i], 0, arcCount) || !(weight[i] >= 0))
+				throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Returns whether the given value lies between the given lower bound and the given upper bound, excluding the
+	 * upper bound.
+	 */
+	private static boolean isBetween(int value, int from, int to) {
+		return value >= from && value < to;
+	}
+
+	/**
+	 * Returns the travel time of each of the given arcs.
+	 */
+	private double[] weightsOf(int[] arcs) {
+		double[] weights = new double[arcs.length];
+		for (int i = 0; i < arcs.length; i++)
+			weights[i] = arcWeight[arcs[i]];
+		return weights;
+	}
+
+	/**
+	 * Writes the length and the elements of the given array to the given stream.
+	 */
+	private static void writeInts(DataOutputStream data, int[] values) throws IOException {
+		data.writeInt(values.length);
+		for (int value : values)
+			data.writeInt(value);
+	}
+
+	/**
+	 * Writes the length and the elements of the given array to the given stream.
+	 */
+	private static void writeDoubles(DataOutputStream data, double[] values) throws IOException {
+		data.writeInt(values.length);
+		for (double value : values)
+			data.writeDouble(value);
+	}
+
+	/**
+	 * Reads the length of an array.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		The length read is negative
+	 */
+	private static int readLength(DataInputStream data) throws IOException, IllegalArgumentException {
+		int length = data.readInt();
+		if (length < 0)
+			throw new IllegalArgumentException();
+		return length;
+	}
+
+	/**
+	 * Reads an array written by {@link #writeInts(DataOutputStream, int[])}.
+	 */
+	private static int[] readInts(DataInputStream data) throws IOException, IllegalArgumentException {
+		int length = readLength(data);
+		int[] values = new int[Math.min(length, READ_CHUNK)];
+		for (int i = 0; i < length; i++) {
+			if (i == values.length)
+				values = Arrays.copyOf(values, (int) Math.min(length, 2L * i));
+			values[i] = data.readInt();
+		}
+		return values;
+	}
+
+	/**
+	 * Reads an array written by {@link #writeDoubles(DataOutputStream, double[])}.
+	 */
+	private static double[] readDoubles(DataInputStream data) throws IOException, IllegalArgumentException {
+		int length = readLength(data);
+		double[] values = new double[Math.min(length, READ_CHUNK)];
+		for (int i = 0; i < length; i++) {
+			if (i == values.length)
+				values = Arrays.copyOf(values, (int) Math.min(length, 2L * i));
+			values[i] = data.readDouble();
+		}
+		return values;
+	}
+
+	/**
+	 * A class of contraction states, holding the remaining network while the locations are contracted.
+	 */
+	private static class Contraction {
+
+		/**
+		 * The number of locations being contracted.
+		 */
+		final int n;
+
+		/**
+		 * The start and end location, road, and replaced arcs of each arc.
+		 */
+		final IntList arcFrom = new IntList(), arcTo = new IntList(), arcRoad = new IntList(),
+				arcFirst = new IntList(), arcSecond = new IntList();
+
+		/**
+		 * The travel time of each arc.
+		 */
+		double[] arcWeight = new double[16];
+
+		/**
+		 * The arcs leaving and arriving at each location.
+		 */
+		final IntList[] out, in;
+
+		/**
+		 * The upward arcs leaving and arriving at each contracted location.
+		 */
+		final IntList[] upArcs, downArcs;
+
+		/**
+		 * Whether each location has been contracted.
+		 */
+		final boolean[] contracted;
+
+		/**
+		 * Whether each location is being contracted in the current round.
+		 */
+		final boolean[] inRound;
+
+		/**
+		 * The number of contracted neighbours of each location.
+		 */
+		final int[] contractedNeighbours;
+
+		/**
+		 * The contraction priority of each location, lower priorities are contracted first.
+		 */
+		final int[] priority;
+
+		/**
+		 * The position of each location in the contraction order.
+		 */
+		final int[] rank;
+
+		/**
+		 * The witness search state of each contracting thread.
+		 */
+		final ThreadLocal<WitnessSearch> witnesses;
+
+		/**
+		 * Initialize a new contraction state for the given number of locations without arcs.
+		 */
+		Contraction(int n) {
+			this.n = n;
+			out = new IntList[n];
+			in = new IntList[n];
+			upArcs = new IntList[n];
+			downArcs = new IntList[n];
+			for (int v = 0; v < n; v++) {
+				out[v] = new IntList();
+				in[v] = new IntList();
+				upArcs[v] = new IntList();
+				downArcs[v] = new IntList();
+			}
+			contracted = new boolean[n];
+			inRound = new boolean[n];
+			contractedNeighbours = new int[n];
+			priority = new int[n];
+			rank = new int[n];
+			witnesses = ThreadLocal.withInitial(() -> new WitnessSearch(n));
+		}
+
+		/**
+		 * Adds an arc with the given properties to the remaining network and returns its index.
+		 */
+		int addArc(int from, int to, double weight, int road, int first, int second) {
+			int arc = arcFrom.size();
+			arcFrom.add(from);
+			arcTo.add(to);
+			arcRoad.add(road);
+			arcFirst.add(first);
+			arcSecond.add(second);
+			if (arc == arcWeight.length)
+				arcWeight = Arrays.copyOf(arcWeight, arc * 2);
+			arcWeight[arc] = weight;
+			out[from].add(arc);
+			in[to].add(arc);
+			return arc;
+		}
+
+		/**
+		 * Contracts all locations, in rounds of locations that are not adjacent and have a lower priority than
+		 * each of their remaining neighbours.
+		 */
+		void contract() {
+			IntStream.range(0, n).parallel().forEach(v -> priority[v] = computePriority(v));
+			int[] remaining = IntStream.range(0, n).toArray();
+			int next = 0;
+			while (remaining.length > 0) {
+				int[] selected = Arrays.stream(remaining).parallel().filter(this::isLocalMinimum).toArray();
+				for (int v : selected)
+					inRound[v] = true;
+				IntList[] shortcuts = new IntList[selected.length];
+				IntStream.range(0, selected.length).parallel()
+						.forEach(i -> shortcuts[i] = witnesses.get().findShortcuts(this, selected[i], true));
+				IntList dirty = new IntList();
+				for (int i = 0; i < selected.length; i++) {
+					int v = selected[i];
+					freeze(v, dirty);
+					IntList found = shortcuts[i];
+					for (int j = 0; j < found.size(); j += 2)
+						addShortcut(found.get(j), found.get(j + 1));
+				}
+				for (int v : selected) {
+					contracted[v] = true;
+					inRound[v] = false;
+					rank[v] = next++;
+				}
+				int[] update = Arrays.stream(dirty.toArray()).distinct().filter(v -> !contracted[v]).toArray();
+				Arrays.stream(update).parallel().forEach(v -> priority[v] = computePriority(v));
+				remaining = Arrays.stream(remaining).filter(v -> !contracted[v]).toArray();
+			}
+		}
+
+		/**
+		 * Checks whether the given location has a lower priority than each of its remaining neighbours,
+		 * breaking ties by index.
+		 */
+		boolean isLocalMinimum(int v) {
+			for (IntList arcs : new IntList[] { out[v], in[v] }) {
+				boolean isOut = arcs == out[v];
+				for (int i = 0; i < arcs.size(); i++) {
+					int arc = arcs.get(i);
+					int u = isOut ? arcTo.get(arc) : arcFrom.get(arc);
+					if (u == v || contracted[u])
+						continue;
+					if (priority[u] < priority[v] || (priority[u] == priority[v] && u < v))
+						return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the contraction priority of the given location: the number of shortcuts its contraction would
+		 * insert, minus the number of arcs it would remove, plus the number of its neighbours already contracted.
+		 */
+		int computePriority(int v) {
+			WitnessSearch witness = witnesses.get();
+			int shortcuts = witness.findShortcuts(this, v, false).size() / 2;
+			return shortcuts - witness.removedArcs + contractedNeighbours[v];
+		}
+
+		/**
+		 * Moves the arcs between the given location and its remaining neighbours into the hierarchy, registering
+		 * the neighbours in the given list.
+		 */
+		void freeze(int v, IntList neighbours) {
+			for (int i = 0; i < out[v].size(); i++) {
+				int arc = out[v].get(i);
+				int u = arcTo.get(arc);
+				if (u != v && !contracted[u]) {
+					upArcs[v].add(arc);
+					contractedNeighbours[u]++;
+					neighbours.add(u);
+				}
+			}
+			for (int i = 0; i < in[v].size(); i++) {
+				int arc = in[v].get(i);
+				int u = arcFrom.get(arc);
+				if (u != v && !contracted[u]) {
+					downArcs[v].add(arc);
+					contractedNeighbours[u]++;
+					neighbours.add(u);
+				}
+			}
+		}
+
+		/**
+		 * Adds a shortcut replacing the two given arcs, unless a remaining arc between the same locations is at
+		 * least as fast.
+		 */
+		void addShortcut(int first, int second) {
+			int from = arcFrom.get(first);
+			int to = arcTo.get(second);
+			double weight = arcWeight[first] + arcWeight[second];
+			for (int i = 0; i < out[from].size(); i++) {
+				int arc = out[from].get(i);
+				if (arcTo.get(arc) == to && arcWeight[arc] <= weight)
+					return;
+			}
+			addArc(from, to, weight, -1, first, second);
+		}
+	}
+
+	/**
+	 * A class of witness searches, deciding which shortcuts the contraction of a location requires.
+	 */
+	private static class WitnessSearch {
+
+		/**
+		 * The tentative travel time of each location in the current search.
+		 */
+		final double[] distance;
+
+		/**
+		 * The fastest arc from or to each neighbour of the contracted location, or -1.
+		 */
+		final int[] bestIn, bestOut;
+
+		/**
+		 * The locations with a finite distance in the current search.
+		 */
+		final IntList touched = new IntList();
+
+		/**
+		 * The neighbours arriving at and leaving the contracted location.
+		 */
+		final IntList sources = new IntList(), targets = new IntList();
+
+		/**
+		 * The queue of the current search.
+		 */
+		final IndexedMinHeap heap;
+
+		/**
+		 * The number of arcs removed by the last simulated contraction.
+		 */
+		int removedArcs;
+
+		/**
+		 * Initialize a new witness search for the given number of locations.
+		 */
+		WitnessSearch(int n) {
+			distance = new double[n];
+			Arrays.fill(distance, Double.POSITIVE_INFINITY);
+			bestIn = new int[n];
+			bestOut = new int[n];
+			Arrays.fill(bestIn, -1);
+			Arrays.fill(bestOut, -1);
+			heap = new IndexedMinHeap(n);
+		}
+
+		/**
+		 * Returns the pairs of arcs through the given location that must be replaced by a shortcut when it is
+		 * contracted, because no witness route without it is as fast.
+		 *
+		 * @param excludeRound Whether the witness routes must also avoid all locations of the current round.
+		 */
+		IntList findShortcuts(Contraction graph, int v, boolean excludeRound) {
+			sources.clear();
+			targets.clear();
+			double maxOut = 0;
+			for (int i = 0; i < graph.in[v].size(); i++) {
+				int arc = graph.in[v].get(i);
+				int u = graph.arcFrom.get(arc);
+				if (u == v || graph.contracted[u])
+					continue;
+				if (bestIn[u] < 0)
+					sources.add(u);
+				if (bestIn[u] < 0 || graph.arcWeight[arc] < graph.arcWeight[bestIn[u]])
+					bestIn[u] = arc;
+			}
+			for (int i = 0; i < graph.out[v].size(); i++) {
+				int arc = graph.out[v].get(i);
+				int x = graph.arcTo.get(arc);
+				if (x == v || graph.contracted[x])
+					continue;
+				if (bestOut[x] < 0)
+					targets.add(x);
+				if (bestOut[x] < 0 || graph.arcWeight[arc] < graph.arcWeight[bestOut[x]])
+					bestOut[x] = arc;
+				maxOut = Math.max(maxOut, graph.arcWeight[arc]);
+			}
+			removedArcs = sources.size() + targets.size();
+			IntList shortcuts = new IntList();
+			for (int i = 0; i < sources.size(); i++) {
+				int u = sources.get(i);
+				double inWeight = graph.arcWeight[bestIn[u]];
+				search(graph, u, v, inWeight + maxOut, excludeRound);
+				for (int j = 0; j < targets.size(); j++) {
+					int x = targets.get(j);
+					if (x == u)
+						continue;
+					if (distance[x] > inWeight + graph.arcWeight[bestOut[x]]) {
+						shortcuts.add(bestIn[u]);
+						shortcuts.add(bestOut[x]);
+					}
+				}
+				reset();
+			}
+			for (int i = 0; i < sources.size(); i++)
+				bestIn[sources.get(i)] = -1;
+			for (int j = 0; j < targets.size(); j++)
+				bestOut[targets.get(j)] = -1;
+			return shortcuts;
+		}
+
+		/**
+		 * Runs a bounded Dijkstra search from the given source over the remaining locations other than the
+		 * given excluded location.
+		 */
+		private void search(Contraction graph, int source, int excluded, double limit, boolean excludeRound) {
+			distance[source] = 0;
+			touched.add(source);
+			heap.insertOrDecrease(source, 0);
+			int settled = 0;
+			while (!heap.isEmpty() && heap.peekKey() <= limit && settled < WITNESS_SETTLE_LIMIT) {
+				int u = heap.poll();
+				settled++;
+				IntList arcs = graph.out[u];
+				for (int i = 0; i < arcs.size(); i++) {
+					int arc = arcs.get(i);
+					int w = graph.arcTo.get(arc);
+					if (w == excluded || graph.contracted[w] || (excludeRound && graph.inRound[w]))
+						continue;
+					double newDistance = distance[u] + graph.arcWeight[arc];
+					if (newDistance < distance[w]) {
+						if (distance[w] == Double.POSITIVE_INFINITY)
+							touched.add(w);
+						distance[w] = newDistance;
+						heap.insertOrDecrease(w, newDistance);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Forgets the distances of the last search.
+		 */
+		private void reset() {
+			for (int i = 0; i < touched.size(); i++)
+				distance[touched.get(i)] = Double.POSITIVE_INFINITY;
+			touched.clear();
+			heap.clear();
+		}
+	}
+}
@@ -0,0 +1,547 @@
+package connections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A class of customizable contraction hierarchies over a network of locations. Unlike a contraction hierarchy,
+ * the contraction order and the shortcuts only depend on which locations share a road, not on travel times.
+ * Travel times are filled in afterwards by a customization phase that computes the travel time of each shortcut
+ * from the lower triangles it closes.
+ *
+ * The hierarchy observes its roads. Each change to the length, average speed, delay, blocked status or direction
+ * of a road only marks the arcs of that road, and the next customization only re-weights those arcs and the
+ * shortcuts whose travel time depends on them. Pending changes are customized automatically before each query.
+ *
+ * @invar Each location of the hierarchy has a distinct rank.
+ * 		| for each I,J in 0..getLocationCount()-1:
+ * 		|	I != J implies rank[I] != rank[J]
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class CustomizableContractionHierarchy implements RoadObserver {
+
+	/**
+	 * The locations of this hierarchy, in the order in which a Hilbert curve through their coordinates visits them.
+	 */
+	private final Location[] locations;
+
+	/**
+	 * Map from each location of this hierarchy to its index.
+	 */
+	private final IdentityHashMap<Location, Integer> indices = new IdentityHashMap<>();
+
+	/**
+	 * The position of each location in the contraction order.
+	 */
+	private final int[] rank;
+
+	/**
+	 * The edges to the higher ranked neighbours of each location, in compressed sparse row form sorted by neighbour.
+	 */
+	private final int[] upFirst, upHead, upEdge;
+
+	/**
+	 * The arc travelling the edge at each position of the compressed sparse rows upward and downward, as followed by
+	 * the forward and the backward search.
+	 */
+	private final int[] upArc, downArc;
+
+	/**
+	 * The lower and the higher ranked location of each edge.
+	 */
+	private final int[] edgeLow, edgeHigh;
+
+	/**
+	 * The roads between the locations of each edge, in compressed sparse row form.
+	 */
+	private final int[] edgeRoadFirst;
+
+	/**
+	 * The roads of all edges.
+	 */
+	private final Road[] edgeRoads;
+
+	/**
+	 * Map from each road of this hierarchy to its edge.
+	 */
+	private final IdentityHashMap<Road, Integer> roadEdges = new IdentityHashMap<>();
+
+	/**
+	 * The lower triangles closed by each edge, in compressed sparse row form. Each triangle is given by the
+	 * edges from its lowest location to the lower and to the higher location of the closed edge.
+	 */
+	private final int[] triangleFirst, triangleLow, triangleHigh;
+
+	/**
+	 * The edges closing a lower triangle with each edge, in compressed sparse row form.
+	 */
+	private final int[] dependentFirst, dependentEdge;
+
+	/**
+	 * The travel time of each arc. Arc 2e travels edge e upward, arc 2e+1 travels it downward.
+	 */
+	private final double[] weight;
+
+	/**
+	 * The lower triangle through which each arc is fastest, or -1 if a road of its edge is fastest.
+	 */
+	private final int[] via;
+
+	/**
+	 * The fastest road of each arc that is not fastest through a lower triangle.
+	 */
+	private final Road[] arcRoad;
+
+	/**
+	 * The edges whose travel times must be customized, ordered by edge.
+	 */
+	private final IndexedMinHeap pending;
+
+	/**
+	 * The lock separating customization from queries.
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * The number of edges customized by the last customization.
+	 */
+	private int customizedCount = 0;
+
+	/**
+	 * The query state of each thread querying this hierarchy.
+	 */
+	private final ThreadLocal<UpwardSearch> searches = ThreadLocal.withInitial(this::newSearch);
+
+	/**
+	 * Initialize a new customizable contraction hierarchy over the given locations and all roads between them, and
+	 * customize it with the current travel time of each road.
+	 *
+	 * @param locations The locations of the network.
+	 * @throws NullPointerException
+	 * 		The given collection is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated or given twice
+	 * 		| for some location in locations: location.isTerminated()
+	 */
+	public CustomizableContractionHierarchy(Collection<Location> locations) throws NullPointerException, IllegalArgumentException {
+		this.locations = HilbertCurve.sort(locations).toArray(new Location[0]);
+		int n = this.locations.length;
+		for (int i = 0; i < n; i++) {
+			if (this.locations[i].isTerminated() || indices.put(this.locations[i], i) != null)
+				throw new IllegalArgumentException();
+		}
+		List<Road> roads = new ArrayList<>();
+		IntList[] neighbours = new IntList[n];
+		for (int u = 0; u < n; u++)
+			neighbours[u] = new IntList();
+		for (int u = 0; u < n; u++) {
+			for (Road road : this.locations[u].getAdjoiningRoadsView()) {
+				Integer v = indices.get(road.getOtherEndPoint(this.locations[u]));
+				if (v != null && v != u && this.locations[u] == road.getEndPoint1()) {
+					roads.add(road);
+					neighbours[u].add(v);
+					neighbours[v].add(u);
+				}
+			}
+		}
+
+		// Order the locations by minimum degree, connecting the higher neighbours of each eliminated location.
+		rank = new int[n];
+		int[] order = new int[n];
+		IntList[] upper = new IntList[n];
+		boolean[] eliminated = new boolean[n];
+		int[] stamp = new int[n];
+		Arrays.fill(stamp, -1);
+		IndexedMinHeap byDegree = new IndexedMinHeap(n);
+		for (int v = 0; v < n; v++)
+			byDegree.update(v, compact(neighbours[v], v, eliminated, stamp, v));
+		int stampCount = n;
+		for (int next = 0; next < n; next++) {
+			int v = byDegree.poll();
+			compact(neighbours[v], v, eliminated, stamp, stampCount++);
+			rank[v] = next;
+			order[next] = v;
+			eliminated[v] = true;
+			upper[v] = neighbours[v];
+			for (int i = 0; i < upper[v].size(); i++) {
+				int x = upper[v].get(i);
+				for (int j = 0; j < upper[v].size(); j++)
+					neighbours[x].add(upper[v].get(j));
+				byDegree.update(x, compact(neighbours[x], x, eliminated, stamp, stampCount++));
+			}
+		}
+
+		// Create an edge from each location to each of its higher neighbours, in contraction order.
+		upFirst = new int[n + 1];
+		int edgeCount = 0;
+		for (int v = 0; v < n; v++)
+			edgeCount += upper[v].size();
+		upHead = new int[edgeCount];
+		upEdge = new int[edgeCount];
+		upArc = new int[edgeCount];
+		downArc = new int[edgeCount];
+		edgeLow = new int[edgeCount];
+		edgeHigh = new int[edgeCount];
+		int position = 0;
+		for (int v = 0; v < n; v++) {
+			upFirst[v] = position;
+			int[] heads = upper[v].toArray();
+			Arrays.sort(heads);
+			for (int x : heads)
+				upHead[position++] = x;
+		}
+		upFirst[n] = position;
+		int edge = 0;
+		for (int v : order) {
+			for (int i = upFirst[v]; i < upFirst[v + 1]; i++) {
+				upEdge[i] = edge;
+				upArc[i] = 2 * edge;
+				downArc[i] = 2 * edge + 1;
+				edgeLow[edge] = v;
+				edgeHigh[edge] = upHead[i];
+				edge++;
+			}
+		}
+
+		// Assign each road to the edge between its endpoints.
+		int[] roadEdge = new int[roads.size()];
+		edgeRoadFirst = new int[edgeCount + 1];
+		for (int r = 0; r < roads.size(); r++) {
+			roadEdge[r] = findEdge(indices.get(roads.get(r).getEndPoint1()), indices.get(roads.get(r).getEndPoint2()));
+			edgeRoadFirst[roadEdge[r] + 1]++;
+		}
+		for (int e = 0; e < edgeCount; e++)
+			edgeRoadFirst[e + 1] += edgeRoadFirst[e];
+		edgeRoads = new Road[roads.size()];
+		int[] fill = Arrays.copyOf(edgeRoadFirst, edgeCount);
+		for (int r = 0; r < roads.size(); r++) {
+			edgeRoads[fill[roadEdge[r]]++] = roads.get(r);
+			roadEdges.put(roads.get(r), roadEdge[r]);
+		}
+
+		// Enumerate the lower triangles of each edge, and the edges depending on each edge.
+		triangleFirst = new int[edgeCount + 1];
+		dependentFirst = new int[edgeCount + 1];
+		for (int v = 0; v < n; v++) {
+			for (int i = upFirst[v]; i < upFirst[v + 1]; i++) {
+				for (int j = upFirst[v]; j < upFirst[v + 1]; j++) {
+					if (rank[upHead[i]] < rank[upHead[j]]) {
+						triangleFirst[findEdge(upHead[i], upHead[j]) + 1]++;
+						dependentFirst[upEdge[i] + 1]++;
+						dependentFirst[upEdge[j] + 1]++;
+					}
+				}
+			}
+		}
+		for (int e = 0; e < edgeCount; e++) {
+			triangleFirst[e + 1] += triangleFirst[e];
+			dependentFirst[e + 1] += dependentFirst[e];
+		}
+		triangleLow = new int[triangleFirst[edgeCount]];
+		triangleHigh = new int[triangleFirst[edgeCount]];
+		dependentEdge = new int[dependentFirst[edgeCount]];
+		int[] triangleFill = Arrays.copyOf(triangleFirst, edgeCount);
+		int[] dependentFill = Arrays.copyOf(dependentFirst, edgeCount);
+		for (int v = 0; v < n; v++) {
+			for (int i = upFirst[v]; i < upFirst[v + 1]; i++) {
+				for (int j = upFirst[v]; j < upFirst[v + 1]; j++) {
+					if (rank[upHead[i]] < rank[upHead[j]]) {
+						int closed = findEdge(upHead[i], upHead[j]);
+						int t = triangleFill[closed]++;
+						triangleLow[t] = upEdge[i];
+						triangleHigh[t] = upEdge[j];
+						dependentEdge[dependentFill[upEdge[i]]++] = closed;
+						dependentEdge[dependentFill[upEdge[j]]++] = closed;
+					}
+				}
+			}
+		}
+
+		// Customize all edges and start observing the roads.
+		weight = new double[2 * edgeCount];
+		via = new int[2 * edgeCount];
+		arcRoad = new Road[2 * edgeCount];
+		pending = new IndexedMinHeap(edgeCount);
+		for (int e = 0; e < edgeCount; e++)
+			customizeEdge(e);
+		customizedCount = edgeCount;
+		for (Road road : roads)
+			road.addObserver(this);
+	}
+
+	/**
+	 * Removes the given location, eliminated locations and duplicates from the given list of neighbours,
+	 * and returns the number of neighbours left.
+	 */
+	private static int compact(IntList neighbours, int v, boolean[] eliminated, int[] stamp, int mark) {
+		int kept = 0;
+		for (int i = 0; i < neighbours.size(); i++) {
+			int x = neighbours.get(i);
+			if (x == v || eliminated[x] || stamp[x] == mark)
+				continue;
+			stamp[x] = mark;
+			neighbours.set(kept++, x);
+		}
+		while (neighbours.size() > kept)
+			neighbours.removeLast();
+		return kept;
+	}
+
+	/**
+	 * Returns the edge between the given locations.
+	 *
+	 * @pre The given locations share an edge.
+	 */
+	private int findEdge(int u, int v) {
+		int low = rank[u] < rank[v] ? u : v;
+		int high = low == u ? v : u;
+		int i = Arrays.binarySearch(upHead, upFirst[low], upFirst[low + 1], high);
+		assert i >= 0;
+		return upEdge[i];
+	}
+
+	/**
+	 * Returns the number of locations in this hierarchy.
+	 */
+	public int getLocationCount() {
+		return locations.length;
+	}
+
+	/**
+	 * Returns the number of edges of this hierarchy, including shortcuts.
+	 */
+	public int getEdgeCount() {
+		return edgeLow.length;
+	}
+
+	/**
+	 * Returns the number of edges customized by the last customization.
+	 */
+	public int getCustomizedCount() {
+		return customizedCount;
+	}
+
+	/**
+	 * Marks the edge of the given road to be customized, as it may have a new travel time.
+	 *
+	 * @param road The road that changed.
+	 */
+	@Override
+	public void roadChanged(Road road) {
+		Integer edge = roadEdges.get(road);
+		if (edge == null)
+			return;
+		synchronized (pending) {
+			pending.insertOrDecrease(edge, edge);
+		}
+	}
+
+	/**
+	 * Checks whether changes to the roads of this hierarchy are waiting to be customized.
+	 */
+	public boolean hasPendingChanges() {
+		synchronized (pending) {
+			return !pending.isEmpty();
+		}
+	}
+
+	/**
+	 * Re-weights the edges of all changed roads, and the shortcuts whose travel time depends on them.
+	 * Edges are customized in contraction order, so each lower triangle is final before it is used.
+	 *
+	 * @post No changes are waiting to be customized.
+	 * 		| !new.hasPendingChanges()
+	 */
+	public void customize() {
+		lock.writeLock().lock();
+		try {
+			int count = 0;
+			while (true) {
+				int e;
+				synchronized (pending) {
+					if (pending.isEmpty())
+						break;
+					e = pending.poll();
+				}
+				count++;
+				if (customizeEdge(e)) {
+					synchronized (pending) {
+						for (int i = dependentFirst[e]; i < dependentFirst[e + 1]; i++)
+							pending.insertOrDecrease(dependentEdge[i], dependentEdge[i]);
+					}
+				}
+			}
+			customizedCount = count;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Recomputes the travel time of both arcs of the given edge from its roads and its lower triangles.
+	 *
+	 * @return True if the travel time of one of the arcs changed.
+	 */
+	private boolean customizeEdge(int e) {
+		Location low = locations[edgeLow[e]];
+		Location high = locations[edgeHigh[e]];
+		double up = Double.POSITIVE_INFINITY, down = Double.POSITIVE_INFINITY;
+		Road upRoad = null, downRoad = null;
+		for (int i = edgeRoadFirst[e]; i < edgeRoadFirst[e + 1]; i++) {
+			Road road = edgeRoads[i];
+			if (road.isTerminated())
+				continue;
+			float time = road.calculateTravelTimeFrom(low);
+			if (time < up) {
+				up = time;
+				upRoad = road;
+			}
+			time = road.calculateTravelTimeFrom(high);
+			if (time < down) {
+				down = time;
+				downRoad = road;
+			}
+		}
+		int upVia = -1, downVia = -1;
+		for (int t = triangleFirst[e]; t < triangleFirst[e + 1]; t++) {
+			int toLow = triangleLow[t];
+			int toHigh = triangleHigh[t];
+			double throughUp = weight[2 * toLow + 1] + weight[2 * toHigh];
+			if (throughUp < up) {
+				up = throughUp;
+				upVia = t;
+			}
+			double throughDown = weight[2 * toHigh + 1] + weight[2 * toLow];
+			if (throughDown < down) {
+				down = throughDown;
+				downVia = t;
+			}
+		}
+		boolean changed = up != weight[2 * e] || down != weight[2 * e + 1];
+		weight[2 * e] = up;
+		weight[2 * e + 1] = down;
+		via[2 * e] = upVia;
+		via[2 * e + 1] = downVia;
+		arcRoad[2 * e] = upRoad;
+		arcRoad[2 * e + 1] = downRoad;
+		return changed;
+	}
+
+	/**
+	 * Returns the fastest route from the given start location to the given end location, using the current travel
+	 * times of the roads.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return A route from start to end with the smallest total travel time, or null if no such route exists.
+	 * 		| if (result != null)
+	 * 		|	result.getStartLocations()[0] == start && result.getEndLocation() == end
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is not part of this hierarchy
+	 */
+	public Route findFastestRoute(Location start, Location end) throws IllegalArgumentException {
+		int source = indexOf(start), target = indexOf(end);
+		if (hasPendingChanges())
+			customize();
+		lock.readLock().lock();
+		try {
+			UpwardSearch search = searches.get();
+			if (search.run(source, target) == Double.POSITIVE_INFINITY)
+				return null;
+			IntList path = search.getArcs();
+			List<Road> roads = new ArrayList<>();
+			for (int i = 0; i < path.size(); i++)
+				unpack(path.get(i), roads);
+			return new Route(start, roads.toArray());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the travel time in seconds of the fastest route from the given start location to the given end location,
+	 * using the current travel times of the roads.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return The total travel time of the fastest route, or infinity if no route exists.
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is not part of this hierarchy
+	 */
+	public float calculateFastestTravelTime(Location start, Location end) throws IllegalArgumentException {
+		int source = indexOf(start), target = indexOf(end);
+		if (hasPendingChanges())
+			customize();
+		lock.readLock().lock();
+		try {
+			return (float) searches.get().run(source, target);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns a new query state for this hierarchy.
+	 */
+	private UpwardSearch newSearch() {
+		return new UpwardSearch(getLocationCount(), new UpwardSearch.Arcs(upFirst, upHead, upArc),
+				new UpwardSearch.Arcs(upFirst, upHead, downArc), weight);
+	}
+
+	/**
+	 * Returns the number of locations settled by the last query of the current thread, in both directions.
+	 */
+	public int getSettledCount() {
+		return searches.get().settled;
+	}
+
+	/**
+	 * Stops observing the roads of this hierarchy, after which it no longer reflects their changes.
+	 */
+	public void detach() {
+		for (Road road : edgeRoads)
+			road.removeObserver(this);
+	}
+
+	/**
+	 * Returns the index of the given location in this hierarchy.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		The given location is not part of this hierarchy
+	 */
+	private int indexOf(Location location) throws IllegalArgumentException {
+		Integer index = indices.get(location);
+		if (index == null)
+			throw new IllegalArgumentException();
+		return index;
+	}
+
+	/**
+	 * Appends the roads travelled by the given arc to the given list, unpacking arcs that are fastest through a
+	 * lower triangle into the two arcs of that triangle.
+	 */
+	private void unpack(int arc, List<Road> route) {
+		IntList stack = new IntList();
+		stack.add(arc);
+		while (stack.size() > 0) {
+			int top = stack.removeLast();
+			int t = via[top];
+			if (t < 0) {
+				route.add(arcRoad[top]);
+			} else if (top % 2 == 0) {
+				stack.add(2 * triangleHigh[t]);
+				stack.add(2 * triangleLow[t] + 1);
+			} else {
+				stack.add(2 * triangleLow[t]);
+				stack.add(2 * triangleHigh[t] + 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,324 @@
+package connections;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class of fixed grids of square cells over the area in which roads can have their endpoints, bucketing locations
+ * by cell for high-rate nearest location lookups.
+ *
+ * The grid spans the coordinates from zero to the largest latitude and longitude of road endpoints at the time the
+ * grid is built; locations outside that area are kept in the nearest border cell. The locations of each cell are
+ * stored contiguously in primitive arrays, together with their coordinates, so finding the cell of a point takes
+ * constant time and scanning a cell follows no object references. A nearest search scans the cell of the point and
+ * then rings of cells around it, until no unscanned cell can hold a nearer location.
+ *
+ * Each location of a grid has an index: its position in the list the grid was built from. The locations of a grid
+ * are fixed when it is built; locations terminated later are never returned, but new locations are only part of a
+ * new grid. A grid can be queried by many threads at once.
+ *
+ * @invar The cells cover the area in which roads can have their endpoints.
+ * 		| getColumnCount() * getCellSize() >= Road.getMaxCoordinateLatidude() &&
+ * 		| getRowCount() * getCellSize() >= Road.getMaxCoordinateLongitude()
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class GridIndex {
+
+	/**
+	 * The average number of locations per cell aimed for by grids that are not given a cell size.
+	 */
+	private static final double LOCATIONS_PER_CELL = 2;
+
+	/**
+	 * The largest number of cells of a grid.
+	 */
+	private static final long MAX_CELLS = 1 << 28;
+
+	/**
+	 * The locations of this grid.
+	 */
+	private final Location[] locations;
+
+	/**
+	 * The length of the sides of each cell.
+	 */
+	private final double cellSize;
+
+	/**
+	 * The number of columns and rows of cells, along the first and the second coordinate respectively.
+	 */
+	private final int columns, rows;
+
+	/**
+	 * The position of the first location of each cell in the cell arrays, followed by the number of locations.
+	 */
+	private final int[] cellStart;
+
+	/**
+	 * The index of each location, grouped per cell.
+	 */
+	private final int[] cellLocations;
+
+	/**
+	 * The coordinates of each location, grouped per cell in the same order.
+	 */
+	private final double[] cellX, cellY;
+
+	/**
+	 * Initialize a new grid over the given locations, with cells holding a few locations each on average.
+	 *
+	 * @param locations The locations of the grid.
+	 * @throws NullPointerException
+	 * 		The given list is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 */
+	public GridIndex(List<Location> locations) throws NullPointerException {
+		this(locations, Math.sqrt(Math.max(Road.getMaxCoordinateLatidude() * Road.getMaxCoordinateLongitude(), Double.MIN_NORMAL)
+				* LOCATIONS_PER_CELL / Math.max(locations.size(), 1)));
+	}
+
+	/**
+	 * Initialize a new grid over the given locations, with cells of the given size.
+	 *
+	 * @param locations The locations of the grid.
+	 * @param cellSize  The length of the sides of each cell.
+	 * @post The cells of the new grid have the given size.
+	 * 		| new.getCellSize() == cellSize
+	 * @throws NullPointerException
+	 * 		The given list is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 * @throws IllegalArgumentException
+	 * 		The given cell size is not positive, or so small that the grid would have too many cells
+	 * 		| !(cellSize > 0)
+	 */
+	public GridIndex(List<Location> locations, double cellSize) throws NullPointerException, IllegalArgumentException {
+		if (!(cellSize > 0) || cellSize == Double.POSITIVE_INFINITY)
+			throw new IllegalArgumentException();
+		double columnCount = Math.max(1, Math.ceil(Road.getMaxCoordinateLatidude() / cellSize));
+		double rowCount = Math.max(1, Math.ceil(Road.getMaxCoordinateLongitude() / cellSize));
+		if (columnCount * rowCount > MAX_CELLS)
+			throw new IllegalArgumentException();
+		this.cellSize = cellSize;
+		this.columns = (int) columnCount;
+		this.rows = (int) rowCount;
+		this.locations = locations.toArray(new Location[0]);
+		int n = this.locations.length;
+		double[] x = new double[n], y = new double[n];
+		int[] cells = new int[n];
+		cellStart = new int[columns * rows + 1];
+		for (int i = 0; i < n; i++) {
+			double[] coordinate = this.locations[i].getCoordinate();
+			x[i] = coordinate[0];
+			y[i] = coordinate[1];
+			cells[i] = row(y[i]) * columns + column(x[i]);
+			cellStart[cells[i] + 1]++;
+		}
+		for (int c = 0; c < columns * rows; c++)
+			cellStart[c + 1] += cellStart[c];
+		int[] fill = Arrays.copyOf(cellStart, columns * rows);
+		cellLocations = new int[n];
+		cellX = new double[n];
+		cellY = new double[n];
+		for (int i = 0; i < n; i++) {
+			int position = fill[cells[i]]++;
+			cellLocations[position] = i;
+			cellX[position] = x[i];
+			cellY[position] = y[i];
+		}
+	}
+
+	/**
+	 * Returns the number of locations of this grid.
+	 */
+	public int getLocationCount() {
+		return locations.length;
+	}
+
+	/**
+	 * Returns the location with the given index.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		The given index is not the index of a location
+	 * 		| index < 0 || index >= getLocationCount()
+	 */
+	public Location getLocation(int index) throws IndexOutOfBoundsException {
+		return locations[index];
+	}
+
+	/**
+	 * Returns the length of the sides of each cell of this grid.
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Returns the number of columns of cells of this grid, along the first coordinate.
+	 */
+	public int getColumnCount() {
+		return columns;
+	}
+
+	/**
+	 * Returns the number of rows of cells of this grid, along the second coordinate.
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Returns the column of the cell holding the given first coordinate.
+	 */
+	private int column(double x) {
+		return (int) Math.max(0, Math.min(columns - 1, Math.floor(x / cellSize)));
+	}
+
+	/**
+	 * Returns the row of the cell holding the given second coordinate.
+	 */
+	private int row(double y) {
+		return (int) Math.max(0, Math.min(rows - 1, Math.floor(y / cellSize)));
+	}
+
+	/**
+	 * Returns the non-terminated location of this grid nearest to the given point, or null if there is none.
+	 *
+	 * @param point The coordinate of the point.
+	 * @throws NullPointerException
+	 * 		The given point is null
+	 * 		| point == null
+	 * @throws IllegalArgumentException
+	 * 		The given point does not consist of two numbers
+	 * 		| point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1])
+	 */
+	public Location findNearestLocation(double[] point) throws NullPointerException, IllegalArgumentException {
+		if (point.length != 2)
+			throw new IllegalArgumentException();
+		int index = findNearest(point[0], point[1]);
+		return index < 0 ? null : locations[index];
+	}
+
+	/**
+	 * Returns the index of the non-terminated location of this grid nearest to the given point, without allocating.
+	 *
+	 * @param x The first coordinate of the point.
+	 * @param y The second coordinate of the point.
+	 * @return The index of the nearest location, or -1 if all locations of this grid are terminated.
+	 * @throws IllegalArgumentException
+	 * 		One of the given coordinates is not a number
+	 * 		| Double.isNaN(x) || Double.isNaN(y)
+	 */
+	public int findNearest(double x, double y) throws IllegalArgumentException {
+		if (Double.isNaN(x) || Double.isNaN(y))
+			throw new IllegalArgumentException();
+		int centerColumn = column(x), centerRow = row(y);
+		int best = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int ring = 0; ; ring++) {
+			for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+				if (row < 0 || row >= rows)
+					continue;
+				boolean isEdge = row == centerRow - ring || row == centerRow + ring;
+				int step = isEdge ? 1 : 2 * ring;
+				for (int column = centerColumn - ring; column <= centerColumn + ring; column += Math.max(step, 1)) {
+					if (column < 0 || column >= columns)
+						continue;
+					int cell = row * columns + column;
+					for (int position = cellStart[cell]; position < cellStart[cell + 1]; position++) {
+						double dx = cellX[position] - x, dy = cellY[position] - y;
+						double distance = dx * dx + dy * dy;
+						if (distance < bestDistance && !locations[cellLocations[position]].isTerminated()) {
+							bestDistance = distance;
+							best = cellLocations[position];
+						}
+					}
+				}
+			}
+			double bound = unscannedDistance(x, y, centerColumn, centerRow, ring);
+			if (bound == Double.POSITIVE_INFINITY || bestDistance <= bound * bound)
+				return best;
+		}
+	}
+
+	/**
+	 * Returns the indices of the given number of non-terminated locations of this grid nearest to the given point,
+	 * nearest first.
+	 *
+	 * @param point The coordinate of the point.
+	 * @param count The number of locations to return.
+	 * @return The indices of the given number of locations, or of all non-terminated locations of this grid if there
+	 * 			are fewer, such that no location of this grid left out is nearer to the given point than a location
+	 * 			returned.
+	 * @throws NullPointerException
+	 * 		The given point is null
+	 * 		| point == null
+	 * @throws IllegalArgumentException
+	 * 		The given point does not consist of two numbers, or the given number is negative
+	 * 		| point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1]) || count < 0
+	 */
+	public int[] findNearest(double[] point, int count) throws NullPointerException, IllegalArgumentException {
+		if (point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1]) || count < 0)
+			throw new IllegalArgumentException();
+		double x = point[0], y = point[1];
+		int[] best = new int[count];
+		double[] bestDistance = new double[count];
+		int found = 0;
+		if (count == 0)
+			return best;
+		int centerColumn = column(x), centerRow = row(y);
+		for (int ring = 0; ; ring++) {
+			for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+				if (row < 0 || row >= rows)
+					continue;
+				boolean isEdge = row == centerRow - ring || row == centerRow + ring;
+				int step = isEdge ? 1 : 2 * ring;
+				for (int column = centerColumn - ring; column <= centerColumn + ring; column += Math.max(step, 1)) {
+					if (column < 0 || column >= columns)
+						continue;
+					int cell = row * columns + column;
+					for (int position = cellStart[cell]; position < cellStart[cell + 1]; position++) {
+						double dx = cellX[position] - x, dy = cellY[position] - y;
+						double distance = dx * dx + dy * dy;
+						if ((found < count || distance < bestDistance[found - 1])
+								&& !locations[cellLocations[position]].isTerminated()) {
+							int i = found < count ? found++ : found - 1;
+							for (; i > 0 && bestDistance[i - 1] > distance; i--) {
+								best[i] = best[i - 1];
+								bestDistance[i] = bestDistance[i - 1];
+							}
+							best[i] = cellLocations[position];
+							bestDistance[i] = distance;
+						}
+					}
+				}
+			}
+			double bound = unscannedDistance(x, y, centerColumn, centerRow, ring);
+			if (bound == Double.POSITIVE_INFINITY || (found == count && bestDistance[count - 1] <= bound * bound))
+				return Arrays.copyOf(best, found);
+		}
+	}
+
+	/**
+	 * Returns a lower bound on the distance from the given point to the locations outside the square of cells within
+	 * the given ring around the given cell, or infinity if that square covers the whole grid.
+	 *
+	 * Since a location outside the grid is kept in the border cell nearest to it, the bound is taken from the point
+	 * moved onto the grid, which is never farther from any location than the point itself.
+	 */
+	private double unscannedDistance(double x, double y, int centerColumn, int centerRow, int ring) {
+		double px = Math.max(0, Math.min(columns * cellSize, x));
+		double py = Math.max(0, Math.min(rows * cellSize, y));
+		double bound = Double.POSITIVE_INFINITY;
+		if (centerColumn - ring > 0)
+			bound = Math.min(bound, px - (centerColumn - ring) * cellSize);
+		if (centerColumn + ring < columns - 1)
+			bound = Math.min(bound, (centerColumn + ring + 1) * cellSize - px);
+		if (centerRow - ring > 0)
+			bound = Math.min(bound, py - (centerRow - ring) * cellSize);
+		if (centerRow + ring < rows - 1)
+			bound = Math.min(bound, (centerRow + ring + 1) * cellSize - py);
+		return Math.max(bound, 0);
+	}
+}
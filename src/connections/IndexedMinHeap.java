@@ -0,0 +1,226 @@
+package connections;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of node indices ordered by a primitive key, used by the route planners.
+ * Each node index is present at most once; its position in the heap is tracked so that
+ * its key can be decreased in logarithmic time without boxing.
+ *
+ * @invar Each node in the heap is registered at its own position.
+ * 		| for each i in 0..size()-1:
+ * 		|	position[heap[i]] == i
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+class IndexedMinHeap {
+
+	/**
+	 * The node indices in heap order.
+	 */
+	private int[] heap;
+
+	/**
+	 * The key of each node index, only meaningful for nodes in the heap.
+	 */
+	private double[] keys;
+
+	/**
+	 * The position of each node index in the heap, or -1 if the node is not in the heap.
+	 */
+	private int[] position;
+
+	/**
+	 * The number of nodes in the heap.
+	 */
+	private int size = 0;
+
+	/**
+	 * Initialize a new empty heap for node indices below the given capacity.
+	 *
+	 * @param capacity The initial number of node indices the heap can hold.
+	 */
+	IndexedMinHeap(int capacity) {
+		capacity = Math.max(capacity, 1);
+		heap = new int[capacity];
+		keys = new double[capacity];
+		position = new int[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * Grows the heap so it can hold node indices below the given capacity.
+	 *
+	 * @param capacity The number of node indices the heap must be able to hold.
+	 */
+	void ensureCapacity(int capacity) {
+		if (capacity <= position.length)
+			return;
+		int newCapacity = Math.max(capacity, position.length * 2);
+		heap = Arrays.copyOf(heap, newCapacity);
+		keys = Arrays.copyOf(keys, newCapacity);
+		int oldCapacity = position.length;
+		position = Arrays.copyOf(position, newCapacity);
+		Arrays.fill(position, oldCapacity, newCapacity, -1);
+	}
+
+	/**
+	 * Checks whether the heap is empty.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of nodes in the heap.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the given node is in the heap.
+	 */
+	boolean contains(int node) {
+		return node < position.length && position[node] >= 0;
+	}
+
+	/**
+	 * Returns the smallest key in the heap.
+	 *
+	 * @pre The heap is not empty.
+	 * 		| !isEmpty()
+	 */
+	double peekKey() {
+		assert size > 0;
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Returns the node with the smallest key, without removing it.
+	 *
+	 * @pre The heap is not empty.
+	 * 		| !isEmpty()
+	 */
+	int peek() {
+		assert size > 0;
+		return heap[0];
+	}
+
+	/**
+	 * Inserts the given node with the given key, or lowers its key if it is already in the heap
+	 * with a larger key.
+	 *
+	 * @param node The node index to insert.
+	 * @param key  The key of the node.
+	 * @post The node is in the heap with a key no larger than the given key.
+	 * 		| new.contains(node)
+	 */
+	void insertOrDecrease(int node, double key) {
+		ensureCapacity(node + 1);
+		int i = position[node];
+		if (i < 0) {
+			i = size++;
+		} else if (keys[node] <= key) {
+			return;
+		}
+		keys[node] = key;
+		siftUp(i, node);
+	}
+
+	/**
+	 * Inserts the given node with the given key, or changes its key if it is already in the heap.
+	 *
+	 * @param node The node index to insert.
+	 * @param key  The new key of the node.
+	 * @post The node is in the heap with the given key.
+	 * 		| new.contains(node)
+	 */
+	void update(int node, double key) {
+		ensureCapacity(node + 1);
+		int i = position[node];
+		if (i < 0) {
+			keys[node] = key;
+			siftUp(size++, node);
+		} else if (key < keys[node]) {
+			keys[node] = key;
+			siftUp(i, node);
+		} else {
+			keys[node] = key;
+			siftDown(i, node);
+		}
+	}
+
+	/**
+	 * Removes and returns the node with the smallest key.
+	 *
+	 * @pre The heap is not empty.
+	 * 		| !isEmpty()
+	 * @post The returned node is no longer in the heap.
+	 * 		| !new.contains(result)
+	 */
+	int poll() {
+		assert size > 0;
+		int top = heap[0];
+		position[top] = -1;
+		size--;
+		if (size > 0)
+			siftDown(0, heap[size]);
+		return top;
+	}
+
+	/**
+	 * Removes all nodes from the heap.
+	 *
+	 * @post The heap is empty.
+	 * 		| new.isEmpty()
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	/**
+	 * Moves the given node up from the given position until its parent has a smaller key.
+	 */
+	private void siftUp(int i, int node) {
+		double key = keys[node];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			int parentNode = heap[parent];
+			if (keys[parentNode] <= key)
+				break;
+			heap[i] = parentNode;
+			position[parentNode] = i;
+			i = parent;
+		}
+		heap[i] = node;
+		position[node] = i;
+	}
+
+	/**
+	 * Moves the given node down from the given position until its children have larger keys.
+	 */
+	private void siftDown(int i, int node) {
+		double key = keys[node];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int childNode = heap[child];
+			int right = child + 1;
+			if (right < size && keys[heap[right]] < keys[childNode]) {
+				child = right;
+				childNode = heap[right];
+			}
+			if (key <= keys[childNode])
+				break;
+			heap[i] = childNode;
+			position[childNode] = i;
+			i = child;
+		}
+		heap[i] = node;
+		position[node] = i;
+	}
+}
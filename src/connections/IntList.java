@@ -0,0 +1,107 @@
+package connections;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive integers, used by the route planners to keep indices without boxing them.
+ *
+ * @invar The number of elements never exceeds the capacity of the backing array.
+ * 		| size() <= elements.length
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+class IntList {
+
+	/**
+	 * The backing array of this list.
+	 */
+	private int[] elements;
+
+	/**
+	 * The number of elements in this list.
+	 */
+	private int size = 0;
+
+	/**
+	 * Initialize a new empty list.
+	 */
+	IntList() {
+		this(4);
+	}
+
+	/**
+	 * Initialize a new empty list with room for the given number of elements.
+	 *
+	 * @param capacity The initial capacity of the list.
+	 */
+	IntList(int capacity) {
+		elements = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Returns the number of elements in this list.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the element at the given index.
+	 *
+	 * @pre The index is within the bounds of this list.
+	 * 		| 0 <= index && index < size()
+	 */
+	int get(int index) {
+		assert index < size;
+		return elements[index];
+	}
+
+	/**
+	 * Replaces the element at the given index by the given value.
+	 *
+	 * @pre The index is within the bounds of this list.
+	 * 		| 0 <= index && index < size()
+	 */
+	void set(int index, int value) {
+		assert index < size;
+		elements[index] = value;
+	}
+
+	/**
+	 * Appends the given value at the end of this list.
+	 *
+	 * @post The given value is the last element of this list.
+	 * 		| new.get(size()) == value
+	 */
+	void add(int value) {
+		if (size == elements.length)
+			elements = Arrays.copyOf(elements, size * 2);
+		elements[size++] = value;
+	}
+
+	/**
+	 * Removes and returns the last element of this list.
+	 *
+	 * @pre The list is not empty.
+	 * 		| size() > 0
+	 */
+	int removeLast() {
+		assert size > 0;
+		return elements[--size];
+	}
+
+	/**
+	 * Removes all elements from this list, keeping its capacity.
+	 */
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Returns the elements of this list as a new array.
+	 */
+	int[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+}
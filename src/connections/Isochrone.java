@@ -0,0 +1,204 @@
+package connections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class of isochrones, holding every location that can be reached from a start location within a budget of
+ * travel time, and every road that can only be travelled partly within that budget.
+ *
+ * An isochrone is computed by a search from the start location that stops as soon as the next location would be
+ * reached after the budget. Each thread reuses its own search state, so many isochrones can be computed one after
+ * the other and on several threads at once without allocating new search arrays.
+ *
+ * The travel time of a road is assumed to be spread evenly over its length, so the reachable fraction of a partly
+ * reachable road is the part of the budget left at its reachable endpoint divided by its travel time.
+ *
+ * @invar Each reachable location is reached within the budget.
+ * 		| for each I in 0..getReachableLocations().length-1:
+ * 		|	getTravelTimes()[I] <= getBudget()
+ * @invar The reachable fraction of each partly reachable road lies between zero and one.
+ * 		| for each I in 0..getPartialRoads().length-1:
+ * 		|	0 <= getReachableFractions()[I] && getReachableFractions()[I] < 1
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class Isochrone {
+
+	/**
+	 * The search state of each thread computing isochrones.
+	 */
+	private static final ThreadLocal<SearchSpace> searches = ThreadLocal.withInitial(SearchSpace::new);
+
+	/**
+	 * The location from which this isochrone was computed.
+	 */
+	private final Location start;
+
+	/**
+	 * The travel time in seconds within which this isochrone was computed.
+	 */
+	private final float budget;
+
+	/**
+	 * The locations reachable within the budget, in order of travel time.
+	 */
+	private final Location[] locations;
+
+	/**
+	 * The travel time in seconds to each reachable location.
+	 */
+	private final float[] travelTimes;
+
+	/**
+	 * The roads leaving a reachable location towards a location that is not reachable within the budget.
+	 */
+	private final Road[] partialRoads;
+
+	/**
+	 * The fraction of the length of each partly reachable road that can be travelled within the budget.
+	 */
+	private final float[] fractions;
+
+	/**
+	 * The number of locations settled while computing this isochrone.
+	 */
+	private final int settledCount;
+
+	/**
+	 * Initialize a new isochrone with the given start, budget, reachable locations and partly reachable roads.
+	 */
+	private Isochrone(Location start, float budget, Location[] locations, float[] travelTimes, Road[] partialRoads,
+			float[] fractions, int settledCount) {
+		this.start = start;
+		this.budget = budget;
+		this.locations = locations;
+		this.travelTimes = travelTimes;
+		this.partialRoads = partialRoads;
+		this.fractions = fractions;
+		this.settledCount = settledCount;
+	}
+
+	/**
+	 * Computes the isochrone of the given start location within the given travel time, using the current travel time
+	 * of each road in the direction it is travelled.
+	 *
+	 * @param start  The location from which to travel.
+	 * @param budget The travel time in seconds within which locations must be reached.
+	 * @return The isochrone of the given start location within the given budget.
+	 * 		| result.getStart() == start && result.getBudget() == budget
+	 * @throws NullPointerException
+	 * 		The given start location is null
+	 * 		| start == null
+	 * @throws IllegalArgumentException
+	 * 		The given start location is terminated, or the given budget is negative or not a number
+	 * 		| start.isTerminated() || !(budget >= 0)
+	 */
+	public static Isochrone calculate(Location start, float budget) throws NullPointerException, IllegalArgumentException {
+		if (start == null)
+			throw new NullPointerException();
+		if (start.isTerminated() || !(budget >= 0))
+			throw new IllegalArgumentException();
+		SearchSpace space = searches.get();
+		space.reset();
+		IntList reached = new IntList();
+		int origin = space.indexOf(start);
+		space.distance[origin] = 0;
+		space.heap.insertOrDecrease(origin, 0);
+		while (!space.heap.isEmpty()) {
+			int u = space.heap.poll();
+			space.settled++;
+			reached.add(u);
+			Location location = space.locations[u];
+			double distance = space.distance[u];
+			for (Road road : location.getAdjoiningRoadsView()) {
+				double newDistance = distance + road.calculateTravelTimeFrom(location);
+				if (newDistance > budget)
+					continue;
+				int v = space.indexOf(road.getOtherEndPoint(location));
+				if (newDistance < space.distance[v]) {
+					space.distance[v] = newDistance;
+					space.heap.insertOrDecrease(v, newDistance);
+				}
+			}
+		}
+
+		Location[] locations = new Location[reached.size()];
+		float[] travelTimes = new float[reached.size()];
+		List<Road> partialRoads = new ArrayList<>();
+		float[] fractions = new float[16];
+		for (int i = 0; i < reached.size(); i++) {
+			int u = reached.get(i);
+			Location location = space.locations[u];
+			double distance = space.distance[u];
+			locations[i] = location;
+			travelTimes[i] = (float) distance;
+			for (Road road : location.getAdjoiningRoadsView()) {
+				float time = road.calculateTravelTimeFrom(location);
+				if (time == Float.POSITIVE_INFINITY)
+					continue;
+				int v = space.find(road.getOtherEndPoint(location));
+				if (v >= 0 && space.distance[v] <= budget)
+					continue;
+				if (partialRoads.size() == fractions.length)
+					fractions = Arrays.copyOf(fractions, fractions.length * 2);
+				fractions[partialRoads.size()] = (float) Math.min((budget - distance) / time, Math.nextDown(1f));
+				partialRoads.add(road);
+			}
+		}
+		return new Isochrone(start, budget, locations, travelTimes, partialRoads.toArray(new Road[0]),
+				Arrays.copyOf(fractions, partialRoads.size()), space.settled);
+	}
+
+	/**
+	 * Returns the location from which this isochrone was computed.
+	 */
+	public Location getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the travel time in seconds within which this isochrone was computed.
+	 */
+	public float getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Returns the locations reachable within the budget, in order of travel time.
+	 */
+	public Location[] getReachableLocations() {
+		return locations.clone();
+	}
+
+	/**
+	 * Returns the travel time in seconds to each reachable location, in the order of the reachable locations.
+	 */
+	public float[] getTravelTimes() {
+		return travelTimes.clone();
+	}
+
+	/**
+	 * Returns the roads that can only be travelled partly within the budget, each from its reachable endpoint.
+	 */
+	public Road[] getPartialRoads() {
+		return partialRoads.clone();
+	}
+
+	/**
+	 * Returns the fraction of the length of each partly reachable road that can be travelled within the budget,
+	 * in the order of the partly reachable roads.
+	 */
+	public float[] getReachableFractions() {
+		return fractions.clone();
+	}
+
+	/**
+	 * Returns the number of locations settled while computing this isochrone.
+	 */
+	public int getSettledCount() {
+		return settledCount;
+	}
+}
@@ -0,0 +1,393 @@
+package connections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+
+/**
+ * A class of landmark tables giving lower bounds on the travel time between the locations of a network.
+ * For each landmark, the travel times from the landmark to every location and from every location to the landmark
+ * are precomputed, and the triangle inequality turns them into a lower bound on the travel time between any two
+ * locations. Unlike a bound based on straight-line distance, these bounds stay tight when the average speed of the
+ * roads differs widely.
+ *
+ * The travel times are computed at the average speed of each road, without delays or blocks, and alternating roads
+ * are considered in both directions, so the bounds remain valid when delays, blocks or directions change. A table
+ * observes its roads: once a road becomes faster than it was when the travel times were computed, because its length
+ * or average speed changed, the table is out of date and gives no bounds until it is recomputed. Roads added later
+ * are only part of the table after it is recomputed.
+ *
+ * @invar The number of landmarks does not exceed the number of locations.
+ * 		| getLandmarkCount() <= getLocationCount()
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class Landmarks implements RoadObserver {
+
+	/**
+	 * The relative rounding error allowed for each travel time stored as a float.
+	 */
+	private static final double ROUNDING_SLACK = 0x1p-22;
+
+	/**
+	 * The locations of this table, in the order in which a Hilbert curve through their coordinates visits them.
+	 */
+	private final Location[] locations;
+
+	/**
+	 * Map from each location of this table to its index.
+	 */
+	private final IdentityHashMap<Location, Integer> indices = new IdentityHashMap<>();
+
+	/**
+	 * The index of each landmark.
+	 */
+	private final int[] landmarks;
+
+	/**
+	 * The travel time from each landmark to each location, stored per location so the entries of one location are
+	 * adjacent. The entry of landmark i and location v is at v * getLandmarkCount() + i.
+	 */
+	private float[] fromLandmark;
+
+	/**
+	 * The travel time from each location to each landmark, stored like the travel times from the landmarks.
+	 */
+	private float[] toLandmark;
+
+	/**
+	 * The travel time at average speed of each road of this table when the travel times were computed.
+	 */
+	private volatile IdentityHashMap<Road, Double> roadTimes = new IdentityHashMap<>();
+
+	/**
+	 * Variable registering whether no road became faster since the travel times were computed. Writing it publishes
+	 * the travel times to threads reading it.
+	 */
+	private volatile boolean isUpToDate = false;
+
+	/**
+	 * The number of times a road became faster, guarded by this table.
+	 */
+	private int speedUps = 0;
+
+	/**
+	 * The roads leaving each location and the roads arriving at each location, in compressed sparse row form.
+	 */
+	private int[] outFirst, outHead, inFirst, inHead;
+
+	/**
+	 * The travel time of each road leaving and arriving at each location.
+	 */
+	private double[] outTime, inTime;
+
+	/**
+	 * Initialize a new landmark table over the given locations and all roads between them, choosing the given number
+	 * of landmarks far away from each other.
+	 *
+	 * @param locations The locations of the network.
+	 * @param count     The number of landmarks to choose.
+	 * @post The table has the given number of landmarks, or one per location if there are fewer locations.
+	 * 		| new.getLandmarkCount() == Math.min(count, locations.size())
+	 * @throws NullPointerException
+	 * 		The given collection is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 * @throws IllegalArgumentException
+	 * 		The given count is not positive, or one of the given locations is terminated or given twice
+	 * 		| count <= 0 || for some location in locations: location.isTerminated()
+	 */
+	public Landmarks(Collection<Location> locations, int count) throws NullPointerException, IllegalArgumentException {
+		if (count <= 0)
+			throw new IllegalArgumentException();
+		this.locations = HilbertCurve.sort(locations).toArray(new Location[0]);
+		for (int i = 0; i < this.locations.length; i++) {
+			if (this.locations[i].isTerminated() || indices.put(this.locations[i], i) != null)
+				throw new IllegalArgumentException();
+		}
+		int n = this.locations.length;
+		landmarks = new int[Math.min(count, n)];
+		buildGraph();
+		chooseLandmarks();
+		roadTimes = new IdentityHashMap<>();
+		recompute();
+	}
+
+	/**
+	 * Returns the number of locations in this table.
+	 */
+	public int getLocationCount() {
+		return locations.length;
+	}
+
+	/**
+	 * Returns the number of landmarks of this table.
+	 */
+	public int getLandmarkCount() {
+		return landmarks.length;
+	}
+
+	/**
+	 * Returns the landmark at the given index.
+	 *
+	 * @param index The index of the landmark.
+	 * @throws IndexOutOfBoundsException
+	 * 		The given index is not the index of a landmark
+	 * 		| index < 0 || index >= getLandmarkCount()
+	 */
+	public Location getLandmark(int index) throws IndexOutOfBoundsException {
+		return locations[landmarks[index]];
+	}
+
+	/**
+	 * Checks whether no road became faster since the travel times of this table were computed, so that it gives
+	 * lower bounds.
+	 */
+	public boolean isUpToDate() {
+		return isUpToDate;
+	}
+
+	/**
+	 * Recomputes the travel times of this table from the current lengths and average speeds of the roads between
+	 * its locations, keeping the same landmarks, and starts observing roads added since.
+	 *
+	 * @post The table is up to date, unless a road became faster while it was recomputed.
+	 */
+	public void recompute() {
+		int seen;
+		synchronized (this) {
+			seen = speedUps;
+			isUpToDate = false;
+		}
+		IdentityHashMap<Road, Double> previous = roadTimes;
+		buildGraph();
+		for (Road road : roadTimes.keySet()) {
+			if (!previous.containsKey(road)) {
+				road.addObserver(this);
+				// Check the road again once it is observed, so no speed-up made since it was read is missed.
+				roadChanged(road);
+			}
+		}
+		computeTravelTimes();
+		synchronized (this) {
+			// A road made faster after it was read leaves the new travel times out of date as well.
+			if (speedUps == seen)
+				isUpToDate = true;
+		}
+	}
+
+	/**
+	 * Marks this table out of date if the given road became faster than it was when the travel times were computed.
+	 *
+	 * @param road The road that changed.
+	 */
+	@Override
+	public void roadChanged(Road road) {
+		Double time = roadTimes.get(road);
+		if (time == null || road.getLength() / road.getRoadSpeed() >= time)
+			return;
+		synchronized (this) {
+			speedUps++;
+			isUpToDate = false;
+		}
+	}
+
+	/**
+	 * Stops observing the roads of this table, after which it no longer notices roads becoming faster.
+	 */
+	public void detach() {
+		for (Road road : roadTimes.keySet())
+			road.removeObserver(this);
+	}
+
+	/**
+	 * Returns a lower bound on the travel time in seconds from the given location to the other given location.
+	 *
+	 * @param from The location at which the travel starts.
+	 * @param to   The location at which the travel ends.
+	 * @return A travel time no larger than that of the fastest route from the one location to the other, or zero if
+	 * 			one of them is not part of this table or the table is not up to date.
+	 * 		| result >= 0
+	 */
+	public double getLowerBound(Location from, Location to) {
+		return lowerBound(indexOf(from), indexOf(to));
+	}
+
+	/**
+	 * Returns the index of the given location in this table, or -1 if it is not part of this table.
+	 */
+	int indexOf(Location location) {
+		Integer index = indices.get(location);
+		if (index == null)
+			return -1;
+		return index;
+	}
+
+	/**
+	 * Returns a lower bound on the travel time in seconds between the locations at the given indices, or zero if this
+	 * table is not up to date. Travel times that are infinite give no bound and are skipped.
+	 *
+	 * @param from The index of the location at which the travel starts, or -1.
+	 * @param to   The index of the location at which the travel ends, or -1.
+	 */
+	double lowerBound(int from, int to) {
+		if (from < 0 || to < 0 || from == to || !isUpToDate)
+			return 0;
+		float[] fromLandmark = this.fromLandmark, toLandmark = this.toLandmark;
+		int k = landmarks.length;
+		double bound = 0;
+		for (int i = 0; i < k; i++) {
+			// From the landmark to the end, no faster than through the start.
+			double ahead = fromLandmark[to * k + i];
+			double behind = fromLandmark[from * k + i];
+			if (ahead != Float.POSITIVE_INFINITY && behind != Float.POSITIVE_INFINITY)
+				bound = Math.max(bound, ahead - behind - (ahead + behind) * ROUNDING_SLACK);
+			// From the start to the landmark, no faster than through the end.
+			ahead = toLandmark[from * k + i];
+			behind = toLandmark[to * k + i];
+			if (ahead != Float.POSITIVE_INFINITY && behind != Float.POSITIVE_INFINITY)
+				bound = Math.max(bound, ahead - behind - (ahead + behind) * ROUNDING_SLACK);
+		}
+		return bound;
+	}
+
+	/**
+	 * Collects the roads between the locations of this table with their travel time at average speed, in both
+	 * directions in which they can be travelled now or after a change of direction.
+	 */
+	private void buildGraph() {
+		int n = locations.length;
+		outFirst = new int[n + 1];
+		inFirst = new int[n + 1];
+		int[] outFill = null, inFill = null;
+		IdentityHashMap<Road, Double> times = new IdentityHashMap<>();
+		for (int pass = 0; pass < 2; pass++) {
+			if (pass == 1) {
+				for (int v = 0; v < n; v++) {
+					outFirst[v + 1] += outFirst[v];
+					inFirst[v + 1] += inFirst[v];
+				}
+				outHead = new int[outFirst[n]];
+				inHead = new int[inFirst[n]];
+				outTime = new double[outFirst[n]];
+				inTime = new double[inFirst[n]];
+				outFill = Arrays.copyOf(outFirst, n);
+				inFill = Arrays.copyOf(inFirst, n);
+			}
+			for (int u = 0; u < n; u++) {
+				for (Road road : locations[u].getAdjoiningRoadsView()) {
+					Integer v = indices.get(road.getOtherEndPoint(locations[u]));
+					if (v == null || v == u || road.isTerminated() || locations[u] != road.getEndPoint1())
+						continue;
+					boolean isAlternating = road instanceof AlternatingRoad;
+					boolean towardsTwo = isAlternating || road.canTravelTowardsEndPointTwo();
+					boolean towardsOne = isAlternating || road.canTravelTowardsEndPointOne();
+					if (pass == 0) {
+						if (towardsTwo) {
+							outFirst[u + 1]++;
+							inFirst[v + 1]++;
+						}
+						if (towardsOne) {
+							outFirst[v + 1]++;
+							inFirst[u + 1]++;
+						}
+						continue;
+					}
+					double time = road.getLength() / road.getRoadSpeed();
+					times.put(road, time);
+					if (towardsTwo) {
+						outTime[outFill[u]] = time;
+						outHead[outFill[u]++] = v;
+						inTime[inFill[v]] = time;
+						inHead[inFill[v]++] = u;
+					}
+					if (towardsOne) {
+						outTime[outFill[v]] = time;
+						outHead[outFill[v]++] = u;
+						inTime[inFill[u]] = time;
+						inHead[inFill[u]++] = v;
+					}
+				}
+			}
+		}
+		roadTimes = times;
+	}
+
+	/**
+	 * Chooses the landmarks one by one, each time taking the location farthest from the landmarks chosen so far.
+	 * The first landmark is the location farthest from the first location. Locations that cannot be reached from any
+	 * chosen landmark are the farthest of all.
+	 */
+	private void chooseLandmarks() {
+		int n = locations.length;
+		if (n == 0)
+			return;
+		double[] nearest = new double[n];
+		double[] distance = new double[n];
+		IndexedMinHeap heap = new IndexedMinHeap(n);
+		dijkstra(0, outFirst, outHead, outTime, distance, heap);
+		landmarks[0] = farthest(distance);
+		for (int i = 0; i < landmarks.length; i++) {
+			if (i > 0)
+				landmarks[i] = farthest(nearest);
+			dijkstra(landmarks[i], outFirst, outHead, outTime, distance, heap);
+			for (int v = 0; v < n; v++)
+				nearest[v] = i == 0 ? distance[v] : Math.min(nearest[v], distance[v]);
+			for (int j = 0; j <= i; j++)
+				nearest[landmarks[j]] = -1;
+		}
+	}
+
+	/**
+	 * Returns the index with the largest value in the given array.
+	 */
+	private static int farthest(double[] values) {
+		int best = 0;
+		for (int v = 1; v < values.length; v++) {
+			if (values[v] > values[best])
+				best = v;
+		}
+		return best;
+	}
+
+	/**
+	 * Computes the travel times from and to each landmark.
+	 */
+	private void computeTravelTimes() {
+		int n = locations.length;
+		int k = landmarks.length;
+		float[] fromLandmark = new float[k * n], toLandmark = new float[k * n];
+		double[] distance = new double[n];
+		IndexedMinHeap heap = new IndexedMinHeap(n);
+		for (int i = 0; i < k; i++) {
+			dijkstra(landmarks[i], outFirst, outHead, outTime, distance, heap);
+			for (int v = 0; v < n; v++)
+				fromLandmark[v * k + i] = (float) distance[v];
+			dijkstra(landmarks[i], inFirst, inHead, inTime, distance, heap);
+			for (int v = 0; v < n; v++)
+				toLandmark[v * k + i] = (float) distance[v];
+		}
+		this.fromLandmark = fromLandmark;
+		this.toLandmark = toLandmark;
+	}
+
+	/**
+	 * Computes the travel time from the given source to each location over the given roads.
+	 */
+	private static void dijkstra(int source, int[] first, int[] head, double[] time, double[] distance, IndexedMinHeap heap) {
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		heap.clear();
+		distance[source] = 0;
+		heap.insertOrDecrease(source, 0);
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			for (int i = first[u]; i < first[u + 1]; i++) {
+				double newDistance = distance[u] + time[i];
+				if (newDistance < distance[head[i]]) {
+					distance[head[i]] = newDistance;
+					heap.insertOrDecrease(head[i], newDistance);
+				}
+			}
+		}
+	}
+}
@@ -1,8 +1,11 @@
 package connections;
 import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Immutable;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A class of locations where each location has an address and a longitude and latitude coordinate.
@@ -47,12 +50,25 @@ public class Location {
 	/**
 	 * Variable registering whether or not this location has been terminated.
 	 */
-	private boolean isTerminated = false;
+	private volatile boolean isTerminated = false;
+
+	/**
+	 * Variable registering the index to be given to the next location created.
+	 */
+	private static final AtomicInteger nextIndex = new AtomicInteger();
+
+	/**
+	 * Variable registering the index of this location, which is unique among all locations ever created. Indices
+	 * are handed out in order from zero, so searches can keep their labels in arrays indexed by them.
+	 */
+	private final int index = nextIndex.getAndIncrement();
 
 	/**
 	 * Variable referencing a map collecting all the adjoining roads connected to each location.
+	 * Roads can be added and removed while other threads iterate over it; an iteration sees each road that stays
+	 * adjoining throughout it and never fails because of a concurrent change.
 	 */
-	private final Set<Road> roadMap = new HashSet<>();
+	private final Set<Road> roadMap = ConcurrentHashMap.newKeySet();
 
 	/**
 	 * Initialize a new Location that is not terminated, with given Address, and set of Longitude and Latitude coordinates
@@ -74,6 +90,15 @@ public class Location {
 		this.setAddress(address);
 	}
 
+	/**
+	 * Return the index of this location.
+	 */
+	@Basic
+	@Immutable
+	int getIndex() {
+		return index;
+	}
+
 	/**
 	 * Return the address of this location.
 	 */
@@ -135,6 +160,19 @@ public class Location {
 		return clone;
 	}
 
+	/**
+	 * Returns the straight-line distance between the coordinates of this location and the given location.
+	 *
+	 * @param other The location to measure the distance to.
+	 * @return The euclidian distance between both coordinates.
+	 * 		| result == sqrt((x2-x1)^2+(y2-y1)^2)
+	 */
+	public double getDistanceTo(Location other) {
+		double xdif = other.coordinate[0] - this.coordinate[0];
+		double ydif = other.coordinate[1] - this.coordinate[1];
+		return Math.sqrt((xdif * xdif) + (ydif * ydif));
+	}
+
 	/**
 	 * Checks to see if the given coordinate is valid.
 	 * @param coordinate The coordinate to check
@@ -238,6 +276,15 @@ public class Location {
 		return cloneSet;
 	}
 	
+	/**
+	 * Returns the adjoining roads of this location without copying them, for use by the route planners.
+	 * The returned set must not be modified.
+	 * 		| result == roadMap
+	 */
+	Set<Road> getAdjoiningRoadsView() {
+		return roadMap;
+	}
+
 	/**
 	 * Adds an adjoining road to the given location
 	 * @param road the Road to add to the given location
@@ -254,6 +301,22 @@ public class Location {
 		this.roadMap.add(road);
 	}
 	
+	/**
+	 * Adds each of the given roads to the adjoining roads of both its endpoints.
+	 * @param roads The roads to add
+	 * @pre Each of the given roads is effective and not terminated
+	 * 		| for each road in roads: road != null && !road.isTerminated()
+	 * @post
+	 * 		| for each road in roads:
+	 * 		|	road.getEndPoint1().hasAsAdjoiningRoad(road) && road.getEndPoint2().hasAsAdjoiningRoad(road)
+	 */
+	static void addAdjoiningRoads(Collection<? extends Road> roads) {
+		for (Road road : roads) {
+			road.getEndPoint1().roadMap.add(road);
+			road.getEndPoint2().roadMap.add(road);
+		}
+	}
+
 	/**
 	 * Removes an adjoining road from the given location
 	 * @param road the Road to remove from the given location
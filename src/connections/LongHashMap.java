@@ -0,0 +1,154 @@
+package connections;
+
+import java.util.Arrays;
+
+/**
+ * A class of hash maps from primitive long keys to values, using open addressing with linear probing, so lookups
+ * neither box their key nor allocate.
+ *
+ * @param <V> The type of the values.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+class LongHashMap<V> {
+
+	/**
+	 * The key in each slot.
+	 */
+	private long[] keys;
+
+	/**
+	 * The value in each slot, or null if the slot is empty.
+	 */
+	private Object[] values;
+
+	/**
+	 * The number of entries.
+	 */
+	private int size = 0;
+
+	/**
+	 * Initialize a new empty map.
+	 */
+	LongHashMap() {
+		keys = new long[16];
+		values = new Object[16];
+	}
+
+	/**
+	 * Returns the number of entries of this map.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the value of the given key, or null if this map has no entry for it.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		int mask = keys.length - 1;
+		for (int slot = slotOf(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key)
+				return (V) values[slot];
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether this map has an entry for the given key.
+	 */
+	boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Maps the given key to the given value.
+	 *
+	 * @pre The given value is not null
+	 * 		| value != null
+	 * @return The previous value of the given key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	V put(long key, V value) {
+		assert value != null;
+		if (2 * (size + 1) > keys.length)
+			grow();
+		int mask = keys.length - 1;
+		int slot = slotOf(key, mask);
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		return null;
+	}
+
+	/**
+	 * Removes the entry of the given key if the key is mapped to the given value.
+	 *
+	 * @return True if the entry was removed.
+	 */
+	boolean remove(long key, V value) {
+		int mask = keys.length - 1;
+		int slot = slotOf(key, mask);
+		while (values[slot] != null && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		if (values[slot] == null || values[slot] != value)
+			return false;
+		// Shift the following entries of the probe sequence back, so no lookup stops at the emptied slot.
+		int hole = slot;
+		for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+			int home = slotOf(keys[next], mask);
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+		}
+		values[hole] = null;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Removes all entries of this map.
+	 */
+	void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Doubles the number of slots of this map.
+	 */
+	@SuppressWarnings("unchecked")
+	private void grow() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[2 * oldKeys.length];
+		values = new Object[2 * oldValues.length];
+		size = 0;
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldValues[slot] != null)
+				put(oldKeys[slot], (V) oldValues[slot]);
+		}
+	}
+
+	/**
+	 * Returns the first slot in which the given key is looked for.
+	 */
+	private static int slotOf(long key, int mask) {
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+}
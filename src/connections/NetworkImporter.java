@@ -0,0 +1,512 @@
+package connections;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A class of importers that stream locations and roads from line-delimited text files into the network, reading
+ * each file once and holding only a single line and one batch of roads of it at any time.
+ *
+ * Each non-empty line that does not start with '#' describes a location or a road, with fields separated by commas:
+ * 		| L,key,x,y,address
+ * 		| R,kind,id,key1,key2,length,speedlimit,roadspeed
+ * The key of a location is a name without commas, used by the roads of all files read by the same importer to refer
+ * to their endpoints. The address of a location is the remainder of its line and may contain commas. The kind of a
+ * road is ONE_WAY, TWO_WAY or ALTERNATING, its length is an integer number of meters and its speeds are in meters
+ * per second. The IDs of the roads must respect the ID length limits of roads, which must be raised before
+ * importing networks with more roads than the default limits allow.
+ *
+ * Roads are created without registering their ID and adding them to the adjoining roads of their endpoints one at
+ * a time. Instead, an importer collects the lines of a batch of roads, creates the roads of the whole batch, checks
+ * each ID against the IDs of all roads and of the batch, and registers the IDs of the batch and adds its roads to the
+ * adjoining roads of their endpoints all at once. Each ID is claimed atomically when it is registered, so an ID taken
+ * by another thread after the check still makes the batch fail, and the IDs the batch already claimed are released
+ * again. A batch ends after the batch size of the importer is reached and before each location line, since roads
+ * only refer to the locations before them. A batch is only added to the network when all of its lines are valid, so
+ * an invalid line leaves the roads of its batch out of the network, while the locations and the batches before it
+ * stay part of it. The roads of a batch only lower the bound of roads on the travel time per distance once the batch
+ * is added, so a rejected batch leaves that bound and the memoized totals of routes as they were.
+ *
+ * An importer with a parallelism above one creates the roads of each batch, registers their IDs and adds them to
+ * their endpoints with that many threads, splitting the batch into ranges in a fork-join pool. The registry of road
+ * IDs is striped and the adjoining roads of a location can be changed concurrently, so the threads rarely wait for
+ * each other. Lines are still read and locations still created by the calling thread only.
+ *
+ * @invar The batch size of each importer is positive.
+ * 		| getBatchSize() > 0
+ * @invar The parallelism of each importer is positive.
+ * 		| getParallelism() > 0
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class NetworkImporter {
+
+	/**
+	 * The number of roads registered at once by importers that are not given a batch size.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 4096;
+
+	/**
+	 * The largest number of lines of a batch handled as a single task by importers with a parallelism above one.
+	 */
+	private static final int FORK_THRESHOLD = 256;
+
+	/**
+	 * The number of roads registered at once by this importer.
+	 */
+	private final int batchSize;
+
+	/**
+	 * The number of threads handling each batch of this importer.
+	 */
+	private final int parallelism;
+
+	/**
+	 * Map from the key of each location imported by this importer to that location.
+	 */
+	private final Map<String, Location> locations = new HashMap<>();
+
+	/**
+	 * The road lines read since the last batch was registered.
+	 */
+	private final List<String> batchLines = new ArrayList<>();
+
+	/**
+	 * The number of each road line read since the last batch was registered, within its file.
+	 */
+	private long[] batchLineNumbers = new long[16];
+
+	/**
+	 * Map from the packed IDs of the roads read since the last batch was registered to those roads.
+	 */
+	private final LongHashMap<Road> batchIDs = new LongHashMap<>();
+
+	/**
+	 * The number of lines read by this importer.
+	 */
+	private long lineCount = 0;
+
+	/**
+	 * The number of roads added to the network by this importer.
+	 */
+	private long roadCount = 0;
+
+	/**
+	 * The time in nanoseconds spent reading files by this importer.
+	 */
+	private long elapsedNanos = 0;
+
+	/**
+	 * Initialize a new importer with the default batch size.
+	 *
+	 * @post The batch size of the new importer is the default batch size.
+	 * 		| new.getBatchSize() == DEFAULT_BATCH_SIZE
+	 */
+	public NetworkImporter() {
+		this(DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Initialize a new importer with the given batch size.
+	 *
+	 * @param batchSize The number of roads to register at once.
+	 * @post The batch size of the new importer is the given batch size.
+	 * 		| new.getBatchSize() == batchSize
+	 * @throws IllegalArgumentException
+	 * 		The given batch size is not positive
+	 * 		| batchSize <= 0
+	 */
+	public NetworkImporter(int batchSize) throws IllegalArgumentException {
+		this(batchSize, 1);
+	}
+
+	/**
+	 * Initialize a new importer with the given batch size, handling each batch with the given number of threads.
+	 *
+	 * @param batchSize   The number of roads to register at once.
+	 * @param parallelism The number of threads handling each batch.
+	 * @post The batch size of the new importer is the given batch size.
+	 * 		| new.getBatchSize() == batchSize
+	 * @post The parallelism of the new importer is the given parallelism.
+	 * 		| new.getParallelism() == parallelism
+	 * @throws IllegalArgumentException
+	 * 		The given batch size or parallelism is not positive
+	 * 		| batchSize <= 0 || parallelism <= 0
+	 */
+	public NetworkImporter(int batchSize, int parallelism) throws IllegalArgumentException {
+		if (batchSize <= 0 || parallelism <= 0)
+			throw new IllegalArgumentException();
+		this.batchSize = batchSize;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Returns the number of roads registered at once by this importer.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Returns the number of threads handling each batch of this importer.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Reads the locations and roads of the file at the given path into the network.
+	 *
+	 * @param path The path of the file, encoded in UTF-8.
+	 * @throws IOException
+	 * 		The file could not be read
+	 * @throws IllegalArgumentException
+	 * 		A line of the file is not a valid location or road, refers to a location that was not imported before it,
+	 * 		reuses the key of an imported location or the ID of an existing road
+	 * @see #importFrom(Reader)
+	 */
+	public void importFrom(Path path) throws IOException, IllegalArgumentException {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			importFrom(reader);
+		}
+	}
+
+	/**
+	 * Reads the locations and roads of the given text into the network, without closing the reader.
+	 *
+	 * @param reader The reader of the text.
+	 * @post Every location of the text can be looked up by its key.
+	 * 		| for each line "L,key,..." of the text: new.getLocation(key) != null
+	 * @post Every road of the text is an adjoining road of both its endpoints.
+	 * @throws IOException
+	 * 		The text could not be read
+	 * @throws IllegalArgumentException
+	 * 		A line of the text is not a valid location or road, refers to a location that was not imported before it,
+	 * 		reuses the key of an imported location or the ID of an existing road
+	 */
+	public void importFrom(Reader reader) throws IOException, IllegalArgumentException {
+		long start = System.nanoTime();
+		BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		try {
+			String line;
+			long lineNumber = 0;
+			while ((line = lines.readLine()) != null) {
+				lineNumber++;
+				lineCount++;
+				if (line.isEmpty() || line.charAt(0) == '#')
+					continue;
+				if (line.startsWith("R,")) {
+					addToBatch(line, lineNumber);
+					if (batchLines.size() == batchSize)
+						registerBatch(pool);
+					continue;
+				}
+				registerBatch(pool);
+				try {
+					if (line.startsWith("L,"))
+						readLocation(line);
+					else
+						throw new IllegalArgumentException("unknown record");
+				}
+				catch (IllegalArgumentException exc) {
+					throw lineError(lineNumber, exc);
+				}
+			}
+			registerBatch(pool);
+		}
+		finally {
+			batchLines.clear();
+			batchIDs.clear();
+			if (pool != null)
+				pool.shutdown();
+			elapsedNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Returns an exception reporting the given exception at the line with the given number.
+	 */
+	private static IllegalArgumentException lineError(long lineNumber, IllegalArgumentException exc) {
+		String reason = exc.getMessage() == null ? "invalid record" : exc.getMessage();
+		return new IllegalArgumentException("Line " + lineNumber + ": " + reason, exc);
+	}
+
+	/**
+	 * Adds the given road line with the given number to the current batch.
+	 */
+	private void addToBatch(String line, long lineNumber) {
+		int index = batchLines.size();
+		if (index == batchLineNumbers.length)
+			batchLineNumbers = Arrays.copyOf(batchLineNumbers, 2 * index);
+		batchLines.add(line);
+		batchLineNumbers[index] = lineNumber;
+	}
+
+	/**
+	 * Creates the location described by the given line.
+	 */
+	private void readLocation(String line) throws IllegalArgumentException {
+		String[] fields = line.split(",", 5);
+		if (fields.length != 5)
+			throw new IllegalArgumentException("expected 5 fields");
+		double[] coordinate = {parseCoordinate(fields[2], "x"), parseCoordinate(fields[3], "y")};
+		if (locations.containsKey(fields[1]))
+			throw new IllegalArgumentException("duplicate location " + fields[1]);
+		locations.put(fields[1], new Location(coordinate, fields[4]));
+	}
+
+	/**
+	 * Creates the road described by the given line, without registering it.
+	 */
+	private Road readRoad(String line) throws IllegalArgumentException {
+		String[] fields = line.split(",", -1);
+		if (fields.length != 8)
+			throw new IllegalArgumentException("expected 8 fields");
+		String kind = fields[1];
+		if (!kind.equals("ONE_WAY") && !kind.equals("TWO_WAY") && !kind.equals("ALTERNATING"))
+			throw new IllegalArgumentException("unknown road kind " + kind);
+		String id = fields[2];
+		Location location1 = getImportedLocation(fields[3]);
+		Location location2 = getImportedLocation(fields[4]);
+		int length;
+		try {
+			length = Integer.parseInt(fields[5]);
+		}
+		catch (NumberFormatException exc) {
+			throw new IllegalArgumentException("invalid length " + fields[5]);
+		}
+		float speedlimit = parseSpeed(fields[6], "speed limit");
+		float roadSpeed = parseSpeed(fields[7], "road speed");
+		switch (kind) {
+			case "ONE_WAY":
+				return new One_way(id, location1, location2, length, speedlimit, roadSpeed, true);
+			case "TWO_WAY":
+				return new Two_way(id, location1, location2, length, speedlimit, roadSpeed, true);
+			default:
+				return new AlternatingRoad(id, location1, location2, length, speedlimit, roadSpeed, true);
+		}
+	}
+
+	/**
+	 * Returns the finite coordinate written in the given field of a location line.
+	 *
+	 * @param field The text of the field.
+	 * @param name  The name of the coordinate, used in the message of the exception.
+	 * @throws IllegalArgumentException
+	 * 		The field is not a finite number
+	 */
+	private static double parseCoordinate(String field, String name) throws IllegalArgumentException {
+		try {
+			double coordinate = Double.parseDouble(field);
+			if (Double.isFinite(coordinate))
+				return coordinate;
+		}
+		catch (NumberFormatException exc) {
+			// Reported below, naming the field instead of repeating the message of the parser.
+		}
+		throw new IllegalArgumentException("invalid " + name + " coordinate " + field);
+	}
+
+	/**
+	 * Returns the speed written in the given field of a road line.
+	 *
+	 * @param field The text of the field.
+	 * @param name  The name of the speed, used in the message of the exception.
+	 * @throws IllegalArgumentException
+	 * 		The field is not a number
+	 */
+	private static float parseSpeed(String field, String name) throws IllegalArgumentException {
+		try {
+			return Float.parseFloat(field);
+		}
+		catch (NumberFormatException exc) {
+			throw new IllegalArgumentException("invalid " + name + " " + field);
+		}
+	}
+
+	/**
+	 * Returns the non-terminated location imported with the given key.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		No such location exists
+	 */
+	private Location getImportedLocation(String key) throws IllegalArgumentException {
+		Location location = locations.get(key);
+		if (location == null || location.isTerminated())
+			throw new IllegalArgumentException("unknown location " + key);
+		return location;
+	}
+
+	/**
+	 * Creates the roads of the current batch, registers their IDs and adds them to the adjoining roads of their
+	 * endpoints, using the given pool if it is not null.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		A line of the batch is not a valid road or reuses the ID of an existing road; the first such line is
+	 * 		reported and no road of the batch is added to the network
+	 */
+	private void registerBatch(ForkJoinPool pool) throws IllegalArgumentException {
+		int count = batchLines.size();
+		if (count == 0)
+			return;
+		Road[] roads = new Road[count];
+		IllegalArgumentException[] failures = new IllegalArgumentException[count];
+		run(pool, count, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				try {
+					roads[i] = readRoad(batchLines.get(i));
+				}
+				catch (IllegalArgumentException exc) {
+					failures[i] = exc;
+				}
+			}
+		});
+		for (int i = 0; i < count; i++) {
+			if (failures[i] != null)
+				throw lineError(batchLineNumbers[i], failures[i]);
+			long packedID = roads[i].getPackedID();
+			if (Road.getRoad(packedID) != null || batchIDs.put(packedID, roads[i]) != null)
+				throw lineError(batchLineNumbers[i], new IllegalArgumentException("duplicate road " + roads[i].getID()));
+		}
+		List<Road> batch = Arrays.asList(roads);
+		// Another thread can still claim one of the IDs in the meantime, so register all of them before any road is
+		// added to its endpoints, and release them all again if one turns out to be taken.
+		Road[] conflicts = new Road[count];
+		run(pool, count, (from, to) -> conflicts[from] = Road.registerIDs(batch.subList(from, to)));
+		for (int i = 0; i < count; i++) {
+			if (conflicts[i] != null) {
+				Road.unregisterIDs(batch);
+				int line = batch.indexOf(conflicts[i]);
+				throw lineError(batchLineNumbers[line], new IllegalArgumentException("duplicate road " + conflicts[i].getID()));
+			}
+		}
+		run(pool, count, (from, to) -> {
+			Location.addAdjoiningRoads(batch.subList(from, to));
+			Road.registerDeferred(batch.subList(from, to));
+		});
+		roadCount += count;
+		batchLines.clear();
+		batchIDs.clear();
+	}
+
+	/**
+	 * Runs the given action over the range from zero to the given count, split over the threads of the given pool if
+	 * it is not null.
+	 */
+	private static void run(ForkJoinPool pool, int count, RangeAction action) {
+		if (pool == null)
+			action.run(0, count);
+		else
+			pool.invoke(new RangeTask(0, count, action));
+	}
+
+	/**
+	 * An interface for actions over a range of the lines of a batch.
+	 */
+	private interface RangeAction {
+
+		/**
+		 * Runs this action over the lines from the given index up to, but not including, the second given index.
+		 */
+		void run(int from, int to);
+	}
+
+	/**
+	 * A class of tasks running an action over a range of the lines of a batch, splitting the range in two halves run
+	 * in parallel as long as it is larger than the fork threshold.
+	 */
+	private static final class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The bounds of the range of this task.
+		 */
+		private final int from, to;
+
+		/**
+		 * The action of this task.
+		 */
+		private final RangeAction action;
+
+		/**
+		 * Initialize a new task running the given action over the given range.
+		 */
+		RangeTask(int from, int to, RangeAction action) {
+			this.from = from;
+			this.to = to;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= FORK_THRESHOLD) {
+				action.run(from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RangeTask(from, middle, action), new RangeTask(middle, to, action));
+		}
+	}
+
+	/**
+	 * Returns the location imported by this importer with the given key, or null if there is none.
+	 */
+	public Location getLocation(String key) {
+		return locations.get(key);
+	}
+
+	/**
+	 * Returns the number of locations imported by this importer.
+	 */
+	public int getLocationCount() {
+		return locations.size();
+	}
+
+	/**
+	 * Returns the number of roads added to the network by this importer.
+	 */
+	public long getRoadCount() {
+		return roadCount;
+	}
+
+	/**
+	 * Returns the number of lines read by this importer.
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Returns the time in nanoseconds spent reading files by this importer.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Returns the number of roads added to the network per second of reading files by this importer.
+	 *
+	 * @return Zero if no time was spent reading files.
+	 * 		| if (getElapsedNanos() == 0) then result == 0
+	 * 		| else result == getRoadCount() * 1e9 / getElapsedNanos()
+	 */
+	public double getRoadsPerSecond() {
+		if (elapsedNanos == 0)
+			return 0;
+		return roadCount * 1e9 / elapsedNanos;
+	}
+}
@@ -0,0 +1,412 @@
+package connections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * A class of compact snapshots of a network of locations and roads, holding the network in primitive arrays in
+ * compressed sparse row form so route searches can run over it without following object references.
+ *
+ * Each location and each road of a snapshot has an index. Locations are numbered in the order in which a Hilbert curve
+ * through their coordinates visits them, and roads in the order of the location they are first found at, so nearby
+ * locations and their arcs lie close together in memory. Each road has two directions with index 2 * road + 1
+ * towards its second endpoint and 2 * road towards its first endpoint. Each location has an arc for every direction
+ * of a road leaving it, stored contiguously. The lengths, average speeds, delays and blocks are copied from the roads
+ * when the snapshot is taken and whenever it is refreshed; a direction in which a road cannot be travelled at the
+ * time of the refresh counts as blocked. The topology of a snapshot never changes, so roads added to the network
+ * later are only part of a new snapshot.
+ *
+ * A snapshot published by a {@link SnapshotPublisher} is a frozen version: it is never refreshed, so every query over
+ * it sees the same travel times however long it runs. Versions of the same publisher share their topology. The travel
+ * times are held in chunks of a fixed number of roads, and a new version only copies the chunks of the roads that
+ * changed since the version before it and shares all other chunks with that version, so publishing a few changes
+ * costs time and memory in proportion to the number of roads divided by the chunk size, not to the number of roads.
+ *
+ * @invar Each arc leaves the location whose range it lies in.
+ * 		| for each V in 0..getLocationCount()-1, A in offsets[V]..offsets[V+1]-1:
+ * 		|	getArcSource(A) == V
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class NetworkSnapshot {
+
+	/**
+	 * The locations of this snapshot, in the order in which a Hilbert curve through their coordinates visits them.
+	 */
+	final Location[] locations;
+
+	/**
+	 * Map from each location of this snapshot to its index.
+	 */
+	private final IdentityHashMap<Location, Integer> locationIndices;
+
+	/**
+	 * The roads of this snapshot.
+	 */
+	private final Road[] roads;
+
+	/**
+	 * Map from each road of this snapshot to its index.
+	 */
+	private final IdentityHashMap<Road, Integer> roadIndices;
+
+	/**
+	 * The first arc of each location, followed by the number of arcs.
+	 */
+	final int[] offsets;
+
+	/**
+	 * The location at which each arc arrives.
+	 */
+	final int[] targets;
+
+	/**
+	 * The road direction travelled by each arc.
+	 */
+	final int[] arcDirections;
+
+	/**
+	 * The binary logarithm of the number of roads of a chunk.
+	 */
+	private static final int CHUNK_SHIFT = 10;
+
+	/**
+	 * The number of roads of a chunk.
+	 */
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	/**
+	 * The length in meters of each road, in chunks. The length of road r is held at [r >>> CHUNK_SHIFT] and
+	 * [r % CHUNK_SIZE].
+	 */
+	private final float[][] lengths;
+
+	/**
+	 * The average speed in meters per second of each road, in the same chunks as the lengths.
+	 */
+	private final float[][] speeds;
+
+	/**
+	 * The delay in seconds of each road direction, in the chunks of their roads. The delay of direction d is held at
+	 * [d >>> (CHUNK_SHIFT + 1)] and [d % (2 * CHUNK_SIZE)].
+	 */
+	private final float[][] delays;
+
+	/**
+	 * The road directions that are blocked or cannot be travelled, as bits in the chunks of their roads, at the same
+	 * positions as the delays.
+	 */
+	private final long[][] blocked;
+
+	/**
+	 * The coordinates of each location, two per location.
+	 */
+	final double[] coordinates;
+
+	/**
+	 * The version number of this snapshot given by its publisher, or zero if it was not published.
+	 */
+	private final long version;
+
+	/**
+	 * Initialize a new snapshot of the given locations and all roads between them.
+	 *
+	 * @param locations The locations of the network.
+	 * @throws NullPointerException
+	 * 		The given collection is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated or given twice
+	 * 		| for some location in locations: location.isTerminated()
+	 */
+	public NetworkSnapshot(Collection<Location> locations) throws NullPointerException, IllegalArgumentException {
+		this.locations = HilbertCurve.sort(locations).toArray(new Location[0]);
+		this.locationIndices = new IdentityHashMap<>();
+		this.roadIndices = new IdentityHashMap<>();
+		this.version = 0;
+		int n = this.locations.length;
+		coordinates = new double[2 * n];
+		for (int i = 0; i < n; i++) {
+			if (this.locations[i].isTerminated() || locationIndices.put(this.locations[i], i) != null)
+				throw new IllegalArgumentException();
+			double[] coordinate = this.locations[i].getCoordinate();
+			coordinates[2 * i] = coordinate[0];
+			coordinates[2 * i + 1] = coordinate[1];
+		}
+		List<Road> roadList = new ArrayList<>();
+		offsets = new int[n + 1];
+		for (int u = 0; u < n; u++) {
+			for (Road road : this.locations[u].getAdjoiningRoadsView()) {
+				Integer v = locationIndices.get(road.getOtherEndPoint(this.locations[u]));
+				if (v == null || v == u || road.isTerminated() || this.locations[u] != road.getEndPoint1())
+					continue;
+				roadIndices.put(road, roadList.size());
+				roadList.add(road);
+				offsets[u + 1]++;
+				offsets[v + 1]++;
+			}
+		}
+		roads = roadList.toArray(new Road[0]);
+		for (int u = 0; u < n; u++)
+			offsets[u + 1] += offsets[u];
+		targets = new int[offsets[n]];
+		arcDirections = new int[offsets[n]];
+		int[] fill = Arrays.copyOf(offsets, n);
+		for (int r = 0; r < roads.length; r++) {
+			int first = locationIndices.get(roads[r].getEndPoint1());
+			int second = locationIndices.get(roads[r].getEndPoint2());
+			targets[fill[first]] = second;
+			arcDirections[fill[first]++] = 2 * r + 1;
+			targets[fill[second]] = first;
+			arcDirections[fill[second]++] = 2 * r;
+		}
+		int chunkCount = (roads.length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+		lengths = new float[chunkCount][];
+		speeds = new float[chunkCount][];
+		delays = new float[chunkCount][];
+		blocked = new long[chunkCount][];
+		for (int c = 0; c < chunkCount; c++) {
+			int size = Math.min(CHUNK_SIZE, roads.length - (c << CHUNK_SHIFT));
+			lengths[c] = new float[size];
+			speeds[c] = new float[size];
+			delays[c] = new float[2 * size];
+			blocked[c] = new long[(2 * size + 63) >>> 6];
+		}
+		refresh();
+	}
+
+	/**
+	 * Initialize a new frozen version of the network of the given snapshot, sharing its topology and its travel times,
+	 * with the current state of the given roads copied in. Each chunk holding one of the given roads is copied before
+	 * it is changed; the other chunks are shared with the given snapshot if it is frozen, and copied otherwise, since
+	 * the travel times of a snapshot that is not frozen still change.
+	 *
+	 * @param previous     The snapshot whose network the new version holds.
+	 * @param changedRoads The indices of the roads whose state is copied in.
+	 * @param version      The version number of the new snapshot.
+	 * @pre The given version number is positive
+	 * 		| version > 0
+	 */
+	NetworkSnapshot(NetworkSnapshot previous, BitSet changedRoads, long version) {
+		assert version > 0;
+		this.locations = previous.locations;
+		this.locationIndices = previous.locationIndices;
+		this.roads = previous.roads;
+		this.roadIndices = previous.roadIndices;
+		this.offsets = previous.offsets;
+		this.targets = previous.targets;
+		this.arcDirections = previous.arcDirections;
+		this.coordinates = previous.coordinates;
+		this.lengths = previous.lengths.clone();
+		this.speeds = previous.speeds.clone();
+		this.delays = previous.delays.clone();
+		this.blocked = previous.blocked.clone();
+		this.version = version;
+		boolean[] isCopied = new boolean[lengths.length];
+		if (!previous.isFrozen()) {
+			for (int c = 0; c < lengths.length; c++)
+				copyChunk(c, isCopied);
+		}
+		for (int r = changedRoads.nextSetBit(0); r >= 0; r = changedRoads.nextSetBit(r + 1)) {
+			copyChunk(r >>> CHUNK_SHIFT, isCopied);
+			refresh(r);
+		}
+	}
+
+	/**
+	 * Replaces the chunk with the given index by a copy of it that only this snapshot uses, unless the given flags
+	 * register that it was already copied.
+	 */
+	private void copyChunk(int c, boolean[] isCopied) {
+		if (isCopied[c])
+			return;
+		lengths[c] = lengths[c].clone();
+		speeds[c] = speeds[c].clone();
+		delays[c] = delays[c].clone();
+		blocked[c] = blocked[c].clone();
+		isCopied[c] = true;
+	}
+
+	/**
+	 * Returns the version number of this snapshot given by its publisher, or zero if it was not published.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Checks whether this snapshot is a frozen version, whose travel times never change.
+	 *
+	 * @return True if and only if this snapshot was published.
+	 * 		| result == (getVersion() > 0)
+	 */
+	public boolean isFrozen() {
+		return version > 0;
+	}
+
+	/**
+	 * Returns the number of locations in this snapshot.
+	 */
+	public int getLocationCount() {
+		return locations.length;
+	}
+
+	/**
+	 * Returns the number of roads in this snapshot.
+	 */
+	public int getRoadCount() {
+		return roads.length;
+	}
+
+	/**
+	 * Returns the number of arcs in this snapshot, which is twice the number of roads.
+	 */
+	public int getArcCount() {
+		return targets.length;
+	}
+
+	/**
+	 * Returns the location at the given index.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		The given index is not the index of a location
+	 * 		| index < 0 || index >= getLocationCount()
+	 */
+	public Location getLocation(int index) throws IndexOutOfBoundsException {
+		return locations[index];
+	}
+
+	/**
+	 * Returns the index of the given location in this snapshot, or -1 if it is not part of this snapshot.
+	 */
+	public int indexOf(Location location) {
+		Integer index = locationIndices.get(location);
+		if (index == null)
+			return -1;
+		return index;
+	}
+
+	/**
+	 * Returns the road at the given index.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		The given index is not the index of a road
+	 * 		| index < 0 || index >= getRoadCount()
+	 */
+	public Road getRoad(int index) throws IndexOutOfBoundsException {
+		return roads[index];
+	}
+
+	/**
+	 * Returns the index of the given road in this snapshot, or -1 if it is not part of this snapshot.
+	 */
+	public int indexOf(Road road) {
+		Integer index = roadIndices.get(road);
+		if (index == null)
+			return -1;
+		return index;
+	}
+
+	/**
+	 * Returns the index of the location that the given arc leaves.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		The given index is not the index of an arc
+	 * 		| arc < 0 || arc >= getArcCount()
+	 */
+	public int getArcSource(int arc) throws IndexOutOfBoundsException {
+		if (arc < 0 || arc >= targets.length)
+			throw new IndexOutOfBoundsException();
+		int low = 0, high = locations.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (offsets[middle] <= arc)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the travel time in seconds over the given arc, or infinity if its road direction is blocked or cannot
+	 * be travelled. The travel time equals that of the road at the last refresh.
+	 *
+	 * @param arc The index of the arc.
+	 */
+	float travelTime(int arc) {
+		int direction = arcDirections[arc];
+		int c = direction >>> (CHUNK_SHIFT + 1), d = direction & (2 * CHUNK_SIZE - 1);
+		if ((blocked[c][d >>> 6] & (1L << d)) != 0)
+			return Float.POSITIVE_INFINITY;
+		int i = d >>> 1;
+		return (lengths[c][i] / speeds[c][i]) + delays[c][d];
+	}
+
+	/**
+	 * Copies the current length, average speed, delays, blocks and directions of all roads into this snapshot.
+	 *
+	 * @throws IllegalStateException
+	 * 		This snapshot is frozen
+	 * 		| isFrozen()
+	 */
+	public void refresh() throws IllegalStateException {
+		if (isFrozen())
+			throw new IllegalStateException();
+		for (int r = 0; r < roads.length; r++)
+			refresh(r);
+	}
+
+	/**
+	 * Copies the current length, average speed, delays, blocks and directions of the given road into this snapshot.
+	 *
+	 * @param road The road to copy.
+	 * @throws IllegalArgumentException
+	 * 		The given road is not part of this snapshot
+	 * 		| indexOf(road) < 0
+	 * @throws IllegalStateException
+	 * 		This snapshot is frozen
+	 * 		| isFrozen()
+	 */
+	public void refresh(Road road) throws IllegalArgumentException, IllegalStateException {
+		if (isFrozen())
+			throw new IllegalStateException();
+		int index = indexOf(road);
+		if (index < 0)
+			throw new IllegalArgumentException();
+		refresh(index);
+	}
+
+	/**
+	 * Copies the state of the road at the given index into this snapshot.
+	 */
+	private void refresh(int r) {
+		Road road = roads[r];
+		int c = r >>> CHUNK_SHIFT, i = r & (CHUNK_SIZE - 1);
+		lengths[c][i] = road.getLength();
+		speeds[c][i] = road.getRoadSpeed();
+		boolean towardsOne = !road.isTerminated() && road.canTravelTowardsEndPointOne();
+		boolean towardsTwo = !road.isTerminated() && road.canTravelTowardsEndPointTwo();
+		// Read the delays and blocks at once, so a concurrent update is copied either entirely or not at all.
+		long state = road.getTrafficState();
+		delays[c][2 * i] = towardsOne ? Road.delayOf(state, false) : 0;
+		delays[c][2 * i + 1] = towardsTwo ? Road.delayOf(state, true) : 0;
+		setBlocked(c, 2 * i, !towardsOne || Road.isBlockedIn(state, false));
+		setBlocked(c, 2 * i + 1, !towardsTwo || Road.isBlockedIn(state, true));
+	}
+
+	/**
+	 * Registers whether the road direction at the given position of the chunk with the given index is blocked.
+	 */
+	private void setBlocked(int c, int d, boolean isBlocked) {
+		if (isBlocked)
+			blocked[c][d >>> 6] |= 1L << d;
+		else
+			blocked[c][d >>> 6] &= ~(1L << d);
+	}
+}
@@ -0,0 +1,891 @@
+package connections;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * A class of networks of locations and roads stored outside the Java heap, in direct byte buffers, so that very large
+ * networks put no pressure on the garbage collector.
+ *
+ * Each location is a fixed-size record holding its coordinate and the position of its address in a buffer of
+ * UTF-8 text. Each road is a fixed-size record holding the packed form of its ID, the indices of its endpoints, its
+ * length, speed limit, average speed, both delays, both blocked statuses, its kind and, for alternating roads, its
+ * current direction. The roads of each location are listed in compressed sparse row form. Records are read and
+ * changed through reusable views, which move from record to record without creating objects, and route searches
+ * run over the records directly.
+ *
+ * Locations and roads are identified by their index. The locations of a network copied from the object model keep
+ * the order in which they were given; giving them in the order of {@link HilbertCurve#sort(Collection)} keeps nearby
+ * locations close together in the buffers. Each buffer is limited to two gigabytes, which allows about fifty million roads.
+ *
+ * A network can be saved to a file holding a header followed by its buffers exactly as they are laid out in memory.
+ * Such a file is mapped into memory again without converting any record. Mapping only reads the indices held by the
+ * records once, to check that every endpoint, road list entry and address lies within the network, so the views and
+ * searches never read outside their buffers.
+ *
+ * @invar Each road connects two locations of the network.
+ * 		| for each R in 0..getRoadCount()-1:
+ * 		|	0 <= roadView().moveTo(R).getEndPoint1() < getLocationCount() &&
+ * 		|	0 <= roadView().moveTo(R).getEndPoint2() < getLocationCount()
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class OffHeapNetwork {
+
+	/**
+	 * The kinds of roads in an off-heap network.
+	 */
+	public enum Kind {
+		ONE_WAY, TWO_WAY, ALTERNATING
+	}
+
+	/**
+	 * The number of bytes of each location record: its two coordinates, address position and address length.
+	 */
+	static final int LOCATION_BYTES = 24;
+
+	/**
+	 * The number of bytes of each road record.
+	 */
+	static final int ROAD_BYTES = 40;
+
+	/**
+	 * The positions of the fields within a road record.
+	 */
+	static final int ID = 0, FIRST_END_POINT = 8, SECOND_END_POINT = 12, LENGTH = 16,
+			SPEED_LIMIT = 20, ROAD_SPEED = 24, DELAY_ONE = 28, DELAY_TWO = 32, FLAGS = 36;
+
+	/**
+	 * The bits of the flags of a road record.
+	 */
+	static final int KIND_MASK = 0x3, BLOCKED_ONE = 0x4, BLOCKED_TWO = 0x8, TOWARDS_TWO = 0x10;
+
+	/**
+	 * The number identifying network files.
+	 */
+	private static final int FILE_MAGIC = 0x4E574B31;
+
+	/**
+	 * The version of the layout of network files written by this class.
+	 */
+	private static final int FILE_VERSION = 2;
+
+	/**
+	 * The number of bytes of the header of a network file: the magic number, the version, the number of locations and
+	 * roads, and the position and size of each of the five buffers.
+	 */
+	private static final int HEADER_BYTES = 16 + 5 * 16;
+
+	/**
+	 * The number of locations of this network.
+	 */
+	private final int locationCount;
+
+	/**
+	 * The number of roads of this network.
+	 */
+	private final int roadCount;
+
+	/**
+	 * The location records.
+	 */
+	final ByteBuffer locations;
+
+	/**
+	 * The road records.
+	 */
+	final ByteBuffer roads;
+
+	/**
+	 * The first entry in the road list of each location, followed by the total number of entries, as ints.
+	 */
+	final ByteBuffer firstArc;
+
+	/**
+	 * The road list of each location, each entry holding the road index shifted left by one and a last bit telling
+	 * whether the road leaves the location towards its second endpoint, as ints.
+	 */
+	final ByteBuffer arcs;
+
+	/**
+	 * The UTF-8 text of all addresses.
+	 */
+	final ByteBuffer strings;
+
+	/**
+	 * The search labels of each thread searching this network.
+	 */
+	private final ThreadLocal<Labels> labels = ThreadLocal.withInitial(() -> new Labels(getLocationCount()));
+
+	/**
+	 * Initialize a new network over the given buffers.
+	 *
+	 * @param locationCount The number of locations.
+	 * @param roadCount     The number of roads.
+	 * @param locations     The location records.
+	 * @param roads         The road records.
+	 * @param firstArc      The first entry in the road list of each location.
+	 * @param arcs          The road lists of all locations.
+	 * @param strings       The text of all addresses.
+	 * @pre The buffers hold valid records for the given numbers of locations and roads.
+	 */
+	OffHeapNetwork(int locationCount, int roadCount, ByteBuffer locations, ByteBuffer roads, ByteBuffer firstArc,
+			ByteBuffer arcs, ByteBuffer strings) {
+		this.locationCount = locationCount;
+		this.roadCount = roadCount;
+		this.locations = locations.order(ByteOrder.LITTLE_ENDIAN);
+		this.roads = roads.order(ByteOrder.LITTLE_ENDIAN);
+		this.firstArc = firstArc.order(ByteOrder.LITTLE_ENDIAN);
+		this.arcs = arcs.order(ByteOrder.LITTLE_ENDIAN);
+		this.strings = strings;
+	}
+
+	/**
+	 * Returns a new off-heap network holding a copy of the given locations and all roads between them.
+	 *
+	 * @param locations The locations to copy.
+	 * @return A network whose location at each index is a copy of the given location at that index.
+	 * 		| result.getLocationCount() == locations.size()
+	 * @throws NullPointerException
+	 * 		The given collection is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated or given twice, or the network does not fit in the buffers
+	 * 		| for some location in locations: location.isTerminated()
+	 */
+	public static OffHeapNetwork copyOf(Collection<Location> locations) throws NullPointerException, IllegalArgumentException {
+		Location[] locationArray = locations.toArray(new Location[0]);
+		int n = locationArray.length;
+		IdentityHashMap<Location, Integer> indices = new IdentityHashMap<>();
+		for (int i = 0; i < n; i++) {
+			if (locationArray[i].isTerminated() || indices.put(locationArray[i], i) != null)
+				throw new IllegalArgumentException();
+		}
+		List<Road> roadList = new ArrayList<>();
+		for (Location location : locationArray) {
+			for (Road road : location.getAdjoiningRoadsView()) {
+				Integer other = indices.get(road.getOtherEndPoint(location));
+				if (other != null && location == road.getEndPoint1() && road.getEndPoint2() != location && !road.isTerminated())
+					roadList.add(road);
+			}
+		}
+		int m = roadList.size();
+		if ((long) m * ROAD_BYTES > Integer.MAX_VALUE || (long) n * LOCATION_BYTES > Integer.MAX_VALUE)
+			throw new IllegalArgumentException();
+		byte[][] addresses = new byte[n][];
+		long textLength = 0;
+		for (int i = 0; i < n; i++)
+			textLength += (addresses[i] = locationArray[i].getAddress().getBytes(StandardCharsets.UTF_8)).length;
+		if (textLength > Integer.MAX_VALUE)
+			throw new IllegalArgumentException();
+
+		ByteBuffer strings = ByteBuffer.allocateDirect((int) textLength);
+		ByteBuffer locationRecords = ByteBuffer.allocateDirect(n * LOCATION_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < n; i++) {
+			double[] coordinate = locationArray[i].getCoordinate();
+			int base = i * LOCATION_BYTES;
+			locationRecords.putDouble(base, coordinate[0]);
+			locationRecords.putDouble(base + 8, coordinate[1]);
+			locationRecords.putInt(base + 16, strings.position());
+			locationRecords.putInt(base + 20, addresses[i].length);
+			strings.put(addresses[i]);
+		}
+		ByteBuffer roadRecords = ByteBuffer.allocateDirect(m * ROAD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		int[] degree = new int[n + 1];
+		int[] firstEnds = new int[m], secondEnds = new int[m];
+		for (int r = 0; r < m; r++) {
+			Road road = roadList.get(r);
+			int first = firstEnds[r] = indices.get(road.getEndPoint1());
+			int second = secondEnds[r] = indices.get(road.getEndPoint2());
+			Kind kind = road instanceof One_way ? Kind.ONE_WAY : road instanceof AlternatingRoad ? Kind.ALTERNATING : Kind.TWO_WAY;
+			int flags = kind.ordinal();
+			long state = road.getTrafficState();
+			if (Road.isBlockedIn(state, false))
+				flags |= BLOCKED_ONE;
+			if (Road.isBlockedIn(state, true))
+				flags |= BLOCKED_TWO;
+			if (kind != Kind.ALTERNATING || road.canTravelTowardsEndPointTwo())
+				flags |= TOWARDS_TWO;
+			int base = r * ROAD_BYTES;
+			roadRecords.putLong(base + ID, road.getPackedID());
+			roadRecords.putInt(base + FIRST_END_POINT, first);
+			roadRecords.putInt(base + SECOND_END_POINT, second);
+			roadRecords.putInt(base + LENGTH, road.getLength());
+			roadRecords.putFloat(base + SPEED_LIMIT, road.getSpeedlimit());
+			roadRecords.putFloat(base + ROAD_SPEED, road.getRoadSpeed());
+			roadRecords.putFloat(base + DELAY_ONE, Road.delayOf(state, false));
+			roadRecords.putFloat(base + DELAY_TWO, Road.delayOf(state, true));
+			roadRecords.put(base + FLAGS, (byte) flags);
+			degree[first + 1]++;
+			degree[second + 1]++;
+		}
+		return new OffHeapNetwork(n, m, locationRecords, roadRecords, buildFirstArc(degree), buildArcs(degree, firstEnds, secondEnds),
+				strings);
+	}
+
+	/**
+	 * Returns a buffer holding the first entry in the road list of each location, given the number of roads of
+	 * each location shifted up by one position.
+	 */
+	static ByteBuffer buildFirstArc(int[] degree) {
+		int n = degree.length - 1;
+		ByteBuffer firstArc = ByteBuffer.allocateDirect(4 * (n + 1)).order(ByteOrder.LITTLE_ENDIAN);
+		int total = 0;
+		for (int v = 0; v <= n; v++) {
+			total += degree[v];
+			firstArc.putInt(4 * v, total);
+		}
+		return firstArc;
+	}
+
+	/**
+	 * Returns a buffer holding the road list of each location, given the number of roads of each location shifted up
+	 * by one position and the endpoints of each road.
+	 */
+	static ByteBuffer buildArcs(int[] degree, int[] first, int[] second) {
+		int n = degree.length - 1;
+		int[] fill = new int[n];
+		for (int v = 1; v < n; v++)
+			fill[v] = fill[v - 1] + degree[v];
+		ByteBuffer arcs = ByteBuffer.allocateDirect(4 * 2 * first.length).order(ByteOrder.LITTLE_ENDIAN);
+		for (int r = 0; r < first.length; r++) {
+			arcs.putInt(4 * fill[first[r]]++, (r << 1) | 1);
+			arcs.putInt(4 * fill[second[r]]++, r << 1);
+		}
+		return arcs;
+	}
+
+	/**
+	 * Saves this network to the file at the given path, replacing its contents.
+	 *
+	 * @param path The path of the file.
+	 * @throws IOException
+	 * 		The file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		ByteBuffer[] sections = { locations, roads, firstArc, arcs, strings };
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(locationCount).putInt(roadCount);
+		long position = align(HEADER_BYTES);
+		for (ByteBuffer section : sections) {
+			header.putLong(position).putLong(section.capacity());
+			position = align(position + section.capacity());
+		}
+		header.flip();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(channel, header, 0);
+			position = align(HEADER_BYTES);
+			for (ByteBuffer section : sections) {
+				ByteBuffer contents = section.duplicate();
+				contents.clear();
+				writeFully(channel, contents, position);
+				position = align(position + section.capacity());
+			}
+		}
+	}
+
+	/**
+	 * Maps the network saved in the file at the given path into memory. The records are used where they lie in the
+	 * file; changes made through the views of the returned network are private to it and never written to the file,
+	 * although such a private mapping requires the file to be opened for writing.
+	 *
+	 * @param path The path of the file.
+	 * @return The network saved in the file.
+	 * @throws IOException
+	 * 		The file cannot be read
+	 * @throws IllegalArgumentException
+	 * 		The file does not hold a network of a version this class can read, or its records are inconsistent: a road
+	 * 		has an unknown kind, an endpoint that is not a location, a negative length or delay or a road speed that
+	 * 		is not positive, the first entries of the road lists do not ascend from zero to twice the number of roads,
+	 * 		an entry of the road list of a location refers to a road that does not end at that location, or an
+	 * 		address lies outside the text of the network
+	 */
+	public static OffHeapNetwork map(Path path) throws IOException, IllegalArgumentException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			if (channel.size() < HEADER_BYTES)
+				throw new IllegalArgumentException();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt() != FILE_MAGIC || header.getInt() != FILE_VERSION)
+				throw new IllegalArgumentException();
+			int locationCount = header.getInt();
+			int roadCount = header.getInt();
+			long[] expected = { (long) locationCount * LOCATION_BYTES, (long) roadCount * ROAD_BYTES,
+					4L * (locationCount + 1), 8L * roadCount, -1 };
+			ByteBuffer[] sections = new ByteBuffer[5];
+			for (int i = 0; i < sections.length; i++) {
+				long position = header.getLong();
+				long size = header.getLong();
+				if (locationCount < 0 || roadCount < 0 || (expected[i] >= 0 && size != expected[i]) || size > Integer.MAX_VALUE
+						|| position < HEADER_BYTES || position + size > channel.size())
+					throw new IllegalArgumentException();
+				sections[i] = channel.map(FileChannel.MapMode.PRIVATE, position, size);
+			}
+			OffHeapNetwork network = new OffHeapNetwork(locationCount, roadCount, sections[0], sections[1], sections[2],
+					sections[3], sections[4]);
+			network.checkRecords();
+			return network;
+		}
+	}
+
+	/**
+	 * Checks that the indices and positions held by the records of this network lie within the network, and that
+	 * no road takes a negative or undefined time to travel.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		A record refers to a road, location or text outside this network or to a road that does not end at the
+	 * 		location listing it, or a road has a negative length or delay or a road speed that is not positive
+	 */
+	private void checkRecords() throws IllegalArgumentException {
+		for (int r = 0; r < roadCount; r++) {
+			int base = r * ROAD_BYTES;
+			int first = roads.getInt(base + FIRST_END_POINT), second = roads.getInt(base + SECOND_END_POINT);
+			if (first < 0 || first >= locationCount || second < 0 || second >= locationCount
+					|| (roads.get(base + FLAGS) & KIND_MASK) >= Kind.values().length)
+				throw new IllegalArgumentException();
+			// Searches settle each location once, which is only correct if no travel time is negative.
+			if (roads.getInt(base + LENGTH) < 0 || !(roads.getFloat(base + ROAD_SPEED) > 0)
+					|| !(roads.getFloat(base + DELAY_ONE) >= 0) || !(roads.getFloat(base + DELAY_TWO) >= 0))
+				throw new IllegalArgumentException();
+		}
+		if (firstArc.getInt(0) != 0 || firstArc.getInt(4 * locationCount) != 2 * roadCount)
+			throw new IllegalArgumentException();
+		for (int v = 0; v < locationCount; v++) {
+			int last = firstArc.getInt(4 * (v + 1));
+			if (firstArc.getInt(4 * v) > last)
+				throw new IllegalArgumentException();
+			for (int a = firstArc.getInt(4 * v); a < last; a++) {
+				int entry = arcs.getInt(4 * a);
+				int road = entry >>> 1;
+				// An entry leaving towards the second endpoint must be listed at the first endpoint, and vice versa.
+				int end = (entry & 1) != 0 ? FIRST_END_POINT : SECOND_END_POINT;
+				if (road >= roadCount || roads.getInt(road * ROAD_BYTES + end) != v)
+					throw new IllegalArgumentException();
+			}
+			int base = v * LOCATION_BYTES;
+			long position = locations.getInt(base + 16), length = locations.getInt(base + 20);
+			if (position < 0 || length < 0 || position + length > strings.capacity())
+				throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Returns the given file position rounded up to a multiple of eight bytes.
+	 */
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Writes all remaining bytes of the given buffer to the given channel from the given file position on.
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+
+	/**
+	 * Returns the number of locations of this network.
+	 */
+	public int getLocationCount() {
+		return locationCount;
+	}
+
+	/**
+	 * Returns the number of roads of this network.
+	 */
+	public int getRoadCount() {
+		return roadCount;
+	}
+
+	/**
+	 * Returns a new view on the locations of this network, positioned at the first location.
+	 */
+	public LocationView locationView() {
+		return new LocationView();
+	}
+
+	/**
+	 * Returns a new view on the roads of this network, positioned at the first road.
+	 */
+	public RoadView roadView() {
+		return new RoadView();
+	}
+
+	/**
+	 * Returns the travel time in seconds of the fastest route from the location at the given start index to the
+	 * location at the given end index.
+	 *
+	 * @param start The index of the location at which the route starts.
+	 * @param end   The index of the location at which the route ends.
+	 * @return The total travel time of the fastest route, or infinity if no route exists.
+	 * @throws IndexOutOfBoundsException
+	 * 		One of the given indices is not the index of a location
+	 * 		| start < 0 || start >= getLocationCount() || end < 0 || end >= getLocationCount()
+	 */
+	public float calculateFastestTravelTime(int start, int end) throws IndexOutOfBoundsException {
+		return (float) labels.get().search(start, end);
+	}
+
+	/**
+	 * Returns the indices of the roads of the fastest route from the location at the given start index to the
+	 * location at the given end index, in the order in which they are travelled.
+	 *
+	 * @param start The index of the location at which the route starts.
+	 * @param end   The index of the location at which the route ends.
+	 * @return The road indices of the fastest route, or null if no route exists.
+	 * @throws IndexOutOfBoundsException
+	 * 		One of the given indices is not the index of a location
+	 * 		| start < 0 || start >= getLocationCount() || end < 0 || end >= getLocationCount()
+	 */
+	public int[] findFastestRoads(int start, int end) throws IndexOutOfBoundsException {
+		Labels search = labels.get();
+		if (search.search(start, end) == Double.POSITIVE_INFINITY)
+			return null;
+		IntList path = new IntList();
+		for (int v = end; v != start; v = search.parent[v])
+			path.add(search.parentRoad[v]);
+		int[] roads = new int[path.size()];
+		for (int i = 0; i < roads.length; i++)
+			roads[i] = path.get(roads.length - 1 - i);
+		return roads;
+	}
+
+	/**
+	 * Returns the number of locations settled by the last search of the current thread.
+	 */
+	public int getSettledCount() {
+		return labels.get().settled;
+	}
+
+	/**
+	 * Returns the travel time in seconds over the given road in the given direction, or infinity if the road is
+	 * blocked or cannot be travelled in that direction.
+	 */
+	float travelTime(int road, boolean towardsTwo) {
+		int base = road * ROAD_BYTES;
+		int flags = roads.get(base + FLAGS);
+		int kind = flags & KIND_MASK;
+		boolean allowed;
+		if (kind == Kind.TWO_WAY.ordinal())
+			allowed = true;
+		else if (kind == Kind.ONE_WAY.ordinal())
+			allowed = towardsTwo;
+		else
+			allowed = towardsTwo == ((flags & TOWARDS_TWO) != 0);
+		if (!allowed || (flags & (towardsTwo ? BLOCKED_TWO : BLOCKED_ONE)) != 0)
+			return Float.POSITIVE_INFINITY;
+		return (roads.getInt(base + LENGTH) / roads.getFloat(base + ROAD_SPEED)) + roads.getFloat(base + (towardsTwo ? DELAY_TWO : DELAY_ONE));
+	}
+
+	/**
+	 * Returns the text of the given length at the given position of the text buffer.
+	 */
+	private String text(int position, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = strings.get(position + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A class of views on the location records of the enclosing network. A view is positioned at one location at a time
+	 * and can be moved to any other location.
+	 */
+	public class LocationView {
+
+		/**
+		 * The index of the location at which this view is positioned.
+		 */
+		private int index = 0;
+
+		/**
+		 * The position of the record of that location.
+		 */
+		private int base = 0;
+
+		/**
+		 * Positions this view at the location with the given index.
+		 *
+		 * @param index The index of the location.
+		 * @return This view.
+		 * @throws IndexOutOfBoundsException
+		 * 		The given index is not the index of a location
+		 * 		| index < 0 || index >= getLocationCount()
+		 */
+		public LocationView moveTo(int index) throws IndexOutOfBoundsException {
+			if (index < 0 || index >= locationCount)
+				throw new IndexOutOfBoundsException();
+			this.index = index;
+			this.base = index * LOCATION_BYTES;
+			return this;
+		}
+
+		/**
+		 * Returns the index of the location at which this view is positioned.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Returns the first coordinate of the location.
+		 */
+		public double getX() {
+			return locations.getDouble(base);
+		}
+
+		/**
+		 * Returns the second coordinate of the location.
+		 */
+		public double getY() {
+			return locations.getDouble(base + 8);
+		}
+
+		/**
+		 * Returns the address of the location.
+		 */
+		public String getAddress() {
+			return text(locations.getInt(base + 16), locations.getInt(base + 20));
+		}
+
+		/**
+		 * Returns the number of roads connected to the location.
+		 */
+		public int getRoadCount() {
+			return firstArc.getInt(4 * (index + 1)) - firstArc.getInt(4 * index);
+		}
+
+		/**
+		 * Returns the index of the road at the given position in the road list of the location.
+		 *
+		 * @param position The position in the road list.
+		 * @throws IndexOutOfBoundsException
+		 * 		The given position lies outside the road list
+		 * 		| position < 0 || position >= getRoadCount()
+		 */
+		public int getRoad(int position) throws IndexOutOfBoundsException {
+			if (position < 0 || position >= getRoadCount())
+				throw new IndexOutOfBoundsException();
+			return arcs.getInt(4 * (firstArc.getInt(4 * index) + position)) >>> 1;
+		}
+	}
+
+	/**
+	 * A class of views on the road records of the enclosing network. A view is positioned at one road at a time and can
+	 * be moved to any other road. Changes made through a view are written to the record directly.
+	 */
+	public class RoadView {
+
+		/**
+		 * The index of the road at which this view is positioned.
+		 */
+		private int index = 0;
+
+		/**
+		 * The position of the record of that road.
+		 */
+		private int base = 0;
+
+		/**
+		 * Positions this view at the road with the given index.
+		 *
+		 * @param index The index of the road.
+		 * @return This view.
+		 * @throws IndexOutOfBoundsException
+		 * 		The given index is not the index of a road
+		 * 		| index < 0 || index >= getRoadCount()
+		 */
+		public RoadView moveTo(int index) throws IndexOutOfBoundsException {
+			if (index < 0 || index >= roadCount)
+				throw new IndexOutOfBoundsException();
+			this.index = index;
+			this.base = index * ROAD_BYTES;
+			return this;
+		}
+
+		/**
+		 * Returns the index of the road at which this view is positioned.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Returns the ID of the road.
+		 */
+		public String getID() {
+			return RoadIDCodec.decode(getPackedID());
+		}
+
+		/**
+		 * Returns the packed form of the ID of the road.
+		 */
+		public long getPackedID() {
+			return roads.getLong(base + ID);
+		}
+
+		/**
+		 * Returns the index of the first endpoint of the road.
+		 */
+		public int getEndPoint1() {
+			return roads.getInt(base + FIRST_END_POINT);
+		}
+
+		/**
+		 * Returns the index of the second endpoint of the road.
+		 */
+		public int getEndPoint2() {
+			return roads.getInt(base + SECOND_END_POINT);
+		}
+
+		/**
+		 * Returns the length of the road in meters.
+		 */
+		public int getLength() {
+			return roads.getInt(base + LENGTH);
+		}
+
+		/**
+		 * Returns the speed limit of the road in meters per second.
+		 */
+		public float getSpeedlimit() {
+			return roads.getFloat(base + SPEED_LIMIT);
+		}
+
+		/**
+		 * Returns the average speed of the road in meters per second.
+		 */
+		public float getRoadSpeed() {
+			return roads.getFloat(base + ROAD_SPEED);
+		}
+
+		/**
+		 * Returns the kind of the road.
+		 */
+		public Kind getKind() {
+			return Kind.values()[roads.get(base + FLAGS) & KIND_MASK];
+		}
+
+		/**
+		 * Returns the delay in seconds of the road in the direction of endpoint one.
+		 */
+		public float getDelayDirectionEndPointOne() {
+			return roads.getFloat(base + DELAY_ONE);
+		}
+
+		/**
+		 * Returns the delay in seconds of the road in the direction of endpoint two.
+		 */
+		public float getDelayDirectionEndPointTwo() {
+			return roads.getFloat(base + DELAY_TWO);
+		}
+
+		/**
+		 * Sets the delay of the road in the direction of endpoint one.
+		 *
+		 * @param delay The new delay in seconds.
+		 * @throws IllegalArgumentException
+		 * 		The given delay is negative or not a number
+		 * 		| !(delay >= 0)
+		 */
+		public void setDelayDirectionEndPointOne(float delay) throws IllegalArgumentException {
+			if (!(delay >= 0))
+				throw new IllegalArgumentException();
+			roads.putFloat(base + DELAY_ONE, delay);
+		}
+
+		/**
+		 * Sets the delay of the road in the direction of endpoint two.
+		 *
+		 * @param delay The new delay in seconds.
+		 * @throws IllegalArgumentException
+		 * 		The given delay is negative or not a number
+		 * 		| !(delay >= 0)
+		 */
+		public void setDelayDirectionEndPointTwo(float delay) throws IllegalArgumentException {
+			if (!(delay >= 0))
+				throw new IllegalArgumentException();
+			roads.putFloat(base + DELAY_TWO, delay);
+		}
+
+		/**
+		 * Returns the blocked status of the road in the direction of endpoint one.
+		 */
+		public boolean isBlockedDirectionEndPointOne() {
+			return (roads.get(base + FLAGS) & BLOCKED_ONE) != 0;
+		}
+
+		/**
+		 * Returns the blocked status of the road in the direction of endpoint two.
+		 */
+		public boolean isBlockedDirectionEndPointTwo() {
+			return (roads.get(base + FLAGS) & BLOCKED_TWO) != 0;
+		}
+
+		/**
+		 * Sets the blocked status of the road in the direction of endpoint one.
+		 *
+		 * @param blocked The new blocked status.
+		 */
+		public void setBlockedDirectionEndPointOne(boolean blocked) {
+			setFlag(BLOCKED_ONE, blocked);
+		}
+
+		/**
+		 * Sets the blocked status of the road in the direction of endpoint two.
+		 *
+		 * @param blocked The new blocked status.
+		 */
+		public void setBlockedDirectionEndPointTwo(boolean blocked) {
+			setFlag(BLOCKED_TWO, blocked);
+		}
+
+		/**
+		 * Checks whether the road can be travelled in the direction of endpoint one, ignoring blocks.
+		 */
+		public boolean canTravelTowardsEndPointOne() {
+			Kind kind = getKind();
+			return kind == Kind.TWO_WAY || (kind == Kind.ALTERNATING && (roads.get(base + FLAGS) & TOWARDS_TWO) == 0);
+		}
+
+		/**
+		 * Checks whether the road can be travelled in the direction of endpoint two, ignoring blocks.
+		 */
+		public boolean canTravelTowardsEndPointTwo() {
+			return getKind() != Kind.ALTERNATING || (roads.get(base + FLAGS) & TOWARDS_TWO) != 0;
+		}
+
+		/**
+		 * Reverses the direction of the road.
+		 *
+		 * @throws IllegalStateException
+		 * 		The road is not an alternating road
+		 * 		| getKind() != Kind.ALTERNATING
+		 */
+		public void swapRoadDirection() throws IllegalStateException {
+			if (getKind() != Kind.ALTERNATING)
+				throw new IllegalStateException();
+			setFlag(TOWARDS_TWO, !canTravelTowardsEndPointTwo());
+		}
+
+		/**
+		 * Returns the travel time in seconds of the road leaving the location with the given index, or infinity if the
+		 * road is blocked or cannot be travelled in that direction.
+		 *
+		 * @param location The index of the location from which the road is travelled.
+		 * @throws IllegalArgumentException
+		 * 		The given location is not an endpoint of the road
+		 */
+		public float calculateTravelTimeFrom(int location) throws IllegalArgumentException {
+			if (location == getEndPoint1())
+				return travelTime(index, true);
+			if (location == getEndPoint2())
+				return travelTime(index, false);
+			throw new IllegalArgumentException();
+		}
+
+		/**
+		 * Sets or clears the given bits of the flags of the road.
+		 */
+		private void setFlag(int bits, boolean value) {
+			int flags = roads.get(base + FLAGS);
+			roads.put(base + FLAGS, (byte) (value ? flags | bits : flags & ~bits));
+		}
+	}
+
+	/**
+	 * A class of search labels for Dijkstra searches over the enclosing network.
+	 */
+	private class Labels {
+
+		/**
+		 * The tentative travel time from the start location to each location.
+		 */
+		final double[] distance;
+
+		/**
+		 * The road over which each location was reached, and the location from which it was reached.
+		 */
+		final int[] parentRoad, parent;
+
+		/**
+		 * The queue of reached but not yet settled locations.
+		 */
+		final IndexedMinHeap heap;
+
+		/**
+		 * The locations reached by the last search.
+		 */
+		final IntList touched = new IntList();
+
+		/**
+		 * The number of locations settled by the last search.
+		 */
+		int settled;
+
+		/**
+		 * Initialize new search labels for the given number of locations.
+		 */
+		Labels(int n) {
+			distance = new double[n];
+			Arrays.fill(distance, Double.POSITIVE_INFINITY);
+			parentRoad = new int[n];
+			parent = new int[n];
+			heap = new IndexedMinHeap(n);
+		}
+
+		/**
+		 * Returns the travel time from the given start to the given end location, registering the fastest route.
+		 */
+		double search(int start, int end) {
+			if (start < 0 || start >= locationCount || end < 0 || end >= locationCount)
+				throw new IndexOutOfBoundsException();
+			for (int i = 0; i < touched.size(); i++)
+				distance[touched.get(i)] = Double.POSITIVE_INFINITY;
+			touched.clear();
+			heap.clear();
+			settled = 0;
+			distance[start] = 0;
+			touched.add(start);
+			heap.insertOrDecrease(start, 0);
+			while (!heap.isEmpty()) {
+				int u = heap.poll();
+				settled++;
+				if (u == end)
+					return distance[u];
+				int last = firstArc.getInt(4 * (u + 1));
+				for (int a = firstArc.getInt(4 * u); a < last; a++) {
+					int entry = arcs.getInt(4 * a);
+					int road = entry >>> 1;
+					boolean towardsTwo = (entry & 1) != 0;
+					float time = travelTime(road, towardsTwo);
+					if (time == Float.POSITIVE_INFINITY)
+						continue;
+					int v = roads.getInt(road * ROAD_BYTES + (towardsTwo ? SECOND_END_POINT : FIRST_END_POINT));
+					double newDistance = distance[u] + time;
+					if (newDistance < distance[v]) {
+						if (distance[v] == Double.POSITIVE_INFINITY)
+							touched.add(v);
+						distance[v] = newDistance;
+						parentRoad[v] = road;
+						parent[v] = u;
+						heap.insertOrDecrease(v, newDistance);
+					}
+				}
+			}
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+}
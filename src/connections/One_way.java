@@ -103,6 +103,18 @@ public class One_way extends Road{
         endLocation = location2;
     }
 
+    /**
+     * Initialize a new non-terminated one-way road with given ID, first and second location, speed limit and roadspeed,
+     * possibly as part of a batch of roads whose IDs and adjoining roads are registered all at once.
+     *
+     * @see Road#Road(String, Location, Location, int, float, float, boolean)
+     */
+    One_way(String id, Location location1, Location location2, int length, float speedlimit, float roadSpeed, boolean isDeferred) {
+        super(id, location1, location2, length, speedlimit, roadSpeed, isDeferred);
+        startLocation = location1;
+        endLocation = location2;
+    }
+
     /**
      * Does nothing, road only travels in direction of endpoint two, the end location.
      * @param delay The new delay time for the road going towards endpoint one
@@ -141,6 +153,16 @@ public class One_way extends Road{
         throw new NullPointerException();
     }
 
+    /**
+     * Road never travels in the direction of endpoint one.
+     * @return Always false.
+     *  |   result == false
+     */
+    @Override
+    public boolean canTravelTowardsEndPointOne() {
+        return false;
+    }
+
     /**
      * Get all valid start locations for this road
      * For a one way road, this is the startLocation
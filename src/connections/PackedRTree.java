@@ -0,0 +1,294 @@
+package connections;
+
+/**
+ * A class of static R-trees over line segments, packed bottom-up with the sort-tile-recursive method so that every
+ * node except the last of each level holds the maximum number of children. A point is stored as a segment of length
+ * zero.
+ *
+ * The items of a tree are numbered from 0 and keep the numbers of the segments they were built from. Every entry of
+ * the tree, item or node, has an index; the indices of the items are their numbers and the indices of the nodes
+ * follow them, with the root last.
+ *
+ * @invar The bounding box of each node contains the bounding boxes of its children.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+class PackedRTree {
+
+	/**
+	 * The maximum number of children of a node.
+	 */
+	static final int NODE_CAPACITY = 16;
+
+	/**
+	 * The number of items of this tree.
+	 */
+	private final int itemCount;
+
+	/**
+	 * The endpoints of each item, four coordinates per item.
+	 */
+	private final double[] segments;
+
+	/**
+	 * The bounding box of each entry, as its smallest x, smallest y, largest x and largest y.
+	 */
+	private final double[] boxes;
+
+	/**
+	 * The position in the children array of the first child of each node, followed by the number of children.
+	 */
+	private final int[] firstChild;
+
+	/**
+	 * The children of all nodes, grouped per node.
+	 */
+	private final int[] children;
+
+	/**
+	 * Initialize a new tree over the given segments.
+	 *
+	 * @param segments The endpoints of the segments, four coordinates per segment.
+	 * @param count    The number of segments.
+	 */
+	PackedRTree(double[] segments, int count) {
+		this.itemCount = count;
+		this.segments = segments;
+		int entries = count;
+		int nodes = 0;
+		int levelCount = count;
+		do {
+			levelCount = Math.max(1, (levelCount + NODE_CAPACITY - 1) / NODE_CAPACITY);
+			nodes += levelCount;
+		} while (levelCount > 1);
+		entries += nodes;
+		boxes = new double[4 * entries];
+		for (int i = 0; i < count; i++) {
+			boxes[4 * i] = Math.min(segments[4 * i], segments[4 * i + 2]);
+			boxes[4 * i + 1] = Math.min(segments[4 * i + 1], segments[4 * i + 3]);
+			boxes[4 * i + 2] = Math.max(segments[4 * i], segments[4 * i + 2]);
+			boxes[4 * i + 3] = Math.max(segments[4 * i + 1], segments[4 * i + 3]);
+		}
+		firstChild = new int[nodes + 1];
+		children = new int[entries - 1];
+
+		int levelStart = 0, next = count, position = 0;
+		levelCount = count;
+		do {
+			int[] order = tile(levelStart, levelCount);
+			int parents = Math.max(1, (levelCount + NODE_CAPACITY - 1) / NODE_CAPACITY);
+			for (int p = 0; p < parents; p++) {
+				int node = next + p;
+				firstChild[node - count] = position;
+				double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+				double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+				for (int i = p * NODE_CAPACITY; i < Math.min((p + 1) * NODE_CAPACITY, levelCount); i++) {
+					int child = order[i];
+					children[position++] = child;
+					minX = Math.min(minX, boxes[4 * child]);
+					minY = Math.min(minY, boxes[4 * child + 1]);
+					maxX = Math.max(maxX, boxes[4 * child + 2]);
+					maxY = Math.max(maxY, boxes[4 * child + 3]);
+				}
+				boxes[4 * node] = minX;
+				boxes[4 * node + 1] = minY;
+				boxes[4 * node + 2] = maxX;
+				boxes[4 * node + 3] = maxY;
+			}
+			levelStart = next;
+			levelCount = parents;
+			next += parents;
+		} while (levelCount > 1);
+		firstChild[nodes] = position;
+	}
+
+	/**
+	 * Returns the given entries in sort-tile-recursive order: sorted on the centre of their box along x, cut into
+	 * vertical slices that fill a whole number of nodes, and sorted on the centre of their box along y within each
+	 * slice.
+	 */
+	private int[] tile(int start, int count) {
+		int[] order = new int[count];
+		double[] keys = new double[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = start + i;
+			keys[i] = boxes[4 * (start + i)] + boxes[4 * (start + i) + 2];
+		}
+		sort(order, keys, 0, count);
+		int pages = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		int sliceSize = (int) Math.ceil(Math.sqrt(pages)) * NODE_CAPACITY;
+		for (int i = 0; i < count; i++)
+			keys[i] = boxes[4 * order[i] + 1] + boxes[4 * order[i] + 3];
+		for (int from = 0; from < count; from += sliceSize)
+			sort(order, keys, from, Math.min(from + sliceSize, count));
+		return order;
+	}
+
+	/**
+	 * Sorts the given range of the given values and keys together, in ascending order of the keys.
+	 */
+	private static void sort(int[] values, double[] keys, int from, int to) {
+		while (to - from > 16) {
+			int middle = (from + to) >>> 1;
+			double a = keys[from], b = keys[middle], c = keys[to - 1];
+			double pivot = a < b ? (b < c ? b : Math.max(a, c)) : (a < c ? a : Math.max(b, c));
+			int low = from, high = to - 1;
+			while (low <= high) {
+				while (keys[low] < pivot)
+					low++;
+				while (keys[high] > pivot)
+					high--;
+				if (low <= high)
+					swap(values, keys, low++, high--);
+			}
+			// Recurse into the smaller part, so the depth of the recursion stays logarithmic.
+			if (high - from < to - low) {
+				sort(values, keys, from, high + 1);
+				from = low;
+			} else {
+				sort(values, keys, low, to);
+				to = high + 1;
+			}
+		}
+		for (int i = from + 1; i < to; i++) {
+			for (int j = i; j > from && keys[j - 1] > keys[j]; j--)
+				swap(values, keys, j - 1, j);
+		}
+	}
+
+	/**
+	 * Swaps the values and keys at the given positions.
+	 */
+	private static void swap(int[] values, double[] keys, int i, int j) {
+		int value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+		double key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+	}
+
+	/**
+	 * Returns the number of items of this tree.
+	 */
+	int getItemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * Returns the index of the root of this tree.
+	 */
+	int getRoot() {
+		return boxes.length / 4 - 1;
+	}
+
+	/**
+	 * Checks whether the entry with the given index is an item.
+	 */
+	boolean isItem(int entry) {
+		return entry < itemCount;
+	}
+
+	/**
+	 * Returns the position in the children array of the first child of the given node.
+	 */
+	int getFirstChild(int node) {
+		return firstChild[node - itemCount];
+	}
+
+	/**
+	 * Returns the position in the children array just after the last child of the given node.
+	 */
+	int getEndChild(int node) {
+		return firstChild[node - itemCount + 1];
+	}
+
+	/**
+	 * Returns the child at the given position in the children array.
+	 */
+	int getChild(int position) {
+		return children[position];
+	}
+
+	/**
+	 * Returns the distance from the given point to the bounding box of the given entry, or infinity if it is the
+	 * empty root of a tree without items.
+	 */
+	double boxDistance(int entry, double x, double y) {
+		int base = 4 * entry;
+		if (boxes[base] > boxes[base + 2])
+			return Double.POSITIVE_INFINITY;
+		double dx = Math.max(0, Math.max(boxes[base] - x, x - boxes[base + 2]));
+		double dy = Math.max(0, Math.max(boxes[base + 1] - y, y - boxes[base + 3]));
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Checks whether the bounding box of the given entry intersects the given box.
+	 */
+	boolean boxIntersects(int entry, double minX, double minY, double maxX, double maxY) {
+		int base = 4 * entry;
+		return boxes[base] <= maxX && boxes[base + 2] >= minX && boxes[base + 1] <= maxY && boxes[base + 3] >= minY;
+	}
+
+	/**
+	 * Returns the distance from the given point to the given item.
+	 */
+	double distance(int item, double x, double y) {
+		int base = 4 * item;
+		double t = closestParameter(segments, base, x, y);
+		double dx = segments[base] + t * (segments[base + 2] - segments[base]) - x;
+		double dy = segments[base + 1] + t * (segments[base + 3] - segments[base + 1]) - y;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Checks whether the given item intersects the given box.
+	 */
+	boolean intersects(int item, double minX, double minY, double maxX, double maxY) {
+		return segmentIntersects(segments, 4 * item, minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Returns the fraction of the way from the first to the second endpoint of the segment at the given offset of the
+	 * given array at which the segment comes closest to the given point.
+	 *
+	 * @return A fraction between zero and one, which is zero for a segment of length zero.
+	 */
+	static double closestParameter(double[] segments, int offset, double x, double y) {
+		double x1 = segments[offset], y1 = segments[offset + 1];
+		double dx = segments[offset + 2] - x1, dy = segments[offset + 3] - y1;
+		double squaredLength = dx * dx + dy * dy;
+		if (squaredLength == 0)
+			return 0;
+		return Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / squaredLength));
+	}
+
+	/**
+	 * Checks whether the segment at the given offset of the given array intersects the given box, by clipping the
+	 * segment against each side of the box in turn.
+	 */
+	static boolean segmentIntersects(double[] segments, int offset, double minX, double minY, double maxX, double maxY) {
+		double x1 = segments[offset], y1 = segments[offset + 1];
+		double dx = segments[offset + 2] - x1, dy = segments[offset + 3] - y1;
+		double[] p = {-dx, dx, -dy, dy};
+		double[] q = {x1 - minX, maxX - x1, y1 - minY, maxY - y1};
+		double enter = 0, leave = 1;
+		for (int i = 0; i < 4; i++) {
+			if (p[i] == 0) {
+				if (q[i] < 0)
+					return false;
+			} else {
+				double t = q[i] / p[i];
+				if (p[i] < 0)
+					enter = Math.max(enter, t);
+				else
+					leave = Math.min(leave, t);
+				if (enter > leave)
+					return false;
+			}
+		}
+		return true;
+	}
+}
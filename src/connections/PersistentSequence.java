@@ -0,0 +1,336 @@
+package connections;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A class of immutable sequences of elements, stored as height-balanced binary trees in which every node knows the
+ * size of its subtree.
+ *
+ * Changing a sequence returns a new sequence and leaves the original as it was. The new sequence shares all nodes
+ * off the path to the change with the original, so appending or removing an element takes logarithmic time and
+ * creates a logarithmic number of nodes, while reading an element takes logarithmic time. Since sequences never
+ * change, any number of threads can use them at once.
+ *
+ * @invar The height of the two subtrees of every node differs by at most one.
+ *
+ * @param <E> The type of the elements.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+final class PersistentSequence<E> {
+
+	/**
+	 * The root of the tree of this sequence, or null if this sequence is empty.
+	 */
+	private final Node root;
+
+	/**
+	 * Initialize a new sequence with the given tree.
+	 */
+	private PersistentSequence(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Returns a sequence of the given elements, built in linear time.
+	 *
+	 * @param elements The elements of the sequence, in order.
+	 * @return A sequence holding the given elements.
+	 * 		| result.size() == elements.length && for each i in 0..elements.length-1: result.get(i) == elements[i]
+	 */
+	static <E> PersistentSequence<E> of(E[] elements) {
+		return new PersistentSequence<>(build(elements, 0, elements.length));
+	}
+
+	/**
+	 * Returns a perfectly balanced tree of the given elements from the first index up to the second.
+	 */
+	private static Node build(Object[] elements, int from, int to) {
+		if (from == to)
+			return null;
+		int middle = (from + to) >>> 1;
+		return new Node(build(elements, from, middle), elements[middle], build(elements, middle + 1, to));
+	}
+
+	/**
+	 * Returns the number of elements of this sequence.
+	 */
+	int size() {
+		return size(root);
+	}
+
+	/**
+	 * Returns the element at the given index.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		The given index is not the index of an element
+	 * 		| index < 0 || index >= size()
+	 */
+	@SuppressWarnings("unchecked")
+	E get(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException();
+		Node node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (index < leftSize)
+				node = node.left;
+			else if (index == leftSize)
+				return (E) node.value;
+			else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns this sequence with the given element added at the end.
+	 *
+	 * @return | result.size() == size() + 1 && result.get(size()) == element
+	 */
+	PersistentSequence<E> append(E element) {
+		return new PersistentSequence<>(join(root, element, null));
+	}
+
+	/**
+	 * Returns this sequence without the element at the given index, shifting the elements after it one position to the
+	 * left.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		The given index is not the index of an element
+	 * 		| index < 0 || index >= size()
+	 */
+	PersistentSequence<E> remove(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException();
+		Node[] parts = split(root, index);
+		return new PersistentSequence<>(concat(parts[0], split(parts[1], 1)[1]));
+	}
+
+	/**
+	 * Returns a new array holding the elements of this sequence in order, in linear time.
+	 */
+	Object[] toArray() {
+		Object[] array = new Object[size()];
+		fill(root, array, 0);
+		return array;
+	}
+
+	/**
+	 * Stores the elements of the given tree in the given array from the given position on, and returns the position
+	 * after the last element stored.
+	 */
+	private static int fill(Node node, Object[] array, int position) {
+		while (node != null) {
+			position = fill(node.left, array, position);
+			array[position++] = node.value;
+			node = node.right;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns an unmodifiable list view of this sequence, which takes constant time to make. Reading an element of the
+	 * view takes logarithmic time, and iterating over it takes linear time.
+	 */
+	List<E> asList() {
+		return new AbstractList<E>() {
+
+			@Override
+			public E get(int index) {
+				return PersistentSequence.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return PersistentSequence.this.size();
+			}
+
+			@Override
+			public Iterator<E> iterator() {
+				return PersistentSequence.this.iterator();
+			}
+		};
+	}
+
+	/**
+	 * Returns an iterator over the elements of this sequence in order, walking the tree with a stack of the nodes whose
+	 * element is still to come.
+	 */
+	private Iterator<E> iterator() {
+		ArrayDeque<Node> path = new ArrayDeque<>();
+		for (Node node = root; node != null; node = node.left)
+			path.push(node);
+		return new Iterator<E>() {
+
+			@Override
+			public boolean hasNext() {
+				return !path.isEmpty();
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E next() {
+				if (path.isEmpty())
+					throw new NoSuchElementException();
+				Node node = path.pop();
+				for (Node next = node.right; next != null; next = next.left)
+					path.push(next);
+				return (E) node.value;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of elements of the given tree.
+	 */
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * Returns the height of the given tree.
+	 */
+	private static int height(Node node) {
+		return node == null ? 0 : node.height;
+	}
+
+	/**
+	 * Returns a balanced tree of the elements of the first given tree, followed by the given element and the elements of
+	 * the second given tree, in time proportional to the difference in height of the given trees.
+	 */
+	private static Node join(Node left, Object value, Node right) {
+		if (height(left) > height(right) + 1)
+			return joinRight(left, value, right);
+		if (height(right) > height(left) + 1)
+			return joinLeft(left, value, right);
+		return new Node(left, value, right);
+	}
+
+	/**
+	 * Joins the given trees by descending the right spine of the left tree, which is the taller one, down to a subtree
+	 * as high as the right tree, and rebalancing on the way back up.
+	 */
+	private static Node joinRight(Node left, Object value, Node right) {
+		if (height(left.right) <= height(right) + 1) {
+			Node joined = new Node(left.right, value, right);
+			if (height(joined) <= height(left.left) + 1)
+				return new Node(left.left, left.value, joined);
+			return rotateLeft(new Node(left.left, left.value, rotateRight(joined)));
+		}
+		Node joined = joinRight(left.right, value, right);
+		Node result = new Node(left.left, left.value, joined);
+		if (height(joined) <= height(left.left) + 1)
+			return result;
+		return rotateLeft(result);
+	}
+
+	/**
+	 * Joins the given trees by descending the left spine of the right tree, which is the taller one, down to a subtree
+	 * as high as the left tree, and rebalancing on the way back up.
+	 */
+	private static Node joinLeft(Node left, Object value, Node right) {
+		if (height(right.left) <= height(left) + 1) {
+			Node joined = new Node(left, value, right.left);
+			if (height(joined) <= height(right.right) + 1)
+				return new Node(joined, right.value, right.right);
+			return rotateRight(new Node(rotateLeft(joined), right.value, right.right));
+		}
+		Node joined = joinLeft(left, value, right.left);
+		Node result = new Node(joined, right.value, right.right);
+		if (height(joined) <= height(right.right) + 1)
+			return result;
+		return rotateRight(result);
+	}
+
+	/**
+	 * Returns the given tree with its right child as root.
+	 */
+	private static Node rotateLeft(Node node) {
+		Node right = node.right;
+		return new Node(new Node(node.left, node.value, right.left), right.value, right.right);
+	}
+
+	/**
+	 * Returns the given tree with its left child as root.
+	 */
+	private static Node rotateRight(Node node) {
+		Node left = node.left;
+		return new Node(left.left, left.value, new Node(left.right, node.value, node.right));
+	}
+
+	/**
+	 * Returns the trees of the elements of the given tree before the given index and from the given index on.
+	 */
+	private static Node[] split(Node node, int index) {
+		if (node == null)
+			return new Node[2];
+		int leftSize = size(node.left);
+		if (index <= leftSize) {
+			Node[] parts = split(node.left, index);
+			parts[1] = join(parts[1], node.value, node.right);
+			return parts;
+		}
+		Node[] parts = split(node.right, index - leftSize - 1);
+		parts[0] = join(node.left, node.value, parts[0]);
+		return parts;
+	}
+
+	/**
+	 * Returns a balanced tree of the elements of the first given tree followed by those of the second.
+	 */
+	private static Node concat(Node left, Node right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		return join(left, first(right), split(right, 1)[1]);
+	}
+
+	/**
+	 * Returns the first element of the given non-empty tree.
+	 */
+	private static Object first(Node node) {
+		while (node.left != null)
+			node = node.left;
+		return node.value;
+	}
+
+	/**
+	 * A class of immutable tree nodes, each holding an element, its subtrees and the size and height of its tree.
+	 */
+	private static final class Node {
+
+		/**
+		 * The element of this node.
+		 */
+		final Object value;
+
+		/**
+		 * The trees of the elements before and after the element of this node.
+		 */
+		final Node left, right;
+
+		/**
+		 * The number of elements and the height of the tree of this node.
+		 */
+		final int size, height;
+
+		/**
+		 * Initialize a new node with the given subtrees and element.
+		 */
+		Node(Node left, Object value, Node right) {
+			this.left = left;
+			this.value = value;
+			this.right = right;
+			this.size = PersistentSequence.size(left) + 1 + PersistentSequence.size(right);
+			this.height = Math.max(PersistentSequence.height(left), PersistentSequence.height(right)) + 1;
+		}
+	}
+}
@@ -1,11 +1,19 @@
 package connections;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import be.kuleuven.cs.som.annotate.*;
 
 /**
  * A class of roads where each road has an ID, connects two end points, has a length in meters, 
  * a speed limit an average road speed under normal conditions in meters per second,
  * a delay in seconds, and a blocked status for each endpoint direction.
+ *
+ * The delays and blocked statuses of a road are held together in a single packed value, which is read and replaced
+ * atomically. Delays, blocks and directions can therefore be changed by one thread while other threads plan routes
+ * over the road, without any lock, and a reader never sees half of an update.
  * 
  * @invar The ID of each road must be a valid ID for any road
  * 		| isValidID(getID())
@@ -28,13 +36,18 @@ import be.kuleuven.cs.som.annotate.*;
 
 public abstract class Road extends Segments {
 	/**
-	 * The unique identifier of the road
+	 * The packed form of the unique identifier of the road, or NO_ID while it has none
 	 */
-	private String ID;
+	private long packedID = NO_ID;
 	/**
-	 * The list containing the IDs of all roads
+	 * The value registering that a road has no identifier, which is not the packed form of any identifier
 	 */
-	private static ArrayList<String> idArray = new ArrayList<>();
+	private static final long NO_ID = -1L;
+	/**
+	 * Map from the packed form of the ID of each road to that road, which roads created by many threads at once
+	 * can register in
+	 */
+	private static final StripedLongHashMap<Road> roadsByID = new StripedLongHashMap<>();
 	/**
 	 * The minimum length an ID can have
 	 */
@@ -60,21 +73,33 @@ public abstract class Road extends Segments {
 	 */
 	private static final float MAX_SPEED = (float) 299792458.0;
 	/**
-	 * The delay of a road in the direction of the first endpoint
+	 * The delays and blocked statuses of the road in both directions, packed into one value. The low 31 bits hold the
+	 * bits of the delay in the direction of the first endpoint and the next 31 bits those of the delay in the direction
+	 * of the second endpoint, which leaves out the sign bit of each delay since valid delays are never negative. The
+	 * two highest bits hold the blocked status in the direction of the first and of the second endpoint.
+	 */
+	private volatile long trafficState = 0L;
+	/**
+	 * The updater changing the traffic state of roads atomically
+	 */
+	private static final AtomicLongFieldUpdater<Road> TRAFFIC_STATE =
+			AtomicLongFieldUpdater.newUpdater(Road.class, "trafficState");
+	/**
+	 * The number of bits of the traffic state holding each delay
 	 */
-	private float delayDirectionOne = 0.0F;
+	private static final int DELAY_BITS = 31;
 	/**
-	 * The delay of a road in the direction of the second endpoint
+	 * The mask selecting a single delay
 	 */
-	private float delayDirectionTwo = 0.0F;
+	private static final long DELAY_MASK = (1L << DELAY_BITS) - 1;
 	/**
-	 * The blocked status of a road in the direction of the first endpoint
+	 * The bit of the traffic state holding the blocked status in the direction of the first endpoint
 	 */
-	private boolean blockedDirectionOne = false;
+	private static final long BLOCKED_ONE = 1L << (2 * DELAY_BITS);
 	/**
-	 * The blocked status of a road in the direction of the second endpoint
+	 * The bit of the traffic state holding the blocked status in the direction of the second endpoint
 	 */
-	private boolean blockedDirectionTwo = false;
+	private static final long BLOCKED_TWO = 1L << (2 * DELAY_BITS + 1);
 	/**
 	 * The maximum latitude coordinate
 	 */
@@ -83,6 +108,11 @@ public abstract class Road extends Segments {
 	 * The maximum longitude coordinate
 	 */
 	private static double MAX_COORDINATE_LONGITUDE = 70.0;
+	/**
+	 * The smallest travel time in seconds per unit of straight-line distance between the endpoints
+	 * of any road that has been registered, used as a lower bound by goal directed route planning
+	 */
+	private static volatile double minTimePerDistance = Double.POSITIVE_INFINITY;
 
 	/**
 	 * The first location (endpoint) of the road
@@ -96,12 +126,17 @@ public abstract class Road extends Segments {
 	/**
 	 * Variable registering whether or not this road has been terminated.
 	 */
-	protected boolean isTerminated = false;
+	protected volatile boolean isTerminated = false;
 
     /**
      * Boolean value that tracks the direction of the road, if true then road is moving in direction of endpoint two.
      */
-	protected boolean directionOfRoad = true;
+	protected volatile boolean directionOfRoad = true;
+
+	/**
+	 * The observers notified of each change to the travel time of this road, or null if there are none.
+	 */
+	private volatile List<RoadObserver> observers = null;
 
     
 	/**
@@ -180,14 +215,57 @@ public abstract class Road extends Segments {
 	 * | new.location2.hasAsAdjoiningRoad(this) == true
 	 */
 	public Road(String id, Location location1, Location location2, int length, float speedlimit, float roadSpeed) {
-		this.setID(id);
+		this(id, location1, location2, length, speedlimit, roadSpeed, false);
+	}
+
+	/**
+	 * Initialize a new non-terminated road with given ID, first and second location, speed limit and roadspeed,
+	 * possibly as part of a batch of roads whose IDs and adjoining roads are registered all at once.
+	 *
+	 * @param id        The unique identifier for our new road.
+	 * @param location1 The first endpoint of the new road.
+	 * @param location2 The second endpoint of the new road.
+	 * @param length    The length of the new road.
+	 * @param speedlimit The speed limit of the new road.
+	 * @param roadSpeed The average speed obtained on the new road under standard conditions.
+	 * @param isDeferred True if the uniqueness of the ID is checked by the caller, and the ID and the road are only
+	 * 					registered later through registerIDs, Location.addAdjoiningRoads and registerDeferred.
+	 * @pre The given first endpoint must be valid endpoint for a road
+	 * | isValidEndPoint(location1.getCoordinate())
+	 * @pre The given second endpoint must be valid endpoint for a road
+	 * | isValidEndPoint(location2.getCoordinate())
+	 * @post The ID of this new road will be equal to the given id
+	 * | new.getID() == id
+	 * @post If the road is not deferred, it is added to the list of adjoining roads of both its endpoints.
+	 * | if (!isDeferred)
+	 * | then new.location1.hasAsAdjoiningRoad(this) && new.location2.hasAsAdjoiningRoad(this)
+	 * @throws IllegalArgumentException
+	 * 		The given ID is not valid, or the road is deferred and the ID does not have the format of a valid ID
+	 * 		| if (isDeferred) then !correctIDFormat(id) else !isValidID(id)
+	 */
+	Road(String id, Location location1, Location location2, int length, float speedlimit, float roadSpeed, boolean isDeferred)
+			throws IllegalArgumentException {
+		if (!isDeferred)
+			this.setID(id);
+		else if (id.length() < getMinIDLength() || id.length() > getMaxIDLength() || !correctIDFormat(id))
+			throw new IllegalArgumentException();
+		else
+			this.packedID = RoadIDCodec.encode(id);
 		assert isValidEndPoint(location1.getCoordinate());
 		assert isValidEndPoint(location2.getCoordinate());
 		this.location1 = location1;
 		this.location2 = location2;
-		this.setLength(length);
 		this.speedlimit = speedlimit;
 		this.roadSpeed = roadSpeed;
+		if (isDeferred) {
+			// The setters lower the shared bound on the travel time per distance and advance the modification clock,
+			// which a batch that is rejected later must not do, so the bound is only lowered by registerDeferred.
+			this.length = isValidLength(length) ? length : calculateMinLength();
+			if (!isValidSpeedLimit(speedlimit) || !isValidRoadSpeed(roadSpeed))
+				throw new IllegalArgumentException();
+			return;
+		}
+		this.setLength(length);
 		this.setSpeedLimit(speedlimit);
 		this.setAvgRoadSpeed(roadSpeed);
 		location1.addAdjoiningRoad(this);
@@ -212,12 +290,95 @@ public abstract class Road extends Segments {
 		if (!isValidID(ID)) {
 			throw new IllegalArgumentException();
 		}
-		String oldID = this.getID();
-		if (oldID != null) {
-			idArray.remove(oldID);
+		long newID = RoadIDCodec.encode(ID);
+		// Claim the new ID atomically, so two roads created at once by different threads cannot both take it.
+		if (roadsByID.putIfAbsent(newID, this) != null) {
+			throw new IllegalArgumentException();
+		}
+		if (this.packedID != NO_ID) {
+			roadsByID.remove(this.packedID, this);
+		}
+		this.packedID = newID;
+	}
+
+	/**
+	 * Registers the IDs of a batch of deferred roads all at once. Several threads can register batches at once.
+	 *
+	 * Each ID is claimed atomically, as by setID. If the ID of one of the given roads turns out to be taken, the IDs
+	 * of the roads registered before it by this call are released again, so the batch is registered entirely or not
+	 * at all.
+	 *
+	 * @param roads The roads whose IDs to register.
+	 * @return The first of the given roads whose ID was already taken, or null if all of them were registered.
+	 * @post If the result is null, each of the given roads can be looked up by its ID; otherwise none of them can.
+	 * 		| if (result == null) then for each road in roads: getRoad(road.getPackedID()) == road
+	 * 		| else for each road in roads: getRoad(road.getPackedID()) != road
+	 */
+	static Road registerIDs(Collection<? extends Road> roads) {
+		int registered = 0;
+		for (Road road : roads) {
+			if (roadsByID.putIfAbsent(road.packedID, road) != null) {
+				Iterator<? extends Road> released = roads.iterator();
+				for (int i = 0; i < registered; i++) {
+					Road other = released.next();
+					roadsByID.remove(other.packedID, other);
+				}
+				return road;
+			}
+			registered++;
 		}
-		idArray.add(ID);
-		this.ID = ID;
+		return null;
+	}
+
+	/**
+	 * Releases the IDs of the given deferred roads that were registered for them, leaving IDs registered for other
+	 * roads alone.
+	 *
+	 * @param roads The roads whose IDs to release.
+	 * @post None of the given roads can be looked up by its ID.
+	 * 		| for each road in roads: getRoad(road.getPackedID()) != road
+	 */
+	static void unregisterIDs(Collection<? extends Road> roads) {
+		for (Road road : roads)
+			roadsByID.remove(road.packedID, road);
+	}
+
+	/**
+	 * Registers the travel time per distance of the given deferred roads, once they are part of the network.
+	 *
+	 * @param roads The roads to register.
+	 * @post The smallest registered travel time per unit of distance is not larger than that of any of the given roads.
+	 * 		| for each road in roads: if (road.getEndPoint1().getDistanceTo(road.getEndPoint2()) > 0)
+	 * 		|	then new.getMinTimePerDistance() <= (road.getLength() / road.getRoadSpeed())
+	 * 		|		/ road.getEndPoint1().getDistanceTo(road.getEndPoint2())
+	 */
+	static void registerDeferred(Collection<? extends Road> roads) {
+		for (Road road : roads)
+			road.registerTimePerDistance();
+	}
+
+	/**
+	 * Returns the non-terminated road with the given ID.
+	 *
+	 * @param ID The ID of the road to look up.
+	 * @return The road with the given ID, or null if no road has that ID.
+	 * 		| if (result != null) then result.getID().equals(ID) && !result.isTerminated()
+	 */
+	public static Road getRoad(String ID) {
+		if (!RoadIDCodec.isEncodable(ID))
+			return null;
+		return roadsByID.get(RoadIDCodec.encode(ID));
+	}
+
+	/**
+	 * Returns the non-terminated road with the given packed ID.
+	 *
+	 * @param packedID The packed form of the ID of the road to look up.
+	 * @return The road whose ID has the given packed form, or null if there is no such road.
+	 * 		| if (result != null) then result.getPackedID() == packedID && !result.isTerminated()
+	 */
+	public static Road getRoad(long packedID) {
+		return roadsByID.get(packedID);
 	}
 
 	/**
@@ -225,7 +386,17 @@ public abstract class Road extends Segments {
 	 */
 	@Basic
 	public String getID() {
-		return this.ID;
+		if (this.packedID == NO_ID)
+			return null;
+		return RoadIDCodec.decode(this.packedID);
+	}
+
+	/**
+	 * Returns the packed form of the unique identification of our road.
+	 * 		| result == RoadIDCodec.encode(getID())
+	 */
+	public long getPackedID() {
+		return this.packedID;
 	}
 
 	/**
@@ -249,21 +420,12 @@ public abstract class Road extends Segments {
 	 * Checks to see if the given ID follows the correct naming conventions
 	 *
 	 * @param ID The ID to be checked
-	 * @return True if the first character is an UpperCase letter and then has at least one number following
-	 * | if (Character.isUpperCase(ID.charAt(0)))
-	 * then for each additional character i in 1:ID.length():
-	 * Character.isDigit(ID.charAt(i)))
+	 * @return True if the first character is an UpperCase letter from A to Z and then only digits from 0 to 9 follow,
+	 * so the ID can be packed
+	 * | RoadIDCodec.isEncodable(ID)
 	 */
 	public boolean correctIDFormat(String ID) {
-		if (Character.isUpperCase(ID.charAt(0))) {
-			for (int i = 1; i < ID.length(); i++) {
-				if (!Character.isDigit(ID.charAt(i))) {
-					return false;
-				}
-			}
-			return true;
-		}
-		return false;
+		return RoadIDCodec.isEncodable(ID);
 	}
 
 	/**
@@ -271,16 +433,10 @@ public abstract class Road extends Segments {
 	 *
 	 * @param ID The ID to be checked
 	 * @return True if the ID given is not used for another road
-	 * |  for each element in idArray:
-	 * !ID.equals(element)
+	 * | getRoad(ID) == null
 	 */
 	public boolean isUniqueID(String ID) {
-		for (String i : idArray) {
-			if (ID.equals(i)) {
-				return false;
-			}
-		}
-		return true;
+		return getRoad(ID) == null;
 	}
 
 	/**
@@ -311,13 +467,14 @@ public abstract class Road extends Segments {
 	 * Sets the maximum ID length for the road's identifier
 	 *
 	 * @param value The maximum ID length to be set
-	 * @throws IllegalArgumentException If the given value is less than the minimum ID length
-	 *                                  | value < minIDLength
+	 * @throws IllegalArgumentException If the given value is less than the minimum ID length or greater than the
+	 *                                  largest length of an ID that can be packed
+	 *                                  | value < minIDLength || value > RoadIDCodec.MAX_LENGTH
 	 * @post The maximum ID length is set to the given value
 	 * | new.getMaxIDLength() == value
 	 */
 	public static void setMaxIDLength(int value) throws IllegalArgumentException {
-		if (value < minIDLength) {
+		if (value < minIDLength || value > RoadIDCodec.MAX_LENGTH) {
 			throw new IllegalArgumentException();
 		}
 		maxIDLength = value;
@@ -381,6 +538,8 @@ public abstract class Road extends Segments {
 			this.length = length;
 		else
 			this.length = this.calculateMinLength();
+		registerTimePerDistance();
+		notifyObservers();
 	}
 
 	/**
@@ -431,6 +590,41 @@ public abstract class Road extends Segments {
 		if (!isValidRoadSpeed(roadspeed))
 			throw new IllegalArgumentException();
 		this.roadSpeed = roadspeed;
+		registerTimePerDistance();
+		notifyObservers();
+	}
+
+	/**
+	 * Lowers the smallest registered travel time per unit of straight-line distance to that of this road,
+	 * if this road is faster over the straight line between its endpoints.
+	 *
+	 * @post The smallest registered travel time per unit of distance is not larger than that of this road.
+	 * | if (getEndPoint1().getDistanceTo(getEndPoint2()) > 0 && getRoadSpeed() > 0)
+	 * |	then new.getMinTimePerDistance() <= (getLength() / getRoadSpeed()) / getEndPoint1().getDistanceTo(getEndPoint2())
+	 */
+	private void registerTimePerDistance() {
+		if (roadSpeed <= 0.0F)
+			return;
+		double distance = location1.getDistanceTo(location2);
+		if (distance > 0) {
+			double timePerDistance = (length / (double) roadSpeed) / distance;
+			if (timePerDistance < minTimePerDistance) {
+				synchronized (Road.class) {
+					if (timePerDistance < minTimePerDistance)
+						minTimePerDistance = timePerDistance;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the smallest travel time in seconds per unit of straight-line distance of any road that has been
+	 * registered. Since no road can be travelled faster over the straight line between its endpoints, the
+	 * straight-line distance between two locations times this value never exceeds the travel time between them.
+	 * Infinity is returned as long as no road between two distinct locations has been registered.
+	 */
+	public static double getMinTimePerDistance() {
+		return minTimePerDistance;
 	}
 
 	/**
@@ -465,7 +659,8 @@ public abstract class Road extends Segments {
 
 	public void setDelayDirectionEndPointOne(float delay) {
 		assert isValidDelay(delay);
-		this.delayDirectionOne = delay;
+		updateTrafficState(DELAY_MASK, delayBits(delay));
+		notifyObservers();
 	}
 
 	/**
@@ -480,7 +675,8 @@ public abstract class Road extends Segments {
 
 	public void setDelayDirectionEndPointTwo(float delay) {
 		assert isValidDelay(delay);
-		this.delayDirectionTwo = delay;
+		updateTrafficState(DELAY_MASK << DELAY_BITS, delayBits(delay) << DELAY_BITS);
+		notifyObservers();
 	}
 
 	/**
@@ -499,14 +695,14 @@ public abstract class Road extends Segments {
 	 * Returns the delay in seconds for the road in the direction of endpoint one
 	 */
 	public float getDelayDirectionEndPointOne() {
-		return delayDirectionOne;
+		return delayOf(trafficState, false);
 	}
 
 	/**
 	 * Returns the delay in seconds for the road in the direction of endpoint two
 	 */
 	public float getDelayDirectionEndPointTwo() {
-		return delayDirectionTwo;
+		return delayOf(trafficState, true);
 	}
 
 
@@ -520,7 +716,8 @@ public abstract class Road extends Segments {
 	 * | new.isBlockedDirectionOne() == blocked
 	 */
 	public void setBlockedDirectionEndPointOne(boolean blocked) {
-		this.blockedDirectionOne = blocked;
+		updateTrafficState(BLOCKED_ONE, blocked ? BLOCKED_ONE : 0L);
+		notifyObservers();
 	}
 
 	/**
@@ -533,21 +730,92 @@ public abstract class Road extends Segments {
 	 * | new.isBlockedDirectionTwo() == blocked
 	 */
 	public void setBlockedDirectionEndPointTwo(boolean blocked) {
-		this.blockedDirectionTwo = blocked;
+		updateTrafficState(BLOCKED_TWO, blocked ? BLOCKED_TWO : 0L);
+		notifyObservers();
 	}
 
 	/**
 	 * Returns the blocked status of the road going towards endpoint one
 	 */
 	public boolean isBlockedDirectionEndPointOne() {
-		return blockedDirectionOne;
+		return isBlockedIn(trafficState, false);
 	}
 
 	/**
 	 * Returns the blocked status of the road going towards endpoint two
 	 */
 	public boolean isBlockedDirectionEndPointTwo() {
-		return blockedDirectionTwo;
+		return isBlockedIn(trafficState, true);
+	}
+
+	/**
+	 * Returns the delay in seconds registered for the road in the direction of the given endpoint, also when the road
+	 * cannot be travelled in that direction.
+	 *
+	 * @param towardsEndPointTwo True for the direction of endpoint two, false for the direction of endpoint one.
+	 */
+	float getRegisteredDelay(boolean towardsEndPointTwo) {
+		return delayOf(trafficState, towardsEndPointTwo);
+	}
+
+	/**
+	 * Returns the blocked status registered for the road in the direction of the given endpoint, also when the road
+	 * cannot be travelled in that direction.
+	 *
+	 * @param towardsEndPointTwo True for the direction of endpoint two, false for the direction of endpoint one.
+	 */
+	boolean isRegisteredBlocked(boolean towardsEndPointTwo) {
+		return isBlockedIn(trafficState, towardsEndPointTwo);
+	}
+
+	/**
+	 * Returns the delays and blocked statuses registered for the road in both directions, packed into one value that
+	 * is read atomically. The parts are taken out with {@link #delayOf(long, boolean)} and
+	 * {@link #isBlockedIn(long, boolean)}.
+	 */
+	long getTrafficState() {
+		return trafficState;
+	}
+
+	/**
+	 * Returns the delay in the direction of the given endpoint held by the given traffic state.
+	 *
+	 * @param state              A traffic state of a road.
+	 * @param towardsEndPointTwo True for the direction of endpoint two, false for the direction of endpoint one.
+	 */
+	static float delayOf(long state, boolean towardsEndPointTwo) {
+		return Float.intBitsToFloat((int) ((towardsEndPointTwo ? state >>> DELAY_BITS : state) & DELAY_MASK));
+	}
+
+	/**
+	 * Returns the blocked status in the direction of the given endpoint held by the given traffic state.
+	 *
+	 * @param state              A traffic state of a road.
+	 * @param towardsEndPointTwo True for the direction of endpoint two, false for the direction of endpoint one.
+	 */
+	static boolean isBlockedIn(long state, boolean towardsEndPointTwo) {
+		return (state & (towardsEndPointTwo ? BLOCKED_TWO : BLOCKED_ONE)) != 0;
+	}
+
+	/**
+	 * Returns the bits of the given delay as they are held in a traffic state.
+	 *
+	 * @pre The given delay is valid
+	 * 		| isValidDelay(delay)
+	 */
+	private static long delayBits(float delay) {
+		return Float.floatToRawIntBits(delay) & DELAY_MASK;
+	}
+
+	/**
+	 * Replaces the bits of the traffic state of this road selected by the given mask with the given bits, retrying
+	 * until no other thread changed the state in between.
+	 */
+	private void updateTrafficState(long mask, long bits) {
+		long state;
+		do {
+			state = trafficState;
+		} while (!TRAFFIC_STATE.compareAndSet(this, state, (state & ~mask) | bits));
 	}
 
 	/**
@@ -580,6 +848,84 @@ public abstract class Road extends Segments {
 		return time;
 	}
 
+	/**
+	 * Checks whether this road can be travelled in the direction of endpoint one.
+	 *
+	 * @return True for every road, subclasses restrict the directions in which they can be travelled.
+	 * | result == true
+	 */
+	public boolean canTravelTowardsEndPointOne() {
+		return true;
+	}
+
+	/**
+	 * Checks whether this road can be travelled in the direction of endpoint two.
+	 *
+	 * @return True for every road, subclasses restrict the directions in which they can be travelled.
+	 * | result == true
+	 */
+	public boolean canTravelTowardsEndPointTwo() {
+		return true;
+	}
+
+	/**
+	 * Returns the endpoint of this road at the other side of the given endpoint.
+	 *
+	 * @param location One of the endpoints of this road.
+	 * @return The second endpoint if the given location is the first endpoint, the first endpoint otherwise.
+	 * | if (location == getEndPoint1())
+	 * |	then result == getEndPoint2()
+	 * | else result == getEndPoint1()
+	 */
+	public Location getOtherEndPoint(Location location) {
+		if (location == location1)
+			return location2;
+		return location1;
+	}
+
+	/**
+	 * A method to calculate the travel time of leaving the given endpoint over this road, without reporting blocks.
+	 *
+	 * @param location The endpoint from which the road is entered.
+	 * @return Infinity if the given location is not an endpoint of this road, if the road cannot be travelled away
+	 * 			from the given location or if the road is blocked in that direction.
+	 * | if (location == getEndPoint1() && canTravelTowardsEndPointTwo() && !isRegisteredBlocked(true))
+	 * |	then result == getLength() / getRoadSpeed() + getRegisteredDelay(true)
+	 * | else if (location == getEndPoint2() && canTravelTowardsEndPointOne() && !isRegisteredBlocked(false))
+	 * |	then result == getLength() / getRoadSpeed() + getRegisteredDelay(false)
+	 * | else result == Float.POSITIVE_INFINITY
+	 */
+	public float calculateTravelTimeFrom(Location location) {
+		boolean towardsEndPointTwo;
+		if (location == location1 && canTravelTowardsEndPointTwo())
+			towardsEndPointTwo = true;
+		else if (location == location2 && canTravelTowardsEndPointOne())
+			towardsEndPointTwo = false;
+		else
+			return Float.POSITIVE_INFINITY;
+		long state = trafficState;
+		if (isBlockedIn(state, towardsEndPointTwo))
+			return Float.POSITIVE_INFINITY;
+		return (this.length / this.roadSpeed) + delayOf(state, towardsEndPointTwo);
+	}
+
+	/**
+	 * A method to calculate the travel time of arriving at the given endpoint over this road, without reporting blocks.
+	 *
+	 * @param location The endpoint at which the road is left.
+	 * @return The travel time of leaving the other endpoint over this road.
+	 * | if (location == getEndPoint2())
+	 * |	then result == calculateTravelTimeFrom(getEndPoint1())
+	 * | else result == calculateTravelTimeFrom(getEndPoint2())
+	 */
+	public float calculateTravelTimeTo(Location location) {
+		if (location == location2)
+			return calculateTravelTimeFrom(location1);
+		if (location == location1)
+			return calculateTravelTimeFrom(location2);
+		return Float.POSITIVE_INFINITY;
+	}
+
 	/**
 	 * Returns the first endpoint of this road as a location.
 	 */
@@ -713,8 +1059,8 @@ public abstract class Road extends Segments {
 	 * 		| new.getEndpoint1 == null && new.getEndpoint2 == null
 	 * @post Both locations connected to this road remove this road from their respective list of adjoining roads
 	 * 		| new.location1.getAdjoiningRoads.contains(this) == false && new.location2.getAdjoiningRoads.contains(this) == false
-	 * @post The list of IDs no longer contains this roads ID.
-	 * 		| new.idArray.contains(this.getID()) == false
+	 * @post This road can no longer be looked up by its ID.
+	 * 		| getRoad(this.getID()) != this
 	 */
 	public void terminate() {
 		if (!this.isTerminated) {
@@ -723,7 +1069,8 @@ public abstract class Road extends Segments {
 			location2.removeAdjoiningRoad(this);
 			location1 = null;
 			location2 = null;
-			idArray.remove(this.ID);
+			roadsByID.remove(this.packedID, this);
+			notifyObservers();
 		}
 	}
 	
@@ -738,26 +1085,68 @@ public abstract class Road extends Segments {
      * |    new.endLocation = location1
      * | else
      * |    new.directionOfRoad = true
-     * |    new.startLocation = location2
-     * |    new.endLocation = location1
+     * |    new.startLocation = location1
+     * |    new.endLocation = location2
      */
-    public void swapRoadDirection() throws ClassCastException {
+    public synchronized void swapRoadDirection() throws ClassCastException {
         if(this instanceof AlternatingRoad){
+        	// The endpoints are set before the direction, so a reader seeing the new direction sees them as well.
     	if(directionOfRoad){
-            directionOfRoad = false;
             startLocation = location2;
             endLocation = location1;
+            directionOfRoad = false;
         }
         else{
+            startLocation = location1;
+            endLocation = location2;
             directionOfRoad = true;
-            startLocation = location2;
-            endLocation = location1;
         }
         }
         else
         	throw new ClassCastException();
-        
+        notifyObservers();
     }
+
+	/**
+	 * Registers the given observer to be notified of each change to the travel time of this road.
+	 *
+	 * @param observer The observer to register.
+	 * @throws NullPointerException
+	 * 		The given observer is null
+	 * 		| observer == null
+	 * @post The given observer is notified when the length, average speed, a delay, a blocked status or the
+	 * 		 direction of this road changes, or when this road is terminated.
+	 */
+	public synchronized void addObserver(RoadObserver observer) throws NullPointerException {
+		if (observer == null)
+			throw new NullPointerException();
+		if (observers == null)
+			observers = new CopyOnWriteArrayList<>();
+		observers.add(observer);
+	}
+
+	/**
+	 * Removes the given observer from the observers of this road.
+	 *
+	 * @param observer The observer to remove.
+	 * @post The given observer is no longer notified of changes to this road.
+	 */
+	public synchronized void removeObserver(RoadObserver observer) {
+		if (observers != null)
+			observers.remove(observer);
+	}
+
+	/**
+	 * Registers a change of this road and notifies all observers of this road that its travel time may have changed.
+	 */
+	protected void notifyObservers() {
+		markModified();
+		List<RoadObserver> current = observers;
+		if (current != null) {
+			for (RoadObserver observer : current)
+				observer.roadChanged(this);
+		}
+	}
 }
 
 	
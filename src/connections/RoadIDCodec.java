@@ -0,0 +1,151 @@
+package connections;
+
+/**
+ * A class of methods packing road IDs into a single long and back, so road IDs can be compared, hashed, stored and
+ * looked up without allocating or holding strings.
+ *
+ * A road ID is an uppercase letter from A to Z followed by up to MAX_DIGITS decimal digits. Its packed form holds the
+ * letter in its five highest bits, the number of digits in the five bits below them and the value of the digits in
+ * its lowest 54 bits. Since the number of digits is part of the packed form, IDs differing only in leading zeros,
+ * such as A7 and A007, have different packed forms. Two IDs are equal if and only if their packed forms are equal.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public final class RoadIDCodec {
+
+	/**
+	 * The largest number of digits of an ID that can be packed.
+	 */
+	public static final int MAX_DIGITS = 16;
+
+	/**
+	 * The largest length of an ID that can be packed.
+	 */
+	public static final int MAX_LENGTH = MAX_DIGITS + 1;
+
+	/**
+	 * The number of bits holding the value of the digits, and the position of the number of digits.
+	 */
+	private static final int NUMBER_BITS = 54;
+
+	/**
+	 * The position of the letter.
+	 */
+	private static final int LETTER_SHIFT = NUMBER_BITS + 5;
+
+	/**
+	 * The mask selecting the value of the digits.
+	 */
+	private static final long NUMBER_MASK = (1L << NUMBER_BITS) - 1;
+
+	/**
+	 * This class only has static methods.
+	 */
+	private RoadIDCodec() {
+	}
+
+	/**
+	 * Checks whether the given ID can be packed.
+	 *
+	 * @param id The ID to check.
+	 * @return True if the given ID is an uppercase letter from A to Z followed by at most MAX_DIGITS digits from 0 to 9.
+	 * 		| result == (id != null && 1 <= id.length() && id.length() <= MAX_LENGTH &&
+	 * 		|	'A' <= id.charAt(0) && id.charAt(0) <= 'Z' &&
+	 * 		|	for each I in 1..id.length()-1: '0' <= id.charAt(I) && id.charAt(I) <= '9')
+	 */
+	public static boolean isEncodable(CharSequence id) {
+		if (id == null || id.length() < 1 || id.length() > MAX_LENGTH)
+			return false;
+		char letter = id.charAt(0);
+		if (letter < 'A' || letter > 'Z')
+			return false;
+		for (int i = 1; i < id.length(); i++) {
+			char digit = id.charAt(i);
+			if (digit < '0' || digit > '9')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the packed form of the given ID.
+	 *
+	 * @param id The ID to pack.
+	 * @return The packed form of the given ID.
+	 * 		| decode(result).equals(id.toString())
+	 * @throws IllegalArgumentException
+	 * 		The given ID cannot be packed
+	 * 		| !isEncodable(id)
+	 */
+	public static long encode(CharSequence id) throws IllegalArgumentException {
+		if (!isEncodable(id))
+			throw new IllegalArgumentException();
+		long number = 0;
+		for (int i = 1; i < id.length(); i++)
+			number = number * 10 + (id.charAt(i) - '0');
+		return ((long) (id.charAt(0) - 'A') << LETTER_SHIFT) | ((long) (id.length() - 1) << NUMBER_BITS) | number;
+	}
+
+	/**
+	 * Returns the ID of which the given value is the packed form.
+	 *
+	 * @param packedID The packed form of an ID.
+	 * @return The ID whose packed form is the given value.
+	 * 		| encode(result) == packedID
+	 * @throws IllegalArgumentException
+	 * 		The given value is not the packed form of an ID
+	 * 		| !isValid(packedID)
+	 */
+	public static String decode(long packedID) throws IllegalArgumentException {
+		if (!isValid(packedID))
+			throw new IllegalArgumentException();
+		int width = getDigitCount(packedID);
+		char[] id = new char[width + 1];
+		id[0] = getLetter(packedID);
+		long number = getNumber(packedID);
+		for (int i = width; i > 0; i--) {
+			id[i] = (char) ('0' + number % 10);
+			number /= 10;
+		}
+		return new String(id);
+	}
+
+	/**
+	 * Checks whether the given value is the packed form of an ID.
+	 *
+	 * @param packedID The value to check.
+	 * @return True if the letter, the number of digits and the value of the digits held by the given value form an ID.
+	 */
+	public static boolean isValid(long packedID) {
+		int letter = (int) (packedID >>> LETTER_SHIFT);
+		int width = getDigitCount(packedID);
+		if (letter > 'Z' - 'A' || width > MAX_DIGITS)
+			return false;
+		long number = getNumber(packedID);
+		for (int i = 0; i < width; i++)
+			number /= 10;
+		return number == 0;
+	}
+
+	/**
+	 * Returns the letter of the ID packed in the given value.
+	 */
+	public static char getLetter(long packedID) {
+		return (char) ('A' + (packedID >>> LETTER_SHIFT));
+	}
+
+	/**
+	 * Returns the number of digits of the ID packed in the given value.
+	 */
+	public static int getDigitCount(long packedID) {
+		return (int) (packedID >>> NUMBER_BITS) & 0x1F;
+	}
+
+	/**
+	 * Returns the value of the digits of the ID packed in the given value.
+	 */
+	public static long getNumber(long packedID) {
+		return packedID & NUMBER_MASK;
+	}
+}
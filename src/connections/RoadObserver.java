@@ -0,0 +1,19 @@
+package connections;
+
+/**
+ * An interface for objects that keep information derived from the travel time of roads, and must be told
+ * when that travel time may have changed.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public interface RoadObserver {
+
+	/**
+	 * Called after the length, average speed, a delay, a blocked status or the direction of the given road
+	 * changed, or after the given road was terminated.
+	 *
+	 * @param road The road that changed.
+	 */
+	void roadChanged(Road road);
+}
@@ -2,10 +2,22 @@ package connections;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  *  A class of Routes where every route has a start location and a list of 0 to n connecting road segments in it.
  *
+ *  A route remembers its total length, total travel time, number of blocked segments and visited locations. Adding a
+ *  segment extends these totals, and they are only computed again after a segment is removed or one of the segments
+ *  changed, so asking for them again costs constant time.
+ *
+ *  The roads of a route are numbered in the order in which they are travelled, with the roads of a subroute in its
+ *  place. The route keeps the sums of the lengths and travel times of the roads before each road, so the length and
+ *  travel time between two roads take constant time and the road reached after some time is found by binary search.
+ *  Without subroutes, the road at some index starts at the location at that index in getAllLocations.
+ *
+ *  The segments are kept in a persistent balanced tree, so adding or removing a segment copies a logarithmic number of
+ *  nodes instead of the whole sequence, and the segments can be viewed as a list without copying them.
  *
  * @author Michiel Van der Haegen
  * @author Sam Haberman
@@ -13,9 +25,78 @@ import java.util.Arrays;
 public class Route extends Segments{
 	
 	/**
-	 * Variable registering the set of roadSegments of the route
+	 * Variable registering the sequence of roadSegments of the route
+	 */
+	private PersistentSequence<Object> roadSegments;
+
+	/**
+	 * The number of segments of this route that are routes.
+	 */
+	private int subrouteCount;
+
+	/**
+	 * The locations visited when travelling through this route, or null while the totals of this route must be
+	 * computed again.
+	 */
+	private Location[] locations = null;
+
+	/**
+	 * The number of locations in the array of visited locations, which can have room for more.
+	 */
+	private int locationCount;
+
+	/**
+	 * The roads of this route in the order in which they are travelled, with the roads of a subroute in its place.
+	 */
+	private Road[] roads;
+
+	/**
+	 * The number of roads in the arrays of roads and sums, which can have room for more.
+	 */
+	private int roadCount;
+
+	/**
+	 * The location from which each road of this route is travelled.
+	 */
+	private Location[] roadStarts;
+
+	/**
+	 * The total length of the roads of this route before each road, followed by the length of all roads.
+	 */
+	private long[] lengthSums;
+
+	/**
+	 * The total travel time in seconds of the roads of this route before each road, followed by that of all roads,
+	 * where roads that cannot be travelled in a finite time count as zero.
+	 */
+	private double[] timeSums;
+
+	/**
+	 * The number of roads of this route before each road that cannot be travelled in a finite time, followed by the
+	 * number of all such roads.
+	 */
+	private int[] blockedSums;
+
+	/**
+	 * The index of the first segment at which checking whether this route is traversable stops, or -1 if there is none.
+	 */
+	private int firstUntraversable;
+
+	/**
+	 * The number of changes made to each segment when the totals of this route were computed.
+	 */
+	private int[] segmentModifications;
+
+	/**
+	 * The number of changes made to all segments when the totals of this route were last found up to date.
+	 */
+	private long validatedClock = -1;
+
+	/**
+	 * Variable registering whether one of the segments of this route is a route, whose totals can change without a
+	 * change to its own segments.
 	 */
-	private Object[] roadSegments;
+	private boolean hasSubroutes;
 	
 	/**
 	 * Initialize a new Route with given start location and collection of road segments.
@@ -41,7 +122,11 @@ public class Route extends Segments{
 		this.startLocation = startLocation;
 		if (!areValidSegments(segments))
 			throw new IllegalArgumentException();
-		roadSegments = segments.clone();
+		roadSegments = PersistentSequence.of(segments);
+		for (Object segment : segments) {
+			if (segment instanceof Route)
+				subrouteCount++;
+		}
 	}
 
 	/**
@@ -167,7 +252,17 @@ public class Route extends Segments{
 	 */
 	@Override
 	public Object[] getRouteSegments() {
-		return roadSegments.clone();
+		return roadSegments.toArray();
+	}
+
+	/**
+	 * Returns an unmodifiable list of the road segments of this route, which does not copy them. The list keeps the
+	 * segments the route had when it was returned.
+	 *
+	 * @return | Arrays.equals(result.toArray(), getRouteSegments())
+	 */
+	public List<Object> getRouteSegmentList() {
+		return roadSegments.asList();
 	}
 
 	/**
@@ -187,14 +282,23 @@ public class Route extends Segments{
 	public void addRouteSegment(Object segment) throws IllegalArgumentException {
 		if (segment == null)
 			throw new IllegalArgumentException();
-		ArrayList<Object> list = new ArrayList<Object>(Arrays.asList(roadSegments));
-		list.add(segment);
-		roadSegments = new Road[list.size()];
-		list.toArray(roadSegments);
-		assert (areValidSegments(roadSegments));
-		for(Object item: roadSegments) {
-			assert(!containsItself(item));
-		}
+		// A changed route only holds roads.
+		if (!(segment instanceof Road) || subrouteCount > 0)
+			throw new ArrayStoreException();
+		roadSegments = roadSegments.append(segment);
+		assert (areValidSegments(roadSegments.toArray()));
+		assert (!containsAnyItself());
+		long clock = getModificationClock();
+		boolean isUpToDate = locations != null && clock == validatedClock;
+		if (locations != null && !hasSubroutes && roadSegments.size() > 2)
+			appendTotals();
+		else
+			// The totals cannot be extended, so they are computed again when next asked for.
+			locations = null;
+		markModified();
+		// If no other segment changed meanwhile, the extended totals are up to date with this change as well.
+		if (isUpToDate && locations != null)
+			validatedClock = clock + 1;
 	}
 
 	/**
@@ -225,13 +329,29 @@ public class Route extends Segments{
 	 *
 	 */
 	public void removeRouteSegment(int index) throws IndexOutOfBoundsException {
-		if (index < 0 || index >= roadSegments.length)
+		if (index < 0 || index >= roadSegments.size())
 			throw new IndexOutOfBoundsException();
-		ArrayList<Object> list = new ArrayList<Object>(Arrays.asList(roadSegments));
-		list.remove(index);
-		roadSegments = new Road[list.size()];
-		list.toArray(roadSegments);
-		assert (areValidSegments(roadSegments));
+		// A changed route only holds roads.
+		if (subrouteCount > (roadSegments.get(index) instanceof Route ? 1 : 0))
+			throw new ArrayStoreException();
+		roadSegments = roadSegments.remove(index);
+		subrouteCount = 0;
+		assert (areValidSegments(roadSegments.toArray()));
+		locations = null;
+		markModified();
+	}
+
+	/**
+	 * Checks whether this route contains itself in one of its segments.
+	 *
+	 * @return | for some segment in getRouteSegments(): containsItself(segment)
+	 */
+	private boolean containsAnyItself() {
+		for (Object item : roadSegments.asList()) {
+			if (containsItself(item))
+				return true;
+		}
+		return false;
 	}
 
 	/**
@@ -248,11 +368,256 @@ public class Route extends Segments{
 	 */
 	@Override
 	public int getLength() {
-		int length = 0;
-		for (Object road : roadSegments) {
-			length += ((Segments) road).getLength();
+		updateTotals();
+		return (int) lengthSums[roadCount];
+	}
+
+	/**
+	 * Returns the total travel time in seconds of this route, travelling each segment in the direction of the route.
+	 *
+	 * @return The sum of the travel times of the segments, which is infinity if a segment is blocked or cannot be
+	 * 			travelled in the direction of the route.
+	 *	| double time = 0
+	 *	| Location tracker = getStartLocations()[0]
+	 *	| for segment in getRouteSegments()
+	 *	|	if (segment instanceof Road)
+	 *	|		time += ((Road) segment).calculateTravelTimeFrom(tracker)
+	 *	|	else
+	 *	|		time += ((Route) segment).getTravelTime()
+	 *	|	tracker = segment.getOtherLocation(tracker)
+	 *	| result == (float) time
+	 */
+	public float getTravelTime() {
+		updateTotals();
+		return getTravelTimeBetween(0, roadCount);
+	}
+
+	/**
+	 * Returns the number of road segments of this route, including those of its subroutes, that cannot be travelled
+	 * in the direction of the route in a finite time, because they are blocked in that direction, lead the other way
+	 * or have an infinite delay.
+	 */
+	public int getBlockedSegmentCount() {
+		updateTotals();
+		return blockedSums[roadCount];
+	}
+
+	/**
+	 * Returns the number of roads of this route, counting the roads of its subroutes.
+	 */
+	public int getRoadCount() {
+		updateTotals();
+		return roadCount;
+	}
+
+	/**
+	 * Returns the road of this route at the given index.
+	 *
+	 * @pre The given index is the index of a road.
+	 * 		| 0 <= index && index < getRoadCount()
+	 */
+	Road getRoad(int index) {
+		updateTotals();
+		return roads[index];
+	}
+
+	/**
+	 * Returns the location from which the road of this route at the given index is travelled.
+	 *
+	 * @pre The given index is the index of a road.
+	 * 		| 0 <= index && index < getRoadCount()
+	 */
+	Location getRoadStart(int index) {
+		updateTotals();
+		return roadStarts[index];
+	}
+
+	/**
+	 * Returns the total length of the roads of this route from the start of the road at the first given index up to
+	 * the start of the road at the second given index, where the index getRoadCount() stands for the end of the route.
+	 *
+	 * @param from The index of the first road.
+	 * @param to   The index of the road after the last road.
+	 * @return The sum of the lengths of the roads from the first index up to the second.
+	 * 		| result == sum({getRoad(i).getLength() | i in from..to-1})
+	 * @throws IndexOutOfBoundsException
+	 * 		The given indices do not delimit a range of roads of this route
+	 * 		| from < 0 || from > to || to > getRoadCount()
+	 */
+	public int getLengthBetween(int from, int to) throws IndexOutOfBoundsException {
+		updateTotals();
+		checkRange(from, to);
+		return (int) (lengthSums[to] - lengthSums[from]);
+	}
+
+	/**
+	 * Returns the total travel time in seconds of the roads of this route from the start of the road at the first given
+	 * index up to the start of the road at the second given index, where the index getRoadCount() stands for the end of
+	 * the route.
+	 *
+	 * @param from The index of the first road.
+	 * @param to   The index of the road after the last road.
+	 * @return The sum of the travel times of the roads from the first index up to the second, which is infinity if one
+	 * 			of them cannot be travelled in the direction of the route in a finite time.
+	 * 		| result == sum({getRoad(i).calculateTravelTimeFrom(getRoadStart(i)) | i in from..to-1})
+	 * @throws IndexOutOfBoundsException
+	 * 		The given indices do not delimit a range of roads of this route
+	 * 		| from < 0 || from > to || to > getRoadCount()
+	 */
+	public float getTravelTimeBetween(int from, int to) throws IndexOutOfBoundsException {
+		updateTotals();
+		checkRange(from, to);
+		if (blockedSums[to] != blockedSums[from])
+			return Float.POSITIVE_INFINITY;
+		return (float) (timeSums[to] - timeSums[from]);
+	}
+
+	/**
+	 * Returns the index of the road of this route on which a vehicle leaving the start of this route is after the given
+	 * number of seconds, or getRoadCount() if it has reached the end of the route by then. A vehicle stays on a road
+	 * that cannot be travelled in a finite time.
+	 *
+	 * @param seconds The time since leaving the start of this route.
+	 * @return The largest index up to getRoadCount() at which the travel time from the start does not exceed the given
+	 * 			time.
+	 * 		| getTravelTimeBetween(0, result) <= seconds &&
+	 * 		| (result == getRoadCount() || getTravelTimeBetween(0, result + 1) > seconds)
+	 * @throws IllegalArgumentException
+	 * 		The given time is negative or not a number
+	 * 		| !(seconds >= 0)
+	 */
+	public int getRoadIndexAt(double seconds) throws IllegalArgumentException {
+		if (!(seconds >= 0))
+			throw new IllegalArgumentException();
+		updateTotals();
+		int low = 0, high = roadCount;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (blockedSums[middle] == 0 && timeSums[middle] <= seconds)
+				low = middle;
+			else
+				high = middle - 1;
 		}
-		return length;
+		return low;
+	}
+
+	/**
+	 * Checks that the given indices delimit a range of roads of this route.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		| from < 0 || from > to || to > getRoadCount()
+	 */
+	private void checkRange(int from, int to) throws IndexOutOfBoundsException {
+		if (from < 0 || from > to || to > roadCount)
+			throw new IndexOutOfBoundsException();
+	}
+
+	/**
+	 * Computes the totals of this route again if a segment was added, removed or changed since they were computed.
+	 */
+	private void updateTotals() {
+		long clock = getModificationClock();
+		if (locations != null && clock == validatedClock)
+			return;
+		if (locations == null || hasSubroutes || areSegmentsModified())
+			computeTotals();
+		validatedClock = clock;
+	}
+
+	/**
+	 * Checks whether a segment of this route changed since the totals of this route were computed.
+	 */
+	private boolean areSegmentsModified() {
+		int i = 0;
+		for (Object segment : roadSegments.asList()) {
+			if (((Segments) segment).getModificationCount() != segmentModifications[i++])
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Computes all totals of this route from its segments.
+	 */
+	private void computeTotals() {
+		locations = computeAllLocations();
+		locationCount = locations.length;
+		Object[] segments = roadSegments.toArray();
+		segmentModifications = new int[segments.length];
+		firstUntraversable = -1;
+		hasSubroutes = false;
+		int count = 0;
+		for (Object segment : segments)
+			count += segment instanceof Route ? ((Route) segment).getRoadCount() : 1;
+		roadCount = count;
+		roads = new Road[count];
+		roadStarts = new Location[count];
+		lengthSums = new long[count + 1];
+		timeSums = new double[count + 1];
+		blockedSums = new int[count + 1];
+		int r = 0;
+		Location tracker = this.startLocation;
+		for (int i = 0; i < segments.length; i++) {
+			Segments segment = (Segments) segments[i];
+			segmentModifications[i] = segment.getModificationCount();
+			if (segment instanceof Route) {
+				hasSubroutes = true;
+				Route subroute = (Route) segment;
+				for (int j = 0; j < subroute.roadCount; j++)
+					setRoad(r++, subroute.roads[j], subroute.roadStarts[j]);
+			} else
+				setRoad(r++, (Road) segment, tracker);
+			tracker = segment.getOtherLocation(tracker);
+			if (firstUntraversable < 0 && !passesTraversableCheck(i))
+				firstUntraversable = i;
+		}
+	}
+
+	/**
+	 * Extends the totals of this route with its last segment, which is a road that was just added.
+	 *
+	 * The arrays of the totals grow by doubling, so appending takes amortized constant time.
+	 *
+	 * @pre The totals are those of the route without its last segment, which had at least two segments and no
+	 * 		subroutes.
+	 */
+	private void appendTotals() {
+		int i = roadSegments.size() - 1;
+		Road road = (Road) roadSegments.get(i);
+		Location tracker = locations[i];
+		if (roads.length == i) {
+			int capacity = Math.max(2 * i, 4);
+			locations = Arrays.copyOf(locations, capacity + 1);
+			segmentModifications = Arrays.copyOf(segmentModifications, capacity);
+			roads = Arrays.copyOf(roads, capacity);
+			roadStarts = Arrays.copyOf(roadStarts, capacity);
+			lengthSums = Arrays.copyOf(lengthSums, capacity + 1);
+			timeSums = Arrays.copyOf(timeSums, capacity + 1);
+			blockedSums = Arrays.copyOf(blockedSums, capacity + 1);
+		}
+		locations[i + 1] = road.getOtherLocation(tracker);
+		locationCount = i + 2;
+		segmentModifications[i] = road.getModificationCount();
+		setRoad(i, road, tracker);
+		roadCount = i + 1;
+		if (firstUntraversable < 0 && !passesTraversableCheck(i))
+			firstUntraversable = i;
+	}
+
+	/**
+	 * Stores the given road, travelled from the given location, at the given index of the roads of this route, and the
+	 * sums up to the next index.
+	 *
+	 * @pre The sums up to the given index are stored.
+	 */
+	private void setRoad(int index, Road road, Location from) {
+		roads[index] = road;
+		roadStarts[index] = from;
+		float time = road.calculateTravelTimeFrom(from);
+		boolean isBlocked = time == Float.POSITIVE_INFINITY;
+		lengthSums[index + 1] = lengthSums[index] + road.getLength();
+		timeSums[index + 1] = timeSums[index] + (isBlocked ? 0 : time);
+		blockedSums[index + 1] = blockedSums[index] + (isBlocked ? 1 : 0);
 	}
 
 	/**
@@ -268,18 +633,48 @@ public class Route extends Segments{
 	 * 					! roadSegments[i].isBlockedDirectionEndPointOne()
 	 */
 	public boolean isTraversable() {
-		for(int i=0;i<=roadSegments.length-1;i++) {
-			if(getAllLocations()[i]==((Road) roadSegments[i]).getEndPoint1()) {
-				if(((Road) roadSegments[i]).isBlockedDirectionEndPointTwo())
-					return false;
-			}
-			if(getAllLocations()[i]==((Road) roadSegments[i]).getEndPoint2()) {
-				if(((Road) roadSegments[i]).isBlockedDirectionEndPointOne())
-					return false;
-			}	
+		updateTotals();
+		if (firstUntraversable < 0)
+			return true;
+		// Check again from the first segment that did not pass, so it fails in the same way as it did then.
+		for(int i=firstUntraversable;i<=roadSegments.size()-1;i++) {
+			if (!isTraversableAt(i))
+				return false;
 		}
 		return true;
 	}
+
+	/**
+	 * Checks whether the segment at the given index is not blocked in the direction of this route.
+	 *
+	 * @throws ClassCastException
+	 * 		The segment at the given index is not a road
+	 */
+	private boolean isTraversableAt(int i) throws ClassCastException {
+		Object segment = roadSegments.get(i);
+		if(locations[i]==((Road) segment).getEndPoint1()) {
+			if(((Road) segment).isBlockedDirectionEndPointTwo())
+				return false;
+		}
+		if(locations[i]==((Road) segment).getEndPoint2()) {
+			if(((Road) segment).isBlockedDirectionEndPointOne())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the segment at the given index is not blocked in the direction of this route and can be checked
+	 * without an exception.
+	 */
+	private boolean passesTraversableCheck(int i) {
+		try {
+			return isTraversableAt(i);
+		}
+		catch (RuntimeException exc) {
+			return false;
+		}
+	}
 	
 	/**
 	 * Returns an array of all the locations that are visited when traveling through this route
@@ -314,26 +709,35 @@ public class Route extends Segments{
 	 * |	return array;
 	 */
 	public Location[] getAllLocations() {
+		updateTotals();
+		return Arrays.copyOf(locations, locationCount);
+	}
+
+	/**
+	 * Computes the locations visited when travelling through this route, as returned by getAllLocations.
+	 */
+	private Location[] computeAllLocations() {
+		Object[] segments = roadSegments.toArray();
 		ArrayList<Object> list = new ArrayList<Object>();
 		Location tracker = this.startLocation;
 		list.add(tracker);
-		if (roadSegments.length == 0) {
+		if (segments.length == 0) {
 			
-		} else if (roadSegments.length == 1) {
-			if (roadSegments[0].getClass() == Route.class) {
-				return ((Route) roadSegments[0]).getAllLocations();
+		} else if (segments.length == 1) {
+			if (segments[0].getClass() == Route.class) {
+				return ((Route) segments[0]).getAllLocations();
 			} else {
 				list.add(getOtherLocation(tracker));
 			}
 		} else { 
-			for (int i = 0; i <= roadSegments.length - 1; i++) {
-				if (roadSegments[i].getClass() == Route.class) {
+			for (int i = 0; i <= segments.length - 1; i++) {
+				if (segments[i].getClass() == Route.class) {
 					ArrayList<Location> sublist = new ArrayList<Location>();
-					sublist.addAll(Arrays.asList(((Route) roadSegments[0]).getAllLocations()));
+					sublist.addAll(Arrays.asList(((Route) segments[0]).getAllLocations()));
 					sublist.remove(0);
 					list.addAll(sublist);
 				} else {
-					tracker = ((Segments) roadSegments[i]).getOtherLocation(tracker);
+					tracker = ((Segments) segments[i]).getOtherLocation(tracker);
 					list.add(tracker);
 				}
 			}
@@ -360,14 +764,16 @@ public class Route extends Segments{
 	@Override
 	public String toString() {
 		String string1 = new String("This route has the following properties:"+"\n"+"It connects these segments: ");
-		String segments = ((Road) roadSegments[0]).getID();
-		for(int i = 1; i < roadSegments.length; i++) {
-			segments = segments + ", "+((Road) roadSegments[i]).getID();
+		Object[] routeSegments = roadSegments.toArray();
+		String segments = ((Road) routeSegments[0]).getID();
+		for(int i = 1; i < routeSegments.length; i++) {
+			segments = segments + ", "+((Road) routeSegments[i]).getID();
 		}	
 		String string2 = new String("\n"+"With these respective locations: ");
-		String locations = getAllLocations()[0].getAddress();
-		for(int i = 1; i < getAllLocations().length; i++) {
-			locations = locations + ", "+getAllLocations()[i].getAddress();
+		Location[] allLocations = getAllLocations();
+		String locations = allLocations[0].getAddress();
+		for(int i = 1; i < allLocations.length; i++) {
+			locations = locations + ", "+allLocations[i].getAddress();
 		}
 		return string1+segments+string2+locations+"\n"+"Blocked in the direction of the route: "+!isTraversable()+"\n";
 	}
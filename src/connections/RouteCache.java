@@ -0,0 +1,511 @@
+package connections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class of bounded caches of fastest routes between pairs of locations, for networks in which the same start and
+ * end locations are asked for again and again.
+ *
+ * Each entry holds the roads of the fastest route from its start to its end location and the travel time of that
+ * route. Entries are kept in a segmented least recently used order: a new entry starts on probation, and moves to the
+ * protected segment when it is asked for again. When the cache holds too many entries or too much weight, the least
+ * recently used entry on probation is evicted first, so a burst of pairs asked for only once cannot push out the
+ * pairs asked for repeatedly. The weight of an entry is one plus the number of roads of its route.
+ *
+ * The cache observes the roads of its network and keeps a reverse index from each road to the entries whose route
+ * traverses it. A change to a road only invalidates the entries traversing it, except when the road becomes faster
+ * in a direction: then an entry whose route avoids the road is also invalidated if the straight-line lower bound on
+ * a route through the faster road is below its travel time, since only then can a faster route exist. The entries are
+ * grouped by start location for this test, so a speed-up takes time linear in the number of distinct start locations,
+ * plus the number of entries starting close enough to the faster road, while it holds the lock of the cache. Roads
+ * added to the network after the cache was created are not observed, so the cache must be cleared after adding roads.
+ *
+ * Any number of threads can query a cache and change its roads at once.
+ *
+ * @invar The number of entries and their weight never exceed the bounds of the cache.
+ * 		| size() <= getMaxEntries() && getWeight() <= getMaxWeight()
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class RouteCache implements RoadObserver {
+
+	/**
+	 * The share of the weight bound of a cache that its protected segment can take.
+	 */
+	private static final double PROTECTED_SHARE = 0.8;
+
+	/**
+	 * The largest number of entries of this cache.
+	 */
+	private final int maxEntries;
+
+	/**
+	 * The largest total weight of the entries of this cache.
+	 */
+	private final long maxWeight;
+
+	/**
+	 * The entries on probation, least recently used first.
+	 */
+	private final LinkedHashMap<Key, Entry> probation = new LinkedHashMap<>();
+
+	/**
+	 * The protected entries, least recently used first.
+	 */
+	private final LinkedHashMap<Key, Entry> protectedEntries = new LinkedHashMap<>();
+
+	/**
+	 * The total weight of all entries and of the protected entries.
+	 */
+	private long weight = 0, protectedWeight = 0;
+
+	/**
+	 * Map from each road to the entries whose route traverses it.
+	 */
+	private final IdentityHashMap<Road, List<Entry>> entriesByRoad = new IdentityHashMap<>();
+
+	/**
+	 * Map from each location to the entries whose route starts at it.
+	 */
+	private final IdentityHashMap<Location, StartEntries> entriesByStart = new IdentityHashMap<>();
+
+	/**
+	 * Map from each observed road to its travel time towards its first and towards its second endpoint when it last
+	 * changed.
+	 */
+	private final IdentityHashMap<Road, float[]> observedTimes = new IdentityHashMap<>();
+
+	/**
+	 * The number of road changes observed by this cache, used to discard routes computed while a road changed.
+	 */
+	private long changeCount = 0;
+
+	/**
+	 * The number of queries answered from and without this cache.
+	 */
+	private long hitCount = 0, missCount = 0;
+
+	/**
+	 * The route planner of each thread querying this cache.
+	 */
+	private final ThreadLocal<RoutePlanner> planners = ThreadLocal.withInitial(RoutePlanner::new);
+
+	/**
+	 * Initialize a new empty cache of fastest routes over the roads of the given locations.
+	 *
+	 * @param locations  The locations of the network.
+	 * @param maxEntries The largest number of entries of the cache.
+	 * @param maxWeight  The largest total weight of the entries of the cache.
+	 * @post The new cache has the given bounds.
+	 * 		| new.getMaxEntries() == maxEntries && new.getMaxWeight() == maxWeight
+	 * @throws NullPointerException
+	 * 		The given collection is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 * @throws IllegalArgumentException
+	 * 		One of the given bounds is not positive
+	 * 		| maxEntries <= 0 || maxWeight <= 0
+	 */
+	public RouteCache(Collection<Location> locations, int maxEntries, long maxWeight)
+			throws NullPointerException, IllegalArgumentException {
+		if (maxEntries <= 0 || maxWeight <= 0)
+			throw new IllegalArgumentException();
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		for (Location location : locations) {
+			for (Road road : location.getAdjoiningRoadsView()) {
+				synchronized (this) {
+					if (observedTimes.containsKey(road))
+						continue;
+					observedTimes.put(road, travelTimes(road));
+				}
+				road.addObserver(this);
+			}
+		}
+	}
+
+	/**
+	 * Returns the largest number of entries of this cache.
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Returns the largest total weight of the entries of this cache.
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Returns the number of entries of this cache.
+	 */
+	public synchronized int size() {
+		return probation.size() + protectedEntries.size();
+	}
+
+	/**
+	 * Returns the total weight of the entries of this cache.
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Returns the number of queries answered from this cache.
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of queries for which a route had to be searched.
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the fastest route from the given start location to the given end location, from this cache if it holds
+	 * one. Each call returns a new route, which can be changed without affecting this cache.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return The fastest route from start to end, or null if no route exists.
+	 * 		| result == new RoutePlanner().findFastestRoute(start, end)
+	 * @throws NullPointerException
+	 * 		One of the given locations is null
+	 * 		| start == null || end == null
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated
+	 * 		| start.isTerminated() || end.isTerminated()
+	 */
+	public Route findFastestRoute(Location start, Location end) throws NullPointerException, IllegalArgumentException {
+		return find(start, end).toRoute();
+	}
+
+	/**
+	 * Returns the travel time in seconds of the fastest route from the given start location to the given end
+	 * location, from this cache if it holds it.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return The travel time of the fastest route, or infinity if no route exists.
+	 * 		| result == new RoutePlanner().calculateFastestTravelTime(start, end)
+	 * @throws NullPointerException
+	 * 		One of the given locations is null
+	 * 		| start == null || end == null
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated
+	 * 		| start.isTerminated() || end.isTerminated()
+	 */
+	public float calculateFastestTravelTime(Location start, Location end) throws NullPointerException, IllegalArgumentException {
+		return (float) find(start, end).travelTime;
+	}
+
+	/**
+	 * Returns the entry of the given locations, searching its route and adding it to this cache if it is not cached.
+	 * A route searched while a road changed is returned but not cached, as it may already be outdated.
+	 */
+	private Entry find(Location start, Location end) throws NullPointerException, IllegalArgumentException {
+		if (start == null || end == null)
+			throw new NullPointerException();
+		Key key = new Key(start, end);
+		long changes;
+		synchronized (this) {
+			Entry entry = lookUp(key);
+			if (entry != null) {
+				hitCount++;
+				return entry;
+			}
+			missCount++;
+			changes = changeCount;
+		}
+		Entry entry = new Entry(key, planners.get().findFastestRoute(start, end));
+		synchronized (this) {
+			if (changes == changeCount && lookUp(key) == null)
+				insert(entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns the entry of the given key, marking it as most recently used, or null if this cache has none.
+	 * An entry used again while on probation is protected, demoting the least recently used protected entries to
+	 * probation as long as the protected segment is too heavy.
+	 */
+	private Entry lookUp(Key key) {
+		Entry entry = protectedEntries.remove(key);
+		if (entry != null) {
+			protectedEntries.put(key, entry);
+			return entry;
+		}
+		entry = probation.remove(key);
+		if (entry == null)
+			return null;
+		protectedEntries.put(key, entry);
+		protectedWeight += entry.weight;
+		Iterator<Entry> oldest = protectedEntries.values().iterator();
+		while (protectedWeight > PROTECTED_SHARE * maxWeight && protectedEntries.size() > 1) {
+			Entry demoted = oldest.next();
+			oldest.remove();
+			protectedWeight -= demoted.weight;
+			probation.put(demoted.key, demoted);
+		}
+		return entry;
+	}
+
+	/**
+	 * Adds the given entry to this cache on probation, and evicts the least recently used entries, on probation first,
+	 * as long as this cache exceeds its bounds.
+	 */
+	private void insert(Entry entry) {
+		probation.put(entry.key, entry);
+		weight += entry.weight;
+		for (Road road : entry.roads)
+			entriesByRoad.computeIfAbsent(road, r -> new ArrayList<>()).add(entry);
+		entriesByStart.computeIfAbsent(entry.key.start, start -> new StartEntries()).add(entry);
+		while (size() > maxEntries || weight > maxWeight) {
+			Map<Key, Entry> segment = probation.isEmpty() ? protectedEntries : probation;
+			remove(segment.values().iterator().next());
+		}
+	}
+
+	/**
+	 * Removes the given entry from this cache and from the reverse indices.
+	 */
+	private void remove(Entry entry) {
+		if (protectedEntries.remove(entry.key, entry))
+			protectedWeight -= entry.weight;
+		else if (!probation.remove(entry.key, entry))
+			return;
+		weight -= entry.weight;
+		for (Road road : entry.roads) {
+			List<Entry> entries = entriesByRoad.get(road);
+			entries.remove(entry);
+			if (entries.isEmpty())
+				entriesByRoad.remove(road);
+		}
+		StartEntries starting = entriesByStart.get(entry.key.start);
+		starting.entries.remove(entry);
+		if (starting.entries.isEmpty())
+			entriesByStart.remove(entry.key.start);
+	}
+
+	/**
+	 * Removes all entries of this cache.
+	 *
+	 * @post The cache has no entries.
+	 * 		| new.size() == 0
+	 */
+	public synchronized void clear() {
+		probation.clear();
+		protectedEntries.clear();
+		entriesByRoad.clear();
+		entriesByStart.clear();
+		weight = 0;
+		protectedWeight = 0;
+		changeCount++;
+	}
+
+	/**
+	 * Invalidates the entries whose route traverses the given road, and, if the road became faster in a direction,
+	 * the entries for which a route through that direction may now be faster.
+	 *
+	 * @param road The road that changed.
+	 */
+	@Override
+	public synchronized void roadChanged(Road road) {
+		changeCount++;
+		float[] previous = observedTimes.get(road);
+		if (previous == null)
+			return;
+		List<Entry> traversing = entriesByRoad.get(road);
+		if (traversing != null) {
+			for (Entry entry : new ArrayList<>(traversing))
+				remove(entry);
+		}
+		if (road.isTerminated()) {
+			observedTimes.remove(road);
+			return;
+		}
+		float[] current = travelTimes(road);
+		if (current[1] < previous[1])
+			removeImprovable(road.getEndPoint1(), road.getEndPoint2(), current[1], previous[1] == Float.POSITIVE_INFINITY);
+		if (current[0] < previous[0])
+			removeImprovable(road.getEndPoint2(), road.getEndPoint1(), current[0], previous[0] == Float.POSITIVE_INFINITY);
+		observedTimes.put(road, current);
+	}
+
+	/**
+	 * Invalidates the entries for which a route travelling from the first to the second given location in the given
+	 * travel time could be faster, judged by the straight-line lower bound on the travel time of the rest of such a
+	 * route. Entries without a route are only invalidated if the direction could not be travelled before, as a road
+	 * that was already passable cannot connect locations by becoming faster. The start locations whose routes are all
+	 * faster than the lower bound on reaching the faster direction from them are skipped without looking at their
+	 * entries.
+	 */
+	private void removeImprovable(Location from, Location to, float time, boolean wasBlocked) {
+		double timePerDistance = Road.getMinTimePerDistance();
+		if (timePerDistance == Double.POSITIVE_INFINITY)
+			timePerDistance = 0;
+		List<Entry> improvable = new ArrayList<>();
+		for (Map.Entry<Location, StartEntries> starting : entriesByStart.entrySet()) {
+			double toRoad = time + timePerDistance * starting.getKey().getDistanceTo(from);
+			if (!wasBlocked && toRoad > starting.getValue().maxTravelTime)
+				continue;
+			for (Entry entry : starting.getValue().entries) {
+				if (entry.travelTime == Double.POSITIVE_INFINITY && !wasBlocked)
+					continue;
+				if (toRoad + timePerDistance * to.getDistanceTo(entry.key.end) <= entry.travelTime)
+					improvable.add(entry);
+			}
+		}
+		for (Entry entry : improvable)
+			remove(entry);
+	}
+
+	/**
+	 * Returns the travel time of the given road towards its first and towards its second endpoint.
+	 */
+	private static float[] travelTimes(Road road) {
+		return new float[] {road.calculateTravelTimeFrom(road.getEndPoint2()), road.calculateTravelTimeFrom(road.getEndPoint1())};
+	}
+
+	/**
+	 * Stops observing the roads of this cache and removes all its entries, after which it no longer reflects their
+	 * changes.
+	 */
+	public void detach() {
+		List<Road> roads;
+		synchronized (this) {
+			roads = new ArrayList<>(observedTimes.keySet());
+			observedTimes.clear();
+		}
+		for (Road road : roads)
+			road.removeObserver(this);
+		clear();
+	}
+
+	/**
+	 * A class of keys of cache entries: a start and an end location, compared by identity.
+	 */
+	private static final class Key {
+
+		/**
+		 * The start and end location of this key.
+		 */
+		private final Location start, end;
+
+		/**
+		 * Initialize a new key for the given start and end location.
+		 */
+		Key(Location start, Location end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && ((Key) other).start == start && ((Key) other).end == end;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(start) + System.identityHashCode(end);
+		}
+	}
+
+	/**
+	 * A class of groups of the cache entries starting at the same location.
+	 */
+	private static final class StartEntries {
+
+		/**
+		 * The entries of this group.
+		 */
+		private final List<Entry> entries = new ArrayList<>();
+
+		/**
+		 * An upper bound on the finite travel times of the entries of this group, which is the largest such travel
+		 * time of the entries ever added to this group.
+		 */
+		private double maxTravelTime = Double.NEGATIVE_INFINITY;
+
+		/**
+		 * Adds the given entry to this group.
+		 */
+		void add(Entry entry) {
+			entries.add(entry);
+			if (entry.travelTime != Double.POSITIVE_INFINITY)
+				maxTravelTime = Math.max(maxTravelTime, entry.travelTime);
+		}
+	}
+
+	/**
+	 * A class of cache entries, holding the roads of the fastest route between the locations of their key and the
+	 * travel time of that route.
+	 */
+	private static final class Entry {
+
+		/**
+		 * The key of this entry.
+		 */
+		private final Key key;
+
+		/**
+		 * The roads of the route of this entry in order, which are none if no route exists.
+		 */
+		private final Road[] roads;
+
+		/**
+		 * The travel time in seconds of the route of this entry, or infinity if no route exists.
+		 */
+		private final double travelTime;
+
+		/**
+		 * The weight of this entry.
+		 */
+		private final int weight;
+
+		/**
+		 * Initialize a new entry for the given key and route.
+		 */
+		Entry(Key key, Route route) {
+			this.key = key;
+			if (route == null) {
+				this.roads = new Road[0];
+				this.travelTime = Double.POSITIVE_INFINITY;
+				this.weight = 1;
+				return;
+			}
+			Object[] segments = route.getRouteSegments();
+			this.roads = new Road[segments.length];
+			double time = 0;
+			Location location = key.start;
+			for (int i = 0; i < segments.length; i++) {
+				roads[i] = (Road) segments[i];
+				time += roads[i].calculateTravelTimeFrom(location);
+				location = roads[i].getOtherEndPoint(location);
+			}
+			this.travelTime = time;
+			this.weight = 1 + roads.length;
+		}
+
+		/**
+		 * Returns a new route over the roads of this entry, or null if no route exists.
+		 */
+		Route toRoute() {
+			if (travelTime == Double.POSITIVE_INFINITY)
+				return null;
+			return new Route(key.start, (Object[]) roads.clone());
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package connections;
+
+import java.util.Arrays;
+
+/**
+ * A class of route planners that search the fastest route between two locations over the roads
+ * connecting them. The travel time of each road is its current travel time in the direction it is
+ * travelled, so one-way roads, the current direction of alternating roads, delays and blocks are all
+ * respected.
+ *
+ * A route planner can direct its search towards the end location (A* search), using the straight-line
+ * distance to the end location times the smallest travel time per unit of distance of any road as a lower
+ * bound on the remaining travel time. Goal directed queries settle far fewer locations on long routes and
+ * return routes with the same travel time as undirected queries. A goal directed planner can also be given a
+ * landmark table, whose bounds are used wherever they are tighter than the straight-line bound.
+ *
+ * A route planner can also search bidirectionally, from the start location forward and from the end
+ * location backward over the roads arriving at each location, until both searches meet. Bidirectional
+ * search can be combined with goal direction.
+ *
+ * A route planner reuses its search state between queries and can therefore only answer one query
+ * at a time.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class RoutePlanner {
+
+	/**
+	 * The search state of the search from the start location, reused by each query of this planner.
+	 */
+	private final SearchSpace forward = new SearchSpace();
+
+	/**
+	 * The search state of the search towards the end location, reused by each bidirectional query of this planner.
+	 */
+	private final SearchSpace backward = new SearchSpace();
+
+	/**
+	 * Variable registering whether the queries of this planner are directed towards their end location.
+	 */
+	private boolean isGoalDirected = false;
+
+	/**
+	 * Variable registering whether the queries of this planner search from both the start and the end location.
+	 */
+	private boolean isBidirectional = false;
+
+	/**
+	 * The landmark table used by the goal directed queries of this planner, or null.
+	 */
+	private Landmarks landmarks = null;
+
+	/**
+	 * The travel time in seconds of the fastest route found by the last query.
+	 */
+	private double travelTime;
+
+	/**
+	 * The forward search index of the location at which the fastest route of the last query was found.
+	 */
+	private int meetingForward;
+
+	/**
+	 * The backward search index of the location at which the fastest route of the last query was found,
+	 * or -1 if the last query was not bidirectional.
+	 */
+	private int meetingBackward;
+
+	/**
+	 * Checks whether the queries of this planner are directed towards their end location.
+	 */
+	public boolean isGoalDirected() {
+		return isGoalDirected;
+	}
+
+	/**
+	 * Sets whether the queries of this planner are directed towards their end location.
+	 *
+	 * @param goalDirected True to use A* search, false to use Dijkstra search.
+	 * @post The planner is goal directed if and only if the given flag is true.
+	 * 		| new.isGoalDirected() == goalDirected
+	 */
+	public void setGoalDirected(boolean goalDirected) {
+		this.isGoalDirected = goalDirected;
+	}
+
+	/**
+	 * Returns the landmark table used by the goal directed queries of this planner, or null if there is none.
+	 */
+	public Landmarks getLandmarks() {
+		return landmarks;
+	}
+
+	/**
+	 * Sets the landmark table used by the goal directed queries of this planner.
+	 *
+	 * @param landmarks The landmark table to use, or null to only use straight-line bounds.
+	 * @post The planner uses the given landmark table.
+	 * 		| new.getLandmarks() == landmarks
+	 */
+	public void setLandmarks(Landmarks landmarks) {
+		this.landmarks = landmarks;
+	}
+
+	/**
+	 * Checks whether the queries of this planner search from both the start and the end location.
+	 */
+	public boolean isBidirectional() {
+		return isBidirectional;
+	}
+
+	/**
+	 * Sets whether the queries of this planner search from both the start and the end location.
+	 *
+	 * @param bidirectional True to search from both ends, false to search from the start location only.
+	 * @post The planner is bidirectional if and only if the given flag is true.
+	 * 		| new.isBidirectional() == bidirectional
+	 */
+	public void setBidirectional(boolean bidirectional) {
+		this.isBidirectional = bidirectional;
+	}
+
+	/**
+	 * Returns the fastest route from the given start location to the given end location.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return A route from start to end over roads that can be travelled in the direction of the route, with the
+	 * 			smallest total travel time, or null if no such route exists.
+	 * 		| if (result != null)
+	 * 		|	result.getStartLocations()[0] == start && result.getEndLocation() == end
+	 * @throws NullPointerException
+	 * 		One of the given locations is null
+	 * 		| start == null || end == null
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated
+	 * 		| start.isTerminated() || end.isTerminated()
+	 */
+	public Route findFastestRoute(Location start, Location end) throws NullPointerException, IllegalArgumentException {
+		if (!search(start, end))
+			return null;
+		Road[] roads = forward.pathTo(meetingForward);
+		if (meetingBackward >= 0) {
+			Road[] backwardRoads = backward.pathTo(meetingBackward);
+			int length = roads.length;
+			roads = Arrays.copyOf(roads, length + backwardRoads.length);
+			for (int i = 0; i < backwardRoads.length; i++)
+				roads[length + i] = backwardRoads[backwardRoads.length - 1 - i];
+		}
+		return new Route(start, (Object[]) roads);
+	}
+
+	/**
+	 * Returns the travel time in seconds of the fastest route from the given start location to the given end location.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return The total travel time of the fastest route, or infinity if no route exists.
+	 * 		| if (findFastestRoute(start, end) == null)
+	 * 		|	then result == Float.POSITIVE_INFINITY
+	 * @throws NullPointerException
+	 * 		One of the given locations is null
+	 * 		| start == null || end == null
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated
+	 * 		| start.isTerminated() || end.isTerminated()
+	 */
+	public float calculateFastestTravelTime(Location start, Location end) throws NullPointerException, IllegalArgumentException {
+		if (!search(start, end))
+			return Float.POSITIVE_INFINITY;
+		return (float) travelTime;
+	}
+
+	/**
+	 * Returns the number of locations settled by the last query of this planner, in both directions.
+	 */
+	public int getSettledCount() {
+		return forward.settled + backward.settled;
+	}
+
+	/**
+	 * Runs the search configured for this planner from the given start location to the given end location.
+	 *
+	 * @return True if the end location can be reached, in which case the travel time and the meeting point of
+	 * 			the fastest route are registered.
+	 */
+	private boolean search(Location start, Location end) throws NullPointerException, IllegalArgumentException {
+		if (start == null || end == null)
+			throw new NullPointerException();
+		if (start.isTerminated() || end.isTerminated())
+			throw new IllegalArgumentException();
+		forward.reset();
+		backward.reset();
+		double timePerDistance = Road.getMinTimePerDistance();
+		if (timePerDistance == Double.POSITIVE_INFINITY)
+			timePerDistance = 0;
+		boolean directed = isGoalDirected && (timePerDistance > 0 || landmarks != null);
+		if (isBidirectional && start != end) {
+			if (directed) {
+				forward.setGoal(end, start, timePerDistance);
+				backward.setGoal(start, end, timePerDistance);
+				if (landmarks != null) {
+					forward.setLandmarks(landmarks, false);
+					backward.setLandmarks(landmarks, true);
+				}
+			}
+			return searchBidirectional(start, end);
+		}
+		if (directed) {
+			forward.setGoal(end, timePerDistance);
+			if (landmarks != null)
+				forward.setLandmarks(landmarks, false);
+		}
+		return searchForward(start, end);
+	}
+
+	/**
+	 * Runs a Dijkstra search, or an A* search if the forward search space is directed, from the given start
+	 * location until the given end location is settled.
+	 */
+	private boolean searchForward(Location start, Location end) {
+		SearchSpace space = forward;
+		int origin = space.indexOf(start);
+		space.distance[origin] = 0;
+		space.heap.insertOrDecrease(origin, space.potential[origin]);
+		while (!space.heap.isEmpty()) {
+			int u = space.heap.poll();
+			space.settled++;
+			Location location = space.locations[u];
+			if (location == end) {
+				travelTime = space.distance[u];
+				meetingForward = u;
+				meetingBackward = -1;
+				return true;
+			}
+			double distance = space.distance[u];
+			for (Road road : location.getAdjoiningRoadsView()) {
+				float time = road.calculateTravelTimeFrom(location);
+				if (time == Float.POSITIVE_INFINITY)
+					continue;
+				int v = space.indexOf(road.getOtherEndPoint(location));
+				double newDistance = distance + time;
+				if (newDistance < space.distance[v]) {
+					space.distance[v] = newDistance;
+					space.parent[v] = u;
+					space.parentRoad[v] = road;
+					space.heap.insertOrDecrease(v, newDistance + space.potential[v]);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Runs a search forward from the given start location and backward from the given end location, always
+	 * advancing the search with the smallest key, until no route through an unsettled location can be faster than
+	 * the fastest route found where both searches meet.
+	 */
+	private boolean searchBidirectional(Location start, Location end) {
+		int origin = forward.indexOf(start);
+		forward.distance[origin] = 0;
+		forward.heap.insertOrDecrease(origin, forward.potential[origin]);
+		int destination = backward.indexOf(end);
+		backward.distance[destination] = 0;
+		backward.heap.insertOrDecrease(destination, backward.potential[destination]);
+		travelTime = Double.POSITIVE_INFINITY;
+		while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+			double forwardKey = forward.heap.peekKey();
+			double backwardKey = backward.heap.peekKey();
+			if (forwardKey + backwardKey >= travelTime)
+				break;
+			if (forwardKey <= backwardKey)
+				advance(forward, backward, true);
+			else
+				advance(backward, forward, false);
+		}
+		return travelTime != Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Settles the next location of the given search space and relaxes the roads leaving it, or arriving at it for
+	 * the backward search, registering every improved route through a location the opposite search has reached.
+	 */
+	private void advance(SearchSpace space, SearchSpace opposite, boolean isForward) {
+		int u = space.heap.poll();
+		space.settled++;
+		Location location = space.locations[u];
+		double distance = space.distance[u];
+		for (Road road : location.getAdjoiningRoadsView()) {
+			float time = isForward ? road.calculateTravelTimeFrom(location) : road.calculateTravelTimeTo(location);
+			if (time == Float.POSITIVE_INFINITY)
+				continue;
+			Location other = road.getOtherEndPoint(location);
+			int v = space.indexOf(other);
+			double newDistance = distance + time;
+			if (newDistance < space.distance[v]) {
+				space.distance[v] = newDistance;
+				space.parent[v] = u;
+				space.parentRoad[v] = road;
+				space.heap.insertOrDecrease(v, newDistance + space.potential[v]);
+				int w = opposite.find(other);
+				if (w >= 0 && newDistance + opposite.distance[w] < travelTime) {
+					travelTime = newDistance + opposite.distance[w];
+					meetingForward = isForward ? v : w;
+					meetingBackward = isForward ? w : v;
+				}
+			}
+		}
+	}
+}
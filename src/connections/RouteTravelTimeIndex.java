@@ -0,0 +1,271 @@
+package connections;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class of indexes of the lengths and travel times along a route that stay up to date while its roads change, for
+ * services that keep asking how long parts of one route take and where a vehicle on it will be.
+ *
+ * A route answers these questions itself from prefix sums, but computes all of those sums again after one of its
+ * roads changed. An index observes the roads of its route and keeps their lengths and travel times in Fenwick trees
+ * instead, so a change to a road costs logarithmic time for each time the route travels it, and so does every query.
+ *
+ * The roads of an index are numbered as by the route it was made from, and are those of the route at that time;
+ * segments added to or removed from the route later are not seen. Any number of threads can query an index while its
+ * roads change.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class RouteTravelTimeIndex implements RoadObserver {
+
+	/**
+	 * The roads of this index in the order in which they are travelled.
+	 */
+	private final Road[] roads;
+
+	/**
+	 * The location from which each road of this index is travelled.
+	 */
+	private final Location[] roadStarts;
+
+	/**
+	 * The indices at which each road of this index is travelled.
+	 */
+	private final Map<Road, int[]> positions = new IdentityHashMap<>();
+
+	/**
+	 * The length of each road as last read.
+	 */
+	private final int[] lengths;
+
+	/**
+	 * The travel time of each road as last read, or zero if the road cannot be travelled in a finite time.
+	 */
+	private final double[] times;
+
+	/**
+	 * Variable registering for each road whether it could not be travelled in a finite time when last read.
+	 */
+	private final boolean[] blocked;
+
+	/**
+	 * The Fenwick tree of the lengths of the roads. The node at position i holds the sum over the (i & -i) roads up to
+	 * road i - 1.
+	 */
+	private final long[] lengthTree;
+
+	/**
+	 * The Fenwick tree of the travel times of the roads, with the same nodes as the tree of the lengths.
+	 */
+	private final double[] timeTree;
+
+	/**
+	 * The Fenwick tree of the number of roads that cannot be travelled in a finite time, with the same nodes as the
+	 * tree of the lengths.
+	 */
+	private final int[] blockedTree;
+
+	/**
+	 * Initialize a new index of the current roads of the given route, and start observing them.
+	 *
+	 * @param route The route to index.
+	 * @post The new index has the roads of the given route.
+	 * 		| new.getRoadCount() == route.getRoadCount()
+	 * @post The new index has the lengths and travel times of the given route.
+	 * 		| for each from, to in 0..getRoadCount():
+	 * 		|	if (from <= to)
+	 * 		|		new.getLengthBetween(from, to) == route.getLengthBetween(from, to)
+	 * @throws NullPointerException
+	 * 		The given route is null
+	 * 		| route == null
+	 */
+	public RouteTravelTimeIndex(Route route) throws NullPointerException {
+		int n = route.getRoadCount();
+		roads = new Road[n];
+		roadStarts = new Location[n];
+		lengths = new int[n];
+		times = new double[n];
+		blocked = new boolean[n];
+		lengthTree = new long[n + 1];
+		timeTree = new double[n + 1];
+		blockedTree = new int[n + 1];
+		Map<Road, List<Integer>> indices = new IdentityHashMap<>();
+		for (int i = 0; i < n; i++) {
+			roads[i] = route.getRoad(i);
+			roadStarts[i] = route.getRoadStart(i);
+			indices.computeIfAbsent(roads[i], road -> new ArrayList<>()).add(i);
+			read(i);
+			lengthTree[i + 1] = lengths[i];
+			timeTree[i + 1] = times[i];
+			blockedTree[i + 1] = blocked[i] ? 1 : 0;
+		}
+		// Add every node to its parent once, which builds the trees in linear time.
+		for (int node = 1; node <= n; node++) {
+			int parent = node + (node & -node);
+			if (parent <= n) {
+				lengthTree[parent] += lengthTree[node];
+				timeTree[parent] += timeTree[node];
+				blockedTree[parent] += blockedTree[node];
+			}
+		}
+		for (Map.Entry<Road, List<Integer>> entry : indices.entrySet()) {
+			int[] at = new int[entry.getValue().size()];
+			for (int k = 0; k < at.length; k++)
+				at[k] = entry.getValue().get(k);
+			positions.put(entry.getKey(), at);
+		}
+		for (Road road : positions.keySet())
+			road.addObserver(this);
+		// Read every road again once it is observed, so no change made while the trees were built is lost.
+		for (Road road : positions.keySet())
+			roadChanged(road);
+	}
+
+	/**
+	 * Returns the number of roads of this index.
+	 */
+	public int getRoadCount() {
+		return roads.length;
+	}
+
+	/**
+	 * Updates the length and travel time of the given road wherever this index travels it.
+	 *
+	 * @param road The road that changed.
+	 */
+	@Override
+	public synchronized void roadChanged(Road road) {
+		int[] at = positions.get(road);
+		if (at == null)
+			return;
+		for (int i : at) {
+			int length = lengths[i];
+			double time = times[i];
+			int isBlocked = blocked[i] ? 1 : 0;
+			read(i);
+			add(i, lengths[i] - length, times[i] - time, (blocked[i] ? 1 : 0) - isBlocked);
+		}
+	}
+
+	/**
+	 * Reads the current length and travel time of the road at the given index, without updating the trees.
+	 */
+	private void read(int i) {
+		float time = roads[i].calculateTravelTimeFrom(roadStarts[i]);
+		lengths[i] = roads[i].getLength();
+		blocked[i] = time == Float.POSITIVE_INFINITY;
+		times[i] = blocked[i] ? 0 : time;
+	}
+
+	/**
+	 * Adds the given differences to the trees at the road at the given index.
+	 */
+	private void add(int i, long length, double time, int isBlocked) {
+		for (int node = i + 1; node < lengthTree.length; node += node & -node) {
+			lengthTree[node] += length;
+			timeTree[node] += time;
+			blockedTree[node] += isBlocked;
+		}
+	}
+
+	/**
+	 * Returns the total length of the roads of this index from the start of the road at the first given index up to
+	 * the start of the road at the second given index, where the index getRoadCount() stands for the end of the route.
+	 *
+	 * @param from The index of the first road.
+	 * @param to   The index of the road after the last road.
+	 * @throws IndexOutOfBoundsException
+	 * 		The given indices do not delimit a range of roads of this index
+	 * 		| from < 0 || from > to || to > getRoadCount()
+	 */
+	public synchronized int getLengthBetween(int from, int to) throws IndexOutOfBoundsException {
+		checkRange(from, to);
+		long length = 0;
+		for (int node = to; node > 0; node -= node & -node)
+			length += lengthTree[node];
+		for (int node = from; node > 0; node -= node & -node)
+			length -= lengthTree[node];
+		return (int) length;
+	}
+
+	/**
+	 * Returns the total travel time in seconds of the roads of this index from the start of the road at the first given
+	 * index up to the start of the road at the second given index, where the index getRoadCount() stands for the end
+	 * of the route.
+	 *
+	 * @param from The index of the first road.
+	 * @param to   The index of the road after the last road.
+	 * @return The sum of the travel times of the roads, which is infinity if one of them cannot be travelled in the
+	 * 			direction of the route in a finite time.
+	 * @throws IndexOutOfBoundsException
+	 * 		The given indices do not delimit a range of roads of this index
+	 * 		| from < 0 || from > to || to > getRoadCount()
+	 */
+	public synchronized float getTravelTimeBetween(int from, int to) throws IndexOutOfBoundsException {
+		checkRange(from, to);
+		double time = 0;
+		int isBlocked = 0;
+		for (int node = to; node > 0; node -= node & -node) {
+			time += timeTree[node];
+			isBlocked += blockedTree[node];
+		}
+		for (int node = from; node > 0; node -= node & -node) {
+			time -= timeTree[node];
+			isBlocked -= blockedTree[node];
+		}
+		return isBlocked > 0 ? Float.POSITIVE_INFINITY : (float) time;
+	}
+
+	/**
+	 * Returns the index of the road on which a vehicle leaving the start of the route of this index is after the given
+	 * number of seconds, or getRoadCount() if it has reached the end of the route by then. A vehicle stays on a road
+	 * that cannot be travelled in a finite time.
+	 *
+	 * @param seconds The time since leaving the start of the route.
+	 * @return The largest index up to getRoadCount() at which the travel time from the start does not exceed the given
+	 * 			time.
+	 * 		| getTravelTimeBetween(0, result) <= seconds &&
+	 * 		| (result == getRoadCount() || getTravelTimeBetween(0, result + 1) > seconds)
+	 * @throws IllegalArgumentException
+	 * 		The given time is negative or not a number
+	 * 		| !(seconds >= 0)
+	 */
+	public synchronized int getRoadIndexAt(double seconds) throws IllegalArgumentException {
+		if (!(seconds >= 0))
+			throw new IllegalArgumentException();
+		// Descend the trees, taking every node whose roads can all be travelled within the time left.
+		int index = 0;
+		double elapsed = 0;
+		for (int step = Integer.highestOneBit(Math.max(roads.length, 1)); step > 0; step >>>= 1) {
+			int node = index + step;
+			if (node <= roads.length && blockedTree[node] == 0 && elapsed + timeTree[node] <= seconds) {
+				index = node;
+				elapsed += timeTree[node];
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Checks that the given indices delimit a range of roads of this index.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		| from < 0 || from > to || to > getRoadCount()
+	 */
+	private void checkRange(int from, int to) throws IndexOutOfBoundsException {
+		if (from < 0 || from > to || to > roads.length)
+			throw new IndexOutOfBoundsException();
+	}
+
+	/**
+	 * Stops observing the roads of this index, after which it no longer reflects their changes.
+	 */
+	public void detach() {
+		for (Road road : positions.keySet())
+			road.removeObserver(this);
+	}
+}
@@ -0,0 +1,259 @@
+package connections;
+
+import java.util.Arrays;
+
+/**
+ * A class of reusable scratch state for a single graph search over locations. Locations are given a
+ * search index when they are first reached, and all labels are kept in primitive arrays indexed by it,
+ * so that repeated queries reuse the same arrays instead of allocating new ones. The search index of a
+ * location is found in an array indexed by the index of the location, so no lookup allocates or hashes.
+ *
+ * @invar Each indexed location is registered at its own index.
+ * 		| for each i in 0..getSize()-1:
+ * 		|	indexOf(getLocation(i)) == i
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+class SearchSpace {
+
+	/**
+	 * The search index plus one of each location, indexed by the index of the location, or zero for the
+	 * locations that have not been reached.
+	 */
+	private int[] slots = new int[16];
+
+	/**
+	 * The location registered at each search index.
+	 */
+	Location[] locations = new Location[16];
+
+	/**
+	 * The tentative travel time in seconds from the search origin to each location.
+	 */
+	double[] distance = new double[16];
+
+	/**
+	 * The lower bound on the remaining travel time in seconds from each location to the goal of the search.
+	 */
+	double[] potential = new double[16];
+
+	/**
+	 * The road over which each location was reached, or null for the origin.
+	 */
+	Road[] parentRoad = new Road[16];
+
+	/**
+	 * The search index of the location from which each location was reached, or -1 for the origin.
+	 */
+	int[] parent = new int[16];
+
+	/**
+	 * The queue of reached but not yet settled locations.
+	 */
+	final IndexedMinHeap heap = new IndexedMinHeap(16);
+
+	/**
+	 * The location towards which the search is directed, or null for an undirected search.
+	 */
+	private Location goal = null;
+
+	/**
+	 * The location the search is directed away from in a bidirectional search, or null.
+	 */
+	private Location source = null;
+
+	/**
+	 * The lower bound on the travel time in seconds per unit of straight-line distance to the goal.
+	 */
+	private double timePerDistance = 0;
+
+	/**
+	 * The landmark table giving lower bounds on the remaining travel time, or null.
+	 */
+	private Landmarks landmarks = null;
+
+	/**
+	 * The indices of the goal and the source in the landmark table, or -1.
+	 */
+	private int goalLandmark = -1, sourceLandmark = -1;
+
+	/**
+	 * Variable registering whether this search follows roads backward, from the goal of the opposite search.
+	 */
+	private boolean isBackward = false;
+
+	/**
+	 * The number of locations reached so far.
+	 */
+	private int size = 0;
+
+	/**
+	 * The number of locations settled so far.
+	 */
+	int settled = 0;
+
+	/**
+	 * Forgets all locations reached by a previous search.
+	 *
+	 * @post No location is indexed.
+	 * 		| new.getSize() == 0
+	 */
+	void reset() {
+		for (int i = 0; i < size; i++)
+			slots[locations[i].getIndex()] = 0;
+		Arrays.fill(locations, 0, size, null);
+		Arrays.fill(parentRoad, 0, size, null);
+		heap.clear();
+		size = 0;
+		settled = 0;
+		goal = null;
+		source = null;
+		landmarks = null;
+		isBackward = false;
+	}
+
+	/**
+	 * Directs the search towards the given goal, estimating the remaining travel time of each location
+	 * reached from now on as its straight-line distance to the goal times the given time per unit of distance.
+	 *
+	 * @param goal The location towards which the search is directed.
+	 * @param timePerDistance A lower bound on the travel time per unit of straight-line distance.
+	 * @pre The given time per distance is not negative.
+	 * 		| timePerDistance >= 0
+	 */
+	void setGoal(Location goal, double timePerDistance) {
+		setGoal(goal, null, timePerDistance);
+	}
+
+	/**
+	 * Directs the search towards the given goal and away from the given source, as needed by each half of a
+	 * bidirectional search. The potential of each location is half the difference between its estimate towards
+	 * the goal and its estimate towards the source, so the potentials of both halves cancel out.
+	 *
+	 * @param goal The location towards which the search is directed.
+	 * @param source The location from which the opposite search starts, or null for a unidirectional search.
+	 * @param timePerDistance A lower bound on the travel time per unit of straight-line distance.
+	 * @pre The given time per distance is not negative.
+	 * 		| timePerDistance >= 0
+	 */
+	void setGoal(Location goal, Location source, double timePerDistance) {
+		assert timePerDistance >= 0;
+		this.goal = goal;
+		this.source = source;
+		this.timePerDistance = timePerDistance;
+	}
+
+	/**
+	 * Tightens the estimates of the remaining travel time with the bounds of the given landmark table. The estimate
+	 * of each location reached from now on is the largest of its straight-line estimate and its landmark bound.
+	 *
+	 * @param landmarks The landmark table giving lower bounds on travel times.
+	 * @param isBackward True if this search follows roads backward, so its estimates are travel times from its goal.
+	 * @pre The goal of this search has been set.
+	 * 		| goal != null
+	 */
+	void setLandmarks(Landmarks landmarks, boolean isBackward) {
+		assert goal != null;
+		this.landmarks = landmarks;
+		this.isBackward = isBackward;
+		this.goalLandmark = landmarks.indexOf(goal);
+		this.sourceLandmark = source == null ? -1 : landmarks.indexOf(source);
+	}
+
+	/**
+	 * Returns the number of locations reached so far.
+	 */
+	int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the location at the given search index.
+	 */
+	Location getLocation(int index) {
+		return locations[index];
+	}
+
+	/**
+	 * Returns the search index of the given location, or -1 if it has not been reached.
+	 */
+	int find(Location location) {
+		int index = location.getIndex();
+		return index < slots.length ? slots[index] - 1 : -1;
+	}
+
+	/**
+	 * Returns the search index of the given location, registering it as unreached if it is new.
+	 *
+	 * @post The given location is indexed, and a new location has an infinite distance and no parent.
+	 * 		| new.getLocation(result) == location
+	 */
+	int indexOf(Location location) {
+		int index = location.getIndex();
+		if (index >= slots.length)
+			slots = Arrays.copyOf(slots, Math.max(index + 1, slots.length * 2));
+		if (slots[index] > 0)
+			return slots[index] - 1;
+		if (size == locations.length)
+			grow();
+		int i = size++;
+		slots[index] = i + 1;
+		locations[i] = location;
+		distance[i] = Double.POSITIVE_INFINITY;
+		if (goal == null)
+			potential[i] = 0;
+		else
+			potential[i] = estimate(location);
+		parentRoad[i] = null;
+		parent[i] = -1;
+		return i;
+	}
+
+	/**
+	 * Returns the estimate of the remaining travel time from the given location to the goal, or in a bidirectional
+	 * search half the difference between that estimate and the estimate of the travel time from the source.
+	 * For a backward search, the travel times are those from the goal to the given location and from the given
+	 * location to the source.
+	 */
+	private double estimate(Location location) {
+		int index = landmarks == null ? -1 : landmarks.indexOf(location);
+		double toGoal = location.getDistanceTo(goal) * timePerDistance;
+		if (landmarks != null)
+			toGoal = Math.max(toGoal, isBackward ? landmarks.lowerBound(goalLandmark, index) : landmarks.lowerBound(index, goalLandmark));
+		if (source == null)
+			return toGoal;
+		double fromSource = location.getDistanceTo(source) * timePerDistance;
+		if (landmarks != null)
+			fromSource = Math.max(fromSource, isBackward ? landmarks.lowerBound(index, sourceLandmark) : landmarks.lowerBound(sourceLandmark, index));
+		return (toGoal - fromSource) / 2;
+	}
+
+	/**
+	 * Doubles the capacity of all label arrays.
+	 */
+	private void grow() {
+		int capacity = locations.length * 2;
+		locations = Arrays.copyOf(locations, capacity);
+		distance = Arrays.copyOf(distance, capacity);
+		potential = Arrays.copyOf(potential, capacity);
+		parentRoad = Arrays.copyOf(parentRoad, capacity);
+		parent = Arrays.copyOf(parent, capacity);
+		heap.ensureCapacity(capacity);
+	}
+
+	/**
+	 * Returns the roads over which the given search index was reached, in order from the search origin.
+	 *
+	 * @param index The search index of a reached location.
+	 */
+	Road[] pathTo(int index) {
+		int count = 0;
+		for (int i = index; parent[i] >= 0; i = parent[i])
+			count++;
+		Road[] roads = new Road[count];
+		for (int i = index; parent[i] >= 0; i = parent[i])
+			roads[--count] = parentRoad[i];
+		return roads;
+	}
+}
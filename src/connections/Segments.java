@@ -1,5 +1,8 @@
 package connections;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * A class of segments. Each segment is either a subclass of Road(One way, two way or alternating) or a Route.
  *
@@ -49,6 +52,47 @@ public abstract class Segments {
 	 * The end location of this segment.
 	 */
 	protected Location endLocation;
+
+	/**
+	 * The number of changes made to all segments together, which lets a route see at once that none of its segments
+	 * changed since it last computed its totals.
+	 */
+	private static final AtomicLong modificationClock = new AtomicLong();
+
+	/**
+	 * The number of changes made to this segment.
+	 */
+	private volatile int modificationCount = 0;
+
+	/**
+	 * The updater counting the changes made to segments atomically, so concurrent changes to one segment are all
+	 * counted.
+	 */
+	private static final AtomicIntegerFieldUpdater<Segments> MODIFICATION_COUNT =
+			AtomicIntegerFieldUpdater.newUpdater(Segments.class, "modificationCount");
+
+	/**
+	 * Returns the number of changes made to all segments together.
+	 */
+	static long getModificationClock() {
+		return modificationClock.get();
+	}
+
+	/**
+	 * Returns the number of changes made to this segment.
+	 */
+	int getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * Registers that the length, travel time, direction, blocked status, endpoints or segments of this segment
+	 * changed.
+	 */
+	void markModified() {
+		MODIFICATION_COUNT.incrementAndGet(this);
+		modificationClock.incrementAndGet();
+	}
 	
 
 	public static void main(String[] args) {
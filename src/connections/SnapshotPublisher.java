@@ -0,0 +1,129 @@
+package connections;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * A class of publishers of versioned snapshots of a network of locations and roads, giving route queries one
+ * consistent view of the travel times while the roads keep changing.
+ *
+ * Roads are changed through their own setters as usual. The publisher observes them and only marks which roads
+ * changed; each call to {@link #publish()} then freezes a new version, sharing the topology of the previous version
+ * and copying its travel times with the current state of the marked roads filled in. A query pins a version by
+ * taking the current one when it starts and searching over that version only, so it sees the same travel times for
+ * its whole duration however many versions are published meanwhile. A version is an ordinary object that is
+ * reclaimed as soon as no query holds it any more, so only the versions in use take memory.
+ *
+ * Any number of threads can change roads, publish and query at once.
+ *
+ * @invar The current version is frozen.
+ * 		| getCurrent().isFrozen()
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class SnapshotPublisher implements RoadObserver {
+
+	/**
+	 * The last published version.
+	 */
+	private volatile NetworkSnapshot current;
+
+	/**
+	 * The indices of the roads changed since the last published version.
+	 */
+	private final BitSet changed = new BitSet();
+
+	/**
+	 * Initialize a new publisher of the network of the given locations and all roads between them, and publish its
+	 * first version.
+	 *
+	 * @param locations The locations of the network.
+	 * @post The current version is the first version.
+	 * 		| new.getCurrent().getVersion() == 1
+	 * @throws NullPointerException
+	 * 		The given collection is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated or given twice
+	 * 		| for some location in locations: location.isTerminated()
+	 */
+	public SnapshotPublisher(Collection<Location> locations) throws NullPointerException, IllegalArgumentException {
+		NetworkSnapshot base = new NetworkSnapshot(locations);
+		current = base;
+		BitSet all = new BitSet(base.getRoadCount());
+		all.set(0, base.getRoadCount());
+		for (int r = 0; r < base.getRoadCount(); r++)
+			base.getRoad(r).addObserver(this);
+		// Copy every road again once it is observed, so no change made while the snapshot was taken is lost; the
+		// changes marked so far are covered by that copy.
+		synchronized (changed) {
+			changed.clear();
+		}
+		current = new NetworkSnapshot(base, all, 1);
+	}
+
+	/**
+	 * Returns the last published version. A query pins this version by using the returned snapshot throughout.
+	 */
+	public NetworkSnapshot getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Marks the given road to be copied into the next version, as its state may have changed.
+	 *
+	 * @param road The road that changed.
+	 */
+	@Override
+	public void roadChanged(Road road) {
+		int index = current.indexOf(road);
+		if (index < 0)
+			return;
+		synchronized (changed) {
+			changed.set(index);
+		}
+	}
+
+	/**
+	 * Checks whether roads changed since the last published version.
+	 */
+	public boolean hasPendingChanges() {
+		synchronized (changed) {
+			return !changed.isEmpty();
+		}
+	}
+
+	/**
+	 * Freezes the current state of all roads into a new version and makes it the current version, unless no road
+	 * changed since the last published version.
+	 *
+	 * @return The current version after publishing.
+	 * 		| result == new.getCurrent()
+	 * @post If roads changed since the last published version, a version with the next version number is current.
+	 * 		| if (hasPendingChanges())
+	 * 		|	then new.getCurrent().getVersion() == getCurrent().getVersion() + 1
+	 * 		| else new.getCurrent() == getCurrent()
+	 */
+	public synchronized NetworkSnapshot publish() {
+		BitSet roads;
+		synchronized (changed) {
+			if (changed.isEmpty())
+				return current;
+			roads = (BitSet) changed.clone();
+			changed.clear();
+		}
+		NetworkSnapshot previous = current;
+		current = new NetworkSnapshot(previous, roads, previous.getVersion() + 1);
+		return current;
+	}
+
+	/**
+	 * Stops observing the roads of this publisher, after which new versions no longer reflect their changes.
+	 */
+	public void detach() {
+		NetworkSnapshot version = current;
+		for (int r = 0; r < version.getRoadCount(); r++)
+			version.getRoad(r).removeObserver(this);
+	}
+}
@@ -0,0 +1,320 @@
+package connections;
+
+import java.util.Arrays;
+
+/**
+ * A class of route planners that search the fastest route between two locations over a network snapshot. All
+ * search labels are primitive arrays indexed by the location indices of the snapshot, so a query follows no object
+ * references until the fastest route is turned back into roads.
+ *
+ * Like a route planner, a snapshot route planner can direct its search towards the end location, using the
+ * straight-line distance to the end location times the smallest travel time per unit of distance of any road as a
+ * lower bound on the remaining travel time, and tightening it with a landmark table if it has one.
+ *
+ * The travel times of a snapshot route planner are those of its snapshot at its last refresh. A planner over a
+ * snapshot publisher instead pins the current version of the publisher at the start of each query, and answers the
+ * whole query with the travel times of that version. A snapshot route planner reuses its search state between
+ * queries and can therefore only answer one query at a time.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class SnapshotRoutePlanner {
+
+	/**
+	 * The snapshot over which this planner searches, which is the version pinned by the last query if this planner
+	 * has a publisher.
+	 */
+	private NetworkSnapshot snapshot;
+
+	/**
+	 * The publisher whose current version each query pins, or null if this planner searches a single snapshot.
+	 */
+	private final SnapshotPublisher publisher;
+
+	/**
+	 * The tentative travel time in seconds from the start location to each location.
+	 */
+	private final double[] distance;
+
+	/**
+	 * The arc over which each location was reached, or -1.
+	 */
+	private final int[] parentArc;
+
+	/**
+	 * The location from which each location was reached.
+	 */
+	private final int[] parent;
+
+	/**
+	 * The queue of reached but not yet settled locations.
+	 */
+	private final IndexedMinHeap heap;
+
+	/**
+	 * The locations reached by the last query.
+	 */
+	private final IntList touched = new IntList();
+
+	/**
+	 * Variable registering whether the queries of this planner are directed towards their end location.
+	 */
+	private boolean isGoalDirected = false;
+
+	/**
+	 * The landmark table used by the goal directed queries of this planner, or null.
+	 */
+	private Landmarks landmarks = null;
+
+	/**
+	 * The index in the landmark table of this planner of each location of its snapshot, or -1, as computed for the
+	 * table and the locations registered below.
+	 */
+	private int[] landmarkIndices = null;
+
+	/**
+	 * The landmark table for which the landmark indices were computed, or null.
+	 */
+	private Landmarks indexedLandmarks = null;
+
+	/**
+	 * The locations of the snapshot for which the landmark indices were computed, or null.
+	 */
+	private Location[] indexedLocations = null;
+
+	/**
+	 * The number of locations settled by the last query.
+	 */
+	private int settled = 0;
+
+	/**
+	 * Initialize a new route planner over the given snapshot.
+	 *
+	 * @param snapshot The snapshot over which the planner searches.
+	 * @throws NullPointerException
+	 * 		The given snapshot is null
+	 * 		| snapshot == null
+	 */
+	public SnapshotRoutePlanner(NetworkSnapshot snapshot) throws NullPointerException {
+		this(snapshot, null);
+	}
+
+	/**
+	 * Initialize a new route planner over the versions published by the given publisher.
+	 *
+	 * @param publisher The publisher whose current version each query pins.
+	 * @post The planner searches the current version of the given publisher.
+	 * 		| new.getSnapshot() == publisher.getCurrent()
+	 * @throws NullPointerException
+	 * 		The given publisher is null
+	 * 		| publisher == null
+	 */
+	public SnapshotRoutePlanner(SnapshotPublisher publisher) throws NullPointerException {
+		this(publisher.getCurrent(), publisher);
+	}
+
+	/**
+	 * Initialize a new route planner over the given snapshot, pinning the current version of the given publisher
+	 * at each query if it is not null.
+	 */
+	private SnapshotRoutePlanner(NetworkSnapshot snapshot, SnapshotPublisher publisher) throws NullPointerException {
+		this.snapshot = snapshot;
+		this.publisher = publisher;
+		int n = snapshot.getLocationCount();
+		distance = new double[n];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		parentArc = new int[n];
+		parent = new int[n];
+		heap = new IndexedMinHeap(n);
+	}
+
+	/**
+	 * Returns the snapshot over which this planner searches, or the version pinned by its last query if it has a
+	 * publisher.
+	 */
+	public NetworkSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Checks whether the queries of this planner are directed towards their end location.
+	 */
+	public boolean isGoalDirected() {
+		return isGoalDirected;
+	}
+
+	/**
+	 * Sets whether the queries of this planner are directed towards their end location.
+	 *
+	 * @param goalDirected True to use A* search, false to use Dijkstra search.
+	 * @post The planner is goal directed if and only if the given flag is true.
+	 * 		| new.isGoalDirected() == goalDirected
+	 */
+	public void setGoalDirected(boolean goalDirected) {
+		this.isGoalDirected = goalDirected;
+	}
+
+	/**
+	 * Returns the landmark table used by the goal directed queries of this planner, or null if there is none.
+	 */
+	public Landmarks getLandmarks() {
+		return landmarks;
+	}
+
+	/**
+	 * Sets the landmark table used by the goal directed queries of this planner.
+	 *
+	 * @param landmarks The landmark table to use, or null to only use straight-line bounds.
+	 * @post The planner uses the given landmark table.
+	 * 		| new.getLandmarks() == landmarks
+	 */
+	public void setLandmarks(Landmarks landmarks) {
+		this.landmarks = landmarks;
+	}
+
+	/**
+	 * Returns the fastest route from the given start location to the given end location.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return A route from start to end over roads that could be travelled in the direction of the route at the last
+	 * 			refresh of the snapshot, with the smallest total travel time, or null if no such route exists.
+	 * 		| if (result != null)
+	 * 		|	result.getStartLocations()[0] == start && result.getEndLocation() == end
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is not part of the snapshot
+	 * 		| getSnapshot().indexOf(start) < 0 || getSnapshot().indexOf(end) < 0
+	 */
+	public Route findFastestRoute(Location start, Location end) throws IllegalArgumentException {
+		pin();
+		int target = indexOf(end);
+		if (search(indexOf(start), target) == Double.POSITIVE_INFINITY)
+			return null;
+		int count = 0;
+		for (int v = target; parentArc[v] >= 0; v = parent[v])
+			count++;
+		Road[] roads = new Road[count];
+		for (int v = target; parentArc[v] >= 0; v = parent[v])
+			roads[--count] = snapshot.getRoad(snapshot.arcDirections[parentArc[v]] >>> 1);
+		return new Route(start, (Object[]) roads);
+	}
+
+	/**
+	 * Returns the travel time in seconds of the fastest route from the given start location to the given end location.
+	 *
+	 * @param start The location at which the route starts.
+	 * @param end   The location at which the route ends.
+	 * @return The total travel time of the fastest route at the last refresh of the snapshot, or infinity if no route
+	 * 			exists.
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is not part of the snapshot
+	 * 		| getSnapshot().indexOf(start) < 0 || getSnapshot().indexOf(end) < 0
+	 */
+	public float calculateFastestTravelTime(Location start, Location end) throws IllegalArgumentException {
+		pin();
+		return (float) search(indexOf(start), indexOf(end));
+	}
+
+	/**
+	 * Returns the number of locations settled by the last query of this planner.
+	 */
+	public int getSettledCount() {
+		return settled;
+	}
+
+	/**
+	 * Pins the current version of the publisher of this planner for the next query, if it has one.
+	 */
+	private void pin() {
+		if (publisher != null)
+			snapshot = publisher.getCurrent();
+	}
+
+	/**
+	 * Returns the index of the given location in the snapshot.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		The given location is not part of the snapshot
+	 */
+	private int indexOf(Location location) throws IllegalArgumentException {
+		int index = snapshot.indexOf(location);
+		if (index < 0)
+			throw new IllegalArgumentException();
+		return index;
+	}
+
+	/**
+	 * Returns the index in the landmark table of this planner of each location of its snapshot, computing them only
+	 * when the table or the locations of the snapshot differ from those of the last call. All versions of a snapshot
+	 * share their locations, and a table keeps its indices when its travel times are recomputed, so the indices stay
+	 * valid for as long as both are used.
+	 */
+	private int[] getLandmarkIndices() {
+		if (indexedLandmarks != landmarks || indexedLocations != snapshot.locations) {
+			Location[] locations = snapshot.locations;
+			int[] indices = new int[locations.length];
+			for (int v = 0; v < locations.length; v++)
+				indices[v] = landmarks.indexOf(locations[v]);
+			landmarkIndices = indices;
+			indexedLandmarks = landmarks;
+			indexedLocations = locations;
+		}
+		return landmarkIndices;
+	}
+
+	/**
+	 * Runs a Dijkstra search, or an A* search if this planner is goal directed, from the given source until the given
+	 * target is settled.
+	 *
+	 * @return The travel time to the target, or infinity if it cannot be reached.
+	 */
+	private double search(int source, int target) {
+		for (int i = 0; i < touched.size(); i++)
+			distance[touched.get(i)] = Double.POSITIVE_INFINITY;
+		touched.clear();
+		heap.clear();
+		settled = 0;
+		double timePerDistance = Road.getMinTimePerDistance();
+		if (!isGoalDirected || timePerDistance == Double.POSITIVE_INFINITY)
+			timePerDistance = 0;
+		int[] landmarkIndices = isGoalDirected && landmarks != null && landmarks.isUpToDate() ? getLandmarkIndices() : null;
+		int goalLandmark = landmarkIndices != null ? landmarkIndices[target] : -1;
+		double[] coordinates = snapshot.coordinates;
+		double targetX = coordinates[2 * target], targetY = coordinates[2 * target + 1];
+		distance[source] = 0;
+		parentArc[source] = -1;
+		touched.add(source);
+		heap.insertOrDecrease(source, 0);
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			settled++;
+			if (u == target)
+				return distance[u];
+			for (int arc = snapshot.offsets[u]; arc < snapshot.offsets[u + 1]; arc++) {
+				float time = snapshot.travelTime(arc);
+				if (time == Float.POSITIVE_INFINITY)
+					continue;
+				int v = snapshot.targets[arc];
+				double newDistance = distance[u] + time;
+				if (newDistance < distance[v]) {
+					if (distance[v] == Double.POSITIVE_INFINITY)
+						touched.add(v);
+					distance[v] = newDistance;
+					parentArc[v] = arc;
+					parent[v] = u;
+					double potential = 0;
+					if (timePerDistance > 0) {
+						double xdif = targetX - coordinates[2 * v];
+						double ydif = targetY - coordinates[2 * v + 1];
+						potential = Math.sqrt((xdif * xdif) + (ydif * ydif)) * timePerDistance;
+					}
+					if (goalLandmark >= 0)
+						potential = Math.max(potential, landmarks.lowerBound(landmarkIndices[v], goalLandmark));
+					heap.insertOrDecrease(v, newDistance + potential);
+				}
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+}
@@ -0,0 +1,678 @@
+package connections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A class of spatial indexes over locations and the roads between them, answering nearest neighbour, radius and
+ * bounding box queries, for instance to snap a coordinate received from a client to the nearest location or road
+ * before planning a route.
+ *
+ * Each road is indexed as the straight segment between its endpoints. Locations and roads are kept in packed R-trees
+ * of increasing size: a batch of added elements is packed into a new tree, merging it with every smaller tree that is
+ * in the way, so building an index over n elements takes O(n log n) time and each later addition takes amortized
+ * O(log^2 n) time. Removed elements are left in their tree until it is merged or until more elements have been
+ * removed than remain, and terminated elements are never returned, whether they were removed or not.
+ *
+ * A spatial index does not follow changes to the network by itself: locations and roads created after the index
+ * must be added to it. A spatial index can only be used by one thread at a time.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+public class SpatialIndex {
+
+	/**
+	 * The indexed locations.
+	 */
+	private final Layer<Location> locations = new Layer<Location>() {
+		@Override
+		boolean isTerminated(Location location) {
+			return location.isTerminated();
+		}
+
+		@Override
+		void getSegment(Location location, double[] segments, int offset) {
+			double[] coordinate = location.getCoordinate();
+			segments[offset] = segments[offset + 2] = coordinate[0];
+			segments[offset + 1] = segments[offset + 3] = coordinate[1];
+		}
+	};
+
+	/**
+	 * The indexed roads.
+	 */
+	private final Layer<Road> roads = new Layer<Road>() {
+		@Override
+		boolean isTerminated(Road road) {
+			return road.isTerminated();
+		}
+
+		@Override
+		void getSegment(Road road, double[] segments, int offset) {
+			double[] first = road.getEndPoint1().getCoordinate();
+			double[] second = road.getEndPoint2().getCoordinate();
+			segments[offset] = first[0];
+			segments[offset + 1] = first[1];
+			segments[offset + 2] = second[0];
+			segments[offset + 3] = second[1];
+		}
+	};
+
+	/**
+	 * Initialize a new spatial index over the given locations and all roads adjoining them.
+	 *
+	 * @param locations The locations to index.
+	 * @post The new index holds the given locations and their non-terminated adjoining roads.
+	 * 		| for each location in locations:
+	 * 		|	new.hasAsLocation(location) &&
+	 * 		|	for each road in location.getAdjoiningRoads(): new.hasAsRoad(road)
+	 * @throws NullPointerException
+	 * 		The given collection is null or contains null
+	 * 		| locations == null || locations.contains(null)
+	 * @throws IllegalArgumentException
+	 * 		One of the given locations is terminated or given twice
+	 * 		| for some location in locations: location.isTerminated()
+	 */
+	public SpatialIndex(Collection<Location> locations) throws NullPointerException, IllegalArgumentException {
+		List<Location> locationList = new ArrayList<>(locations.size());
+		Set<Location> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Location location : locations) {
+			if (location.isTerminated() || !seen.add(location))
+				throw new IllegalArgumentException();
+			locationList.add(location);
+		}
+		List<Road> roadList = new ArrayList<>();
+		Set<Road> seenRoads = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Location location : locationList) {
+			for (Road road : location.getAdjoiningRoadsView()) {
+				if (!road.isTerminated() && seenRoads.add(road))
+					roadList.add(road);
+			}
+		}
+		this.locations.addAll(locationList);
+		this.roads.addAll(roadList);
+	}
+
+	/**
+	 * Returns the number of locations in this index.
+	 */
+	public int getLocationCount() {
+		return locations.size();
+	}
+
+	/**
+	 * Returns the number of roads in this index.
+	 */
+	public int getRoadCount() {
+		return roads.size();
+	}
+
+	/**
+	 * Checks whether the given location is in this index.
+	 */
+	public boolean hasAsLocation(Location location) {
+		return locations.contains(location);
+	}
+
+	/**
+	 * Checks whether the given road is in this index.
+	 */
+	public boolean hasAsRoad(Road road) {
+		return roads.contains(road);
+	}
+
+	/**
+	 * Adds the given location and all its adjoining roads to this index.
+	 *
+	 * @param location The location to add.
+	 * @post The location and its adjoining roads are in this index.
+	 * 		| new.hasAsLocation(location) &&
+	 * 		| for each road in location.getAdjoiningRoads(): new.hasAsRoad(road)
+	 * @throws NullPointerException
+	 * 		The given location is null
+	 * 		| location == null
+	 * @throws IllegalArgumentException
+	 * 		The given location is terminated
+	 * 		| location.isTerminated()
+	 */
+	public void add(Location location) throws NullPointerException, IllegalArgumentException {
+		if (location.isTerminated())
+			throw new IllegalArgumentException();
+		locations.add(location);
+		for (Road road : location.getAdjoiningRoadsView())
+			roads.add(road);
+	}
+
+	/**
+	 * Adds the given road to this index.
+	 *
+	 * @param road The road to add.
+	 * @post The road is in this index.
+	 * 		| new.hasAsRoad(road)
+	 * @throws NullPointerException
+	 * 		The given road is null
+	 * 		| road == null
+	 * @throws IllegalArgumentException
+	 * 		The given road is terminated
+	 * 		| road.isTerminated()
+	 */
+	public void add(Road road) throws NullPointerException, IllegalArgumentException {
+		if (road.isTerminated())
+			throw new IllegalArgumentException();
+		roads.add(road);
+	}
+
+	/**
+	 * Removes the given location from this index. Its adjoining roads stay in this index.
+	 *
+	 * @param location The location to remove.
+	 * @post The location is not in this index.
+	 * 		| !new.hasAsLocation(location)
+	 */
+	public void remove(Location location) {
+		locations.remove(location);
+	}
+
+	/**
+	 * Removes the given road from this index.
+	 *
+	 * @param road The road to remove.
+	 * @post The road is not in this index.
+	 * 		| !new.hasAsRoad(road)
+	 */
+	public void remove(Road road) {
+		roads.remove(road);
+	}
+
+	/**
+	 * Returns the non-terminated location of this index nearest to the given point, or null if there is none.
+	 *
+	 * @param point The coordinate of the point.
+	 * @throws NullPointerException
+	 * 		The given point is null
+	 * 		| point == null
+	 * @throws IllegalArgumentException
+	 * 		The given point does not consist of two numbers
+	 * 		| point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1])
+	 */
+	public Location findNearestLocation(double[] point) throws NullPointerException, IllegalArgumentException {
+		List<Location> nearest = findNearestLocations(point, 1);
+		return nearest.isEmpty() ? null : nearest.get(0);
+	}
+
+	/**
+	 * Returns the given number of non-terminated locations of this index nearest to the given point, nearest first.
+	 *
+	 * @param point The coordinate of the point.
+	 * @param count The number of locations to return.
+	 * @return The given number of locations, or all non-terminated locations of this index if there are fewer, such
+	 * 			that no location of this index left out is nearer to the given point than a location returned.
+	 * @throws NullPointerException
+	 * 		The given point is null
+	 * 		| point == null
+	 * @throws IllegalArgumentException
+	 * 		The given point does not consist of two numbers, or the given number is negative
+	 * 		| point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1]) || count < 0
+	 */
+	public List<Location> findNearestLocations(double[] point, int count) throws NullPointerException, IllegalArgumentException {
+		checkPoint(point);
+		if (count < 0)
+			throw new IllegalArgumentException();
+		return locations.findNearest(point[0], point[1], count, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Returns the non-terminated locations of this index within the given distance of the given point, nearest first.
+	 *
+	 * @param point  The coordinate of the point.
+	 * @param radius The largest distance to the point.
+	 * @throws NullPointerException
+	 * 		The given point is null
+	 * 		| point == null
+	 * @throws IllegalArgumentException
+	 * 		The given point does not consist of two numbers, or the given radius is negative or not a number
+	 * 		| point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1]) || !(radius >= 0)
+	 */
+	public List<Location> findLocationsWithin(double[] point, double radius) throws NullPointerException, IllegalArgumentException {
+		checkPoint(point);
+		if (!(radius >= 0))
+			throw new IllegalArgumentException();
+		return locations.findNearest(point[0], point[1], Integer.MAX_VALUE, radius);
+	}
+
+	/**
+	 * Returns the non-terminated locations of this index inside the box with the given opposite corners.
+	 *
+	 * @param corner1 The coordinate of a corner of the box.
+	 * @param corner2 The coordinate of the opposite corner of the box.
+	 * @throws NullPointerException
+	 * 		One of the given corners is null
+	 * 		| corner1 == null || corner2 == null
+	 * @throws IllegalArgumentException
+	 * 		One of the given corners does not consist of two numbers
+	 */
+	public List<Location> findLocationsIn(double[] corner1, double[] corner2) throws NullPointerException, IllegalArgumentException {
+		checkPoint(corner1);
+		checkPoint(corner2);
+		return locations.findIn(Math.min(corner1[0], corner2[0]), Math.min(corner1[1], corner2[1]),
+				Math.max(corner1[0], corner2[0]), Math.max(corner1[1], corner2[1]));
+	}
+
+	/**
+	 * Returns the non-terminated road of this index nearest to the given point, or null if there is none.
+	 *
+	 * @param point The coordinate of the point.
+	 * @throws NullPointerException
+	 * 		The given point is null
+	 * 		| point == null
+	 * @throws IllegalArgumentException
+	 * 		The given point does not consist of two numbers
+	 * 		| point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1])
+	 * @see #getClosestPoint(Road, double[])
+	 */
+	public Road findNearestRoad(double[] point) throws NullPointerException, IllegalArgumentException {
+		List<Road> nearest = findNearestRoads(point, 1);
+		return nearest.isEmpty() ? null : nearest.get(0);
+	}
+
+	/**
+	 * Returns the given number of non-terminated roads of this index nearest to the given point, nearest first.
+	 *
+	 * @param point The coordinate of the point.
+	 * @param count The number of roads to return.
+	 * @return The given number of roads, or all non-terminated roads of this index if there are fewer, such that no
+	 * 			road of this index left out is nearer to the given point than a road returned.
+	 * @throws NullPointerException
+	 * 		The given point is null
+	 * 		| point == null
+	 * @throws IllegalArgumentException
+	 * 		The given point does not consist of two numbers, or the given number is negative
+	 * 		| point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1]) || count < 0
+	 */
+	public List<Road> findNearestRoads(double[] point, int count) throws NullPointerException, IllegalArgumentException {
+		checkPoint(point);
+		if (count < 0)
+			throw new IllegalArgumentException();
+		return roads.findNearest(point[0], point[1], count, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Returns the non-terminated roads of this index within the given distance of the given point, nearest first.
+	 *
+	 * @param point  The coordinate of the point.
+	 * @param radius The largest distance to the point.
+	 * @throws NullPointerException
+	 * 		The given point is null
+	 * 		| point == null
+	 * @throws IllegalArgumentException
+	 * 		The given point does not consist of two numbers, or the given radius is negative or not a number
+	 * 		| point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1]) || !(radius >= 0)
+	 */
+	public List<Road> findRoadsWithin(double[] point, double radius) throws NullPointerException, IllegalArgumentException {
+		checkPoint(point);
+		if (!(radius >= 0))
+			throw new IllegalArgumentException();
+		return roads.findNearest(point[0], point[1], Integer.MAX_VALUE, radius);
+	}
+
+	/**
+	 * Returns the non-terminated roads of this index that pass through the box with the given opposite corners.
+	 *
+	 * @param corner1 The coordinate of a corner of the box.
+	 * @param corner2 The coordinate of the opposite corner of the box.
+	 * @throws NullPointerException
+	 * 		One of the given corners is null
+	 * 		| corner1 == null || corner2 == null
+	 * @throws IllegalArgumentException
+	 * 		One of the given corners does not consist of two numbers
+	 */
+	public List<Road> findRoadsIn(double[] corner1, double[] corner2) throws NullPointerException, IllegalArgumentException {
+		checkPoint(corner1);
+		checkPoint(corner2);
+		return roads.findIn(Math.min(corner1[0], corner2[0]), Math.min(corner1[1], corner2[1]),
+				Math.max(corner1[0], corner2[0]), Math.max(corner1[1], corner2[1]));
+	}
+
+	/**
+	 * Returns the point of the straight segment between the endpoints of the given road closest to the given point.
+	 *
+	 * @param road  The road to snap to.
+	 * @param point The coordinate of the point.
+	 * @return The coordinate of the closest point, which lies between the endpoints of the road.
+	 * @throws NullPointerException
+	 * 		The given road or point is null
+	 * 		| road == null || point == null
+	 * @throws IllegalArgumentException
+	 * 		The given road is terminated, or the given point does not consist of two numbers
+	 * 		| road.isTerminated() || point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1])
+	 */
+	public static double[] getClosestPoint(Road road, double[] point) throws NullPointerException, IllegalArgumentException {
+		checkPoint(point);
+		if (road.isTerminated())
+			throw new IllegalArgumentException();
+		double[] first = road.getEndPoint1().getCoordinate();
+		double[] second = road.getEndPoint2().getCoordinate();
+		double[] segment = {first[0], first[1], second[0], second[1]};
+		double t = PackedRTree.closestParameter(segment, 0, point[0], point[1]);
+		return new double[] {first[0] + t * (second[0] - first[0]), first[1] + t * (second[1] - first[1])};
+	}
+
+	/**
+	 * Checks that the given point consists of two numbers.
+	 *
+	 * @throws NullPointerException
+	 * 		The given point is null
+	 * @throws IllegalArgumentException
+	 * 		The given point does not consist of two numbers
+	 */
+	private static void checkPoint(double[] point) throws NullPointerException, IllegalArgumentException {
+		if (point.length != 2 || Double.isNaN(point[0]) || Double.isNaN(point[1]))
+			throw new IllegalArgumentException();
+	}
+
+	/**
+	 * A class of sets of indexed elements of one type, kept in packed R-trees whose number of items at level i is at
+	 * most 2^i.
+	 *
+	 * @param <T> The type of the elements.
+	 */
+	private static abstract class Layer<T> {
+
+		/**
+		 * The tree at each level, or null.
+		 */
+		private final List<PackedRTree> trees = new ArrayList<>();
+
+		/**
+		 * The elements of the tree at each level, in the order of its items.
+		 */
+		private final List<Object[]> elements = new ArrayList<>();
+
+		/**
+		 * The elements in this layer.
+		 */
+		private final Set<T> members = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		/**
+		 * The elements removed from this layer that are still part of a tree.
+		 */
+		private final Set<T> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		/**
+		 * Checks whether the given element is terminated.
+		 */
+		abstract boolean isTerminated(T element);
+
+		/**
+		 * Stores the endpoints of the segment of the given element at the given offset of the given array.
+		 */
+		abstract void getSegment(T element, double[] segments, int offset);
+
+		/**
+		 * Returns the number of elements in this layer.
+		 */
+		int size() {
+			return members.size();
+		}
+
+		/**
+		 * Checks whether the given element is in this layer.
+		 */
+		boolean contains(T element) {
+			return members.contains(element);
+		}
+
+		/**
+		 * Checks whether the given element of a tree is in this layer and not terminated.
+		 */
+		private boolean isLive(T element) {
+			return (removed.isEmpty() || !removed.contains(element)) && !isTerminated(element);
+		}
+
+		/**
+		 * Adds the given element to this layer.
+		 */
+		void add(T element) {
+			if (members.contains(element))
+				return;
+			members.add(element);
+			if (!removed.remove(element))
+				insert(new ArrayList<>(Collections.singletonList(element)));
+		}
+
+		/**
+		 * Adds the given elements, none of which is in this layer, to this layer.
+		 */
+		void addAll(List<T> batch) {
+			members.addAll(batch);
+			insert(new ArrayList<>(batch));
+		}
+
+		/**
+		 * Removes the given element from this layer, and rebuilds all trees once more elements have been removed from
+		 * them than remain.
+		 */
+		void remove(T element) {
+			if (!members.remove(element))
+				return;
+			removed.add(element);
+			if (removed.size() > members.size()) {
+				List<T> batch = new ArrayList<>(members.size());
+				for (int level = 0; level < trees.size(); level++)
+					collect(level, batch);
+				insert(batch);
+			}
+		}
+
+		/**
+		 * Packs the given elements, together with the elements of every smaller tree in the way, into a new tree at
+		 * the lowest level that is empty and large enough.
+		 */
+		private void insert(List<T> batch) {
+			for (int level = 0; ; level++) {
+				if (level == trees.size()) {
+					trees.add(null);
+					elements.add(null);
+				}
+				if (trees.get(level) != null)
+					collect(level, batch);
+				else if (level >= 31 || batch.size() <= (1 << level)) {
+					double[] segments = new double[4 * batch.size()];
+					for (int i = 0; i < batch.size(); i++)
+						getSegment(batch.get(i), segments, 4 * i);
+					trees.set(level, new PackedRTree(segments, batch.size()));
+					elements.set(level, batch.toArray());
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Moves the live elements of the tree at the given level to the given list and empties the level.
+		 */
+		@SuppressWarnings("unchecked")
+		private void collect(int level, List<T> batch) {
+			Object[] levelElements = elements.get(level);
+			if (levelElements == null)
+				return;
+			for (Object object : levelElements) {
+				T element = (T) object;
+				if (removed.remove(element))
+					continue;
+				if (isTerminated(element))
+					members.remove(element);
+				else
+					batch.add(element);
+			}
+			trees.set(level, null);
+			elements.set(level, null);
+		}
+
+		/**
+		 * Returns at most the given number of live elements within the given distance of the given point, nearest
+		 * first, by a best-first search over all trees at once.
+		 */
+		@SuppressWarnings("unchecked")
+		List<T> findNearest(double x, double y, int count, double maxDistance) {
+			List<T> result = new ArrayList<>();
+			if (count == 0)
+				return result;
+			Frontier frontier = new Frontier();
+			for (int level = 0; level < trees.size(); level++) {
+				PackedRTree tree = trees.get(level);
+				if (tree != null)
+					frontier.add(tree.boxDistance(tree.getRoot(), x, y), level, tree.getRoot());
+			}
+			while (!frontier.isEmpty() && frontier.peekKey() <= maxDistance) {
+				int level = frontier.peekLevel();
+				int entry = frontier.peekEntry();
+				frontier.poll();
+				PackedRTree tree = trees.get(level);
+				if (tree.isItem(entry)) {
+					result.add((T) elements.get(level)[entry]);
+					if (result.size() == count)
+						break;
+					continue;
+				}
+				for (int position = tree.getFirstChild(entry); position < tree.getEndChild(entry); position++) {
+					int child = tree.getChild(position);
+					double distance;
+					if (!tree.isItem(child))
+						distance = tree.boxDistance(child, x, y);
+					else if (isLive((T) elements.get(level)[child]))
+						distance = tree.distance(child, x, y);
+					else
+						continue;
+					if (distance <= maxDistance)
+						frontier.add(distance, level, child);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the live elements that intersect the given box.
+		 */
+		@SuppressWarnings("unchecked")
+		List<T> findIn(double minX, double minY, double maxX, double maxY) {
+			List<T> result = new ArrayList<>();
+			IntList stack = new IntList();
+			for (int level = 0; level < trees.size(); level++) {
+				PackedRTree tree = trees.get(level);
+				if (tree == null)
+					continue;
+				stack.add(tree.getRoot());
+				while (stack.size() > 0) {
+					int entry = stack.removeLast();
+					if (!tree.boxIntersects(entry, minX, minY, maxX, maxY))
+						continue;
+					if (!tree.isItem(entry)) {
+						for (int position = tree.getFirstChild(entry); position < tree.getEndChild(entry); position++)
+							stack.add(tree.getChild(position));
+					} else {
+						T element = (T) elements.get(level)[entry];
+						if (isLive(element) && tree.intersects(entry, minX, minY, maxX, maxY))
+							result.add(element);
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * A class of binary min-heaps of tree entries keyed on their distance to a query point.
+	 */
+	private static final class Frontier {
+
+		/**
+		 * The distance of each entry in heap order.
+		 */
+		private double[] keys = new double[64];
+
+		/**
+		 * The level of the tree in the high half and the entry in the low half, in heap order.
+		 */
+		private long[] values = new long[64];
+
+		/**
+		 * The number of entries in this heap.
+		 */
+		private int size = 0;
+
+		/**
+		 * Checks whether this heap is empty.
+		 */
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		/**
+		 * Returns the smallest distance in this heap.
+		 */
+		double peekKey() {
+			return keys[0];
+		}
+
+		/**
+		 * Returns the level of the entry with the smallest distance.
+		 */
+		int peekLevel() {
+			return (int) (values[0] >>> 32);
+		}
+
+		/**
+		 * Returns the entry with the smallest distance.
+		 */
+		int peekEntry() {
+			return (int) values[0];
+		}
+
+		/**
+		 * Adds the given entry of the tree at the given level with the given distance.
+		 */
+		void add(double key, int level, int entry) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, 2 * size);
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			long value = ((long) level << 32) | (entry & 0xFFFFFFFFL);
+			int i = size++;
+			while (i > 0 && keys[(i - 1) >>> 1] > key) {
+				keys[i] = keys[(i - 1) >>> 1];
+				values[i] = values[(i - 1) >>> 1];
+				i = (i - 1) >>> 1;
+			}
+			keys[i] = key;
+			values[i] = value;
+		}
+
+		/**
+		 * Removes the entry with the smallest distance.
+		 */
+		void poll() {
+			size--;
+			double key = keys[size];
+			long value = values[size];
+			int i = 0;
+			while (2 * i + 1 < size) {
+				int child = 2 * i + 1;
+				if (child + 1 < size && keys[child + 1] < keys[child])
+					child++;
+				if (keys[child] >= key)
+					break;
+				keys[i] = keys[child];
+				values[i] = values[child];
+				i = child;
+			}
+			keys[i] = key;
+			values[i] = value;
+		}
+	}
+}
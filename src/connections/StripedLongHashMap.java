@@ -0,0 +1,95 @@
+package connections;
+
+/**
+ * A class of hash maps from primitive long keys to values that can be used by many threads at once. The keys are
+ * spread over a fixed number of stripes, each a separate map guarded by its own lock, so threads working on
+ * different keys rarely wait for each other and no operation locks the whole map.
+ *
+ * @param <V> The type of the values.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+class StripedLongHashMap<V> {
+
+	/**
+	 * The number of stripes of each map, a power of two well above the number of threads expected to use it.
+	 */
+	private static final int STRIPES = 64;
+
+	/**
+	 * The stripes of this map, each guarded by locking it.
+	 */
+	private final LongHashMap<V>[] stripes;
+
+	/**
+	 * Initialize a new empty map.
+	 */
+	@SuppressWarnings("unchecked")
+	StripedLongHashMap() {
+		stripes = (LongHashMap<V>[]) new LongHashMap<?>[STRIPES];
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new LongHashMap<>();
+	}
+
+	/**
+	 * Returns the stripe holding the given key. The stripe is chosen from the high bits of a hash of the key, so
+	 * the keys of one stripe are still spread over all slots of that stripe.
+	 */
+	private LongHashMap<V> stripeOf(long key) {
+		return stripes[(int) ((key * 0x9E3779B97F4A7C15L) >>> 58)];
+	}
+
+	/**
+	 * Returns the value of the given key, or null if this map has no entry for it.
+	 */
+	V get(long key) {
+		LongHashMap<V> stripe = stripeOf(key);
+		synchronized (stripe) {
+			return stripe.get(key);
+		}
+	}
+
+	/**
+	 * Maps the given key to the given value.
+	 *
+	 * @pre The given value is not null
+	 * 		| value != null
+	 * @return The previous value of the given key, or null.
+	 */
+	V put(long key, V value) {
+		LongHashMap<V> stripe = stripeOf(key);
+		synchronized (stripe) {
+			return stripe.put(key, value);
+		}
+	}
+
+	/**
+	 * Maps the given key to the given value, unless this map already has an entry for the key.
+	 *
+	 * @pre The given value is not null
+	 * 		| value != null
+	 * @return The value of the given key before the call, or null if the given value was put.
+	 */
+	V putIfAbsent(long key, V value) {
+		LongHashMap<V> stripe = stripeOf(key);
+		synchronized (stripe) {
+			V previous = stripe.get(key);
+			if (previous == null)
+				stripe.put(key, value);
+			return previous;
+		}
+	}
+
+	/**
+	 * Removes the entry of the given key if the key is mapped to the given value.
+	 *
+	 * @return True if the entry was removed.
+	 */
+	boolean remove(long key, V value) {
+		LongHashMap<V> stripe = stripeOf(key);
+		synchronized (stripe) {
+			return stripe.remove(key, value);
+		}
+	}
+}
@@ -90,6 +90,16 @@ public class Two_way extends Road{
     public Two_way(String id, Location location1, Location location2, int length, float speedlimit, float roadSpeed) {
         super(id, location1, location2, length, speedlimit, roadSpeed);
     }
+
+    /**
+     * Initialize a new non-terminated two-way road with given ID, first and second location, speed limit and roadspeed,
+     * possibly as part of a batch of roads whose IDs and adjoining roads are registered all at once.
+     *
+     * @see Road#Road(String, Location, Location, int, float, float, boolean)
+     */
+    Two_way(String id, Location location1, Location location2, int length, float speedlimit, float roadSpeed, boolean isDeferred) {
+        super(id, location1, location2, length, speedlimit, roadSpeed, isDeferred);
+    }
     
     /**
 	 * Get all valid start locations for this road
@@ -0,0 +1,236 @@
+package connections;
+
+import java.util.Arrays;
+
+/**
+ * A class of query states for bidirectional searches in a contraction hierarchy, which only follow arcs to higher
+ * ranked locations in both directions. The arcs and their travel times are given when the state is made, so the same
+ * search serves contraction hierarchies and customizable contraction hierarchies. Each state is used by a single
+ * thread at a time.
+ *
+ * @author Michiel Van der Haegen
+ * @author Sam Haberman
+ */
+final class UpwardSearch {
+
+	/**
+	 * The upward arcs leaving each location, followed by the forward search.
+	 */
+	private final Arcs forwardArcs;
+
+	/**
+	 * The upward arcs arriving at each location, with the location at which they start as head, followed by the
+	 * backward search.
+	 */
+	private final Arcs backwardArcs;
+
+	/**
+	 * The travel time in seconds of each arc, indexed by arc.
+	 */
+	private final double[] weight;
+
+	/**
+	 * The travel time from the start location and to the end location of each location.
+	 */
+	final double[] forwardDistance, backwardDistance;
+
+	/**
+	 * The arc over which each location was reached in each direction, or -1.
+	 */
+	final int[] forwardParent, backwardParent;
+
+	/**
+	 * The location from which each location was reached in each direction.
+	 */
+	final int[] forwardNode, backwardNode;
+
+	/**
+	 * The queues of both directions.
+	 */
+	private final IndexedMinHeap forwardHeap, backwardHeap;
+
+	/**
+	 * The locations reached by the last query.
+	 */
+	final IntList touched = new IntList();
+
+	/**
+	 * The location at which both searches of the last query met on the fastest route.
+	 */
+	int meeting;
+
+	/**
+	 * The number of locations settled by the last query.
+	 */
+	int settled;
+
+	/**
+	 * Initialize a new query state for the given number of locations, following the given arcs with the given
+	 * travel times. The travel times are read at each query, so they can be changed in between.
+	 *
+	 * @param n            The number of locations.
+	 * @param forwardArcs  The upward arcs leaving each location.
+	 * @param backwardArcs The upward arcs arriving at each location, with the location at which they start as head.
+	 * @param weight       The travel time of each arc, indexed by arc.
+	 */
+	UpwardSearch(int n, Arcs forwardArcs, Arcs backwardArcs, double[] weight) {
+		this.forwardArcs = forwardArcs;
+		this.backwardArcs = backwardArcs;
+		this.weight = weight;
+		forwardDistance = new double[n];
+		backwardDistance = new double[n];
+		Arrays.fill(forwardDistance, Double.POSITIVE_INFINITY);
+		Arrays.fill(backwardDistance, Double.POSITIVE_INFINITY);
+		forwardParent = new int[n];
+		backwardParent = new int[n];
+		forwardNode = new int[n];
+		backwardNode = new int[n];
+		forwardHeap = new IndexedMinHeap(n);
+		backwardHeap = new IndexedMinHeap(n);
+	}
+
+	/**
+	 * Returns the travel time from the given source to the given target, registering the meeting location.
+	 */
+	double run(int source, int target) {
+		clear();
+		double best = Double.POSITIVE_INFINITY;
+		reach(source, 0, -1, -1, true);
+		reach(target, 0, -1, -1, false);
+		forwardHeap.insertOrDecrease(source, 0);
+		backwardHeap.insertOrDecrease(target, 0);
+		while (true) {
+			boolean forwardDone = forwardHeap.isEmpty() || forwardHeap.peekKey() >= best;
+			boolean backwardDone = backwardHeap.isEmpty() || backwardHeap.peekKey() >= best;
+			if (forwardDone && backwardDone)
+				break;
+			boolean isForward = !forwardDone && (backwardDone || forwardHeap.peekKey() <= backwardHeap.peekKey());
+			IndexedMinHeap heap = isForward ? forwardHeap : backwardHeap;
+			double[] distance = isForward ? forwardDistance : backwardDistance;
+			double[] opposite = isForward ? backwardDistance : forwardDistance;
+			int u = heap.poll();
+			settled++;
+			if (distance[u] + opposite[u] < best) {
+				best = distance[u] + opposite[u];
+				meeting = u;
+			}
+			relax(u, isForward);
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the arcs of the fastest route found by the last query, from its start location to its end location.
+	 *
+	 * @pre The last query found a route.
+	 * 		| meeting >= 0
+	 */
+	IntList getArcs() {
+		IntList arcs = new IntList();
+		for (int v = meeting; forwardParent[v] >= 0; v = forwardNode[v])
+			arcs.add(forwardParent[v]);
+		IntList path = new IntList(arcs.size());
+		while (arcs.size() > 0)
+			path.add(arcs.removeLast());
+		for (int v = meeting; backwardParent[v] >= 0; v = backwardNode[v])
+			path.add(backwardParent[v]);
+		return path;
+	}
+
+	/**
+	 * Searches upward from the given origin in the given direction until no location is left, registering all
+	 * reached locations as touched. Upward searches cannot stop early, so the travel time of each touched location
+	 * is that of the fastest upward route.
+	 */
+	void explore(int origin, boolean isForward) {
+		clear();
+		IndexedMinHeap heap = isForward ? forwardHeap : backwardHeap;
+		reach(origin, 0, -1, -1, isForward);
+		heap.insertOrDecrease(origin, 0);
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			settled++;
+			relax(u, isForward);
+		}
+	}
+
+	/**
+	 * Forgets all locations reached by the previous query.
+	 */
+	private void clear() {
+		for (int i = 0; i < touched.size(); i++) {
+			int v = touched.get(i);
+			forwardDistance[v] = Double.POSITIVE_INFINITY;
+			backwardDistance[v] = Double.POSITIVE_INFINITY;
+		}
+		touched.clear();
+		forwardHeap.clear();
+		backwardHeap.clear();
+		settled = 0;
+		meeting = -1;
+	}
+
+	/**
+	 * Relaxes the upward arcs of the given location in the given direction.
+	 */
+	private void relax(int u, boolean isForward) {
+		IndexedMinHeap heap = isForward ? forwardHeap : backwardHeap;
+		double[] distance = isForward ? forwardDistance : backwardDistance;
+		Arcs arcs = isForward ? forwardArcs : backwardArcs;
+		for (int i = arcs.first[u]; i < arcs.first[u + 1]; i++) {
+			int v = arcs.head[i];
+			double newDistance = distance[u] + weight[arcs.arc[i]];
+			if (newDistance < distance[v]) {
+				reach(v, newDistance, arcs.arc[i], u, isForward);
+				heap.insertOrDecrease(v, newDistance);
+			}
+		}
+	}
+
+	/**
+	 * Registers that the given location was reached in the given direction.
+	 */
+	private void reach(int v, double distance, int arc, int from, boolean isForward) {
+		if (forwardDistance[v] == Double.POSITIVE_INFINITY && backwardDistance[v] == Double.POSITIVE_INFINITY)
+			touched.add(v);
+		if (isForward) {
+			forwardDistance[v] = distance;
+			forwardParent[v] = arc;
+			forwardNode[v] = from;
+		} else {
+			backwardDistance[v] = distance;
+			backwardParent[v] = arc;
+			backwardNode[v] = from;
+		}
+	}
+
+	/**
+	 * A class of arc lists in compressed sparse row form, giving for each location the arcs it is searched over.
+	 */
+	static final class Arcs {
+
+		/**
+		 * The position of the first arc of each location, followed by the number of arcs.
+		 */
+		final int[] first;
+
+		/**
+		 * The location reached over each arc.
+		 */
+		final int[] head;
+
+		/**
+		 * The arc at each position, under which its travel time is found and which the search reports.
+		 */
+		final int[] arc;
+
+		/**
+		 * Initialize a new arc list with the given arrays.
+		 */
+		Arcs(int[] first, int[] head, int[] arc) {
+			this.first = first;
+			this.head = head;
+			this.arc = arc;
+		}
+	}
+}
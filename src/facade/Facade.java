@@ -7,6 +7,7 @@ import connections.Location;
 import connections.One_way;
 import connections.Road;
 import connections.Route;
+import connections.RoutePlanner;
 import connections.Segments;
 import connections.Two_way;
 
@@ -540,4 +541,20 @@ public interface Facade {
 		}
 	}
 
+	/*******************
+	 * Routing methods *
+	 *******************/
+
+	/**
+	 * Return the fastest route from the given start location to the given end
+	 * location, or null if the end location cannot be reached.
+	 */
+	default Route findFastestRoute(Location startLocation, Location endLocation) throws ModelException {
+		try {
+			return new RoutePlanner().findFastestRoute(startLocation, endLocation);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
 }
@@ -2,7 +2,18 @@ package facade;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
 
 import org.junit.jupiter.api.*;
 
@@ -469,6 +480,54 @@ class FullPart3Test {
 		}
 	}
 
+	@Test
+	void getRoad_ByIdentification() throws Exception {
+		maxScore += 10;
+		assertSame(t1_leuven_antwerp, Road.getRoad("T1"));
+		assertSame(a1_gent_brussels_alter, Road.getRoad("A1"));
+		assertNull(Road.getRoad("T3"));
+		assertNull(Road.getRoad("t1"));
+		assertNull(Road.getRoad(""));
+		actualScore += 5;
+		// A changed identification frees the previous one, and a terminated road frees its own.
+		theFacade.changeRoadIdentification(t5_leuven_gent, "E12");
+		assertSame(t5_leuven_gent, Road.getRoad("E12"));
+		assertNull(Road.getRoad("T5"));
+		someRoad = theFacade.createTwoWayRoad("T5", leuven, gent, 100, 20.0F, 10.0F);
+		assertSame(someRoad, Road.getRoad("T5"));
+		theFacade.terminateRoad(t5_leuven_gent);
+		assertNull(Road.getRoad("E12"));
+		actualScore += 5;
+	}
+
+	@Test
+	void packedIdentification_RoundTrip() throws Exception {
+		maxScore += 10;
+		String[] ids = { "A", "Z", "T1", "A7", "A007", "E40", "Q9999999999999999", "B0000000000000000" };
+		List<Long> packed = new ArrayList<>();
+		for (String id : ids) {
+			long packedID = RoadIDCodec.encode(id);
+			assertTrue(RoadIDCodec.isValid(packedID));
+			assertEquals(id, RoadIDCodec.decode(packedID));
+			assertEquals(id.charAt(0), RoadIDCodec.getLetter(packedID));
+			assertEquals((long) (id.length() - 1), (long) RoadIDCodec.getDigitCount(packedID));
+			assertFalse(packed.contains(packedID));
+			packed.add(packedID);
+		}
+		assertEquals(RoadIDCodec.encode("T1"), t1_leuven_antwerp.getPackedID());
+		assertSame(t1_leuven_antwerp, Road.getRoad(RoadIDCodec.encode("T1")));
+		actualScore += 5;
+		for (String id : new String[] { null, "", "a1", "1A", "A1b", "A-1", "A12345678901234567" })
+			assertFalse(RoadIDCodec.isEncodable(id));
+		assertFalse(RoadIDCodec.isValid(-1L));
+		try {
+			RoadIDCodec.encode("A12345678901234567");
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+			actualScore += 5;
+		}
+	}
+
 	@Test
 	void getStartEndLocations_TwoWayRoad() throws Exception {
 		maxScore += 5;
@@ -1152,4 +1211,1120 @@ class FullPart3Test {
 		}
 	}
 
+	/*****************
+	 * Routing tests *
+	 *****************/
+
+	@Test
+	void findFastestRoute_LegalCase() throws Exception {
+		maxScore += 10;
+		Route theRoute = theFacade.findFastestRoute(leuven, gent);
+		assertArrayEquals(new Object[] { t1_leuven_antwerp, t4_brussels_antwerp, O1_brussels_gent_oneWay },
+				theFacade.getRouteSegments(theRoute));
+		assertArrayEquals(new Location[] { leuven, antwerp, brussels, gent }, theFacade.getAllLocations(theRoute));
+		actualScore += 10;
+	}
+
+	@Test
+	void findFastestRoute_BlockedRoad() throws Exception {
+		maxScore += 10;
+		theFacade.changeRoadBlockedState(t4_brussels_antwerp, true, false);
+		Route theRoute = theFacade.findFastestRoute(leuven, gent);
+		assertArrayEquals(new Object[] { t5_leuven_gent }, theFacade.getRouteSegments(theRoute));
+		actualScore += 10;
+	}
+
+	@Test
+	void findFastestRoute_OneWayAndAlternatingRoads() throws Exception {
+		maxScore += 10;
+		assertNull(theFacade.findFastestRoute(gent, hasselt));
+		theFacade.changeRoadBlockedState(t4_brussels_antwerp, true, false);
+		theFacade.changeRoadBlockedState(t2_leuven_brussels, true, true);
+		assertArrayEquals(new Object[] { t5_leuven_gent, a1_gent_brussels_alter },
+				theFacade.getRouteSegments(theFacade.findFastestRoute(leuven, brussels)));
+		theFacade.reverseTraversalDirection(a1_gent_brussels_alter);
+		assertNull(theFacade.findFastestRoute(leuven, brussels));
+		actualScore += 10;
+	}
+
+	/**
+	 * Returns the locations of the test network.
+	 */
+	private static List<Location> getNetwork() {
+		return Arrays.asList(leuven, antwerp, brussels, gent, hasselt);
+	}
+
+	/**
+	 * Asserts that the given travel times agree with those of a plain route planner between all locations of the
+	 * test network.
+	 */
+	private static void assertFastestTravelTimes(BiFunction<Location, Location, Float> times) {
+		RoutePlanner planner = new RoutePlanner();
+		for (Location from : getNetwork()) {
+			for (Location to : getNetwork()) {
+				float expected = planner.calculateFastestTravelTime(from, to);
+				float actual = times.apply(from, to);
+				if (expected == Float.POSITIVE_INFINITY)
+					assertEquals(expected, actual, 0.0F);
+				else
+					assertEquals(expected, actual, 0.001F * expected);
+			}
+		}
+	}
+
+	@Test
+	void findFastestRoute_GoalDirected() throws Exception {
+		maxScore += 10;
+		RoutePlanner planner = new RoutePlanner();
+		planner.setGoalDirected(true);
+		assertTrue(planner.isGoalDirected());
+		assertFastestTravelTimes(planner::calculateFastestTravelTime);
+		assertArrayEquals(new Object[] { t1_leuven_antwerp, t4_brussels_antwerp, O1_brussels_gent_oneWay },
+				planner.findFastestRoute(leuven, gent).getRouteSegments());
+		actualScore += 5;
+		theFacade.changeRoadBlockedState(t4_brussels_antwerp, true, false);
+		assertFastestTravelTimes(planner::calculateFastestTravelTime);
+		assertArrayEquals(new Object[] { t5_leuven_gent }, planner.findFastestRoute(leuven, gent).getRouteSegments());
+		actualScore += 5;
+	}
+
+	@Test
+	void findFastestRoute_Bidirectional() throws Exception {
+		maxScore += 10;
+		RoutePlanner planner = new RoutePlanner();
+		planner.setBidirectional(true);
+		assertTrue(planner.isBidirectional());
+		assertFastestTravelTimes(planner::calculateFastestTravelTime);
+		assertArrayEquals(new Object[] { t1_leuven_antwerp, t4_brussels_antwerp, O1_brussels_gent_oneWay },
+				planner.findFastestRoute(leuven, gent).getRouteSegments());
+		assertNull(planner.findFastestRoute(gent, hasselt));
+		actualScore += 5;
+		// Both searches follow one-way and alternating roads in the direction of the route only.
+		planner.setGoalDirected(true);
+		theFacade.changeRoadBlockedState(t4_brussels_antwerp, true, false);
+		theFacade.changeRoadBlockedState(t2_leuven_brussels, true, true);
+		assertFastestTravelTimes(planner::calculateFastestTravelTime);
+		assertArrayEquals(new Object[] { t5_leuven_gent, a1_gent_brussels_alter },
+				planner.findFastestRoute(leuven, brussels).getRouteSegments());
+		theFacade.reverseTraversalDirection(a1_gent_brussels_alter);
+		assertNull(planner.findFastestRoute(leuven, brussels));
+		actualScore += 5;
+	}
+
+	@Test
+	void findFastestRoute_ReusedPlanner() throws Exception {
+		maxScore += 10;
+		RoutePlanner planner = new RoutePlanner();
+		for (Location from : getNetwork())
+			for (Location to : getNetwork())
+				assertEquals(new RoutePlanner().calculateFastestTravelTime(from, to), planner.calculateFastestTravelTime(from, to), 0.0F);
+		actualScore += 5;
+		// A location created after the planner was used is searched like any other.
+		Location mechelen = theFacade.createLocation(new double[] { 17.0, 40.0 }, "Mechelen");
+		someRoad = theFacade.createTwoWayRoad("Y4", mechelen, hasselt, 100, 20.0F, 10.0F);
+		assertArrayEquals(new Object[] { someRoad, O2_hasselt_gent_oneWay },
+				theFacade.getRouteSegments(planner.findFastestRoute(mechelen, gent)));
+		assertNull(planner.findFastestRoute(gent, mechelen));
+		actualScore += 5;
+	}
+
+	/******************
+	 * Landmark tests *
+	 ******************/
+
+	@Test
+	void landmarks_LowerBounds() throws Exception {
+		maxScore += 10;
+		Location[] network = { leuven, antwerp, brussels, gent, hasselt };
+		Landmarks landmarks = new Landmarks(Arrays.asList(network), 2);
+		RoutePlanner planner = new RoutePlanner();
+		for (Location from : network) {
+			for (Location to : network)
+				assertTrue(landmarks.getLowerBound(from, to) <= planner.calculateFastestTravelTime(from, to));
+		}
+		landmarks.detach();
+		actualScore += 10;
+	}
+
+	@Test
+	void landmarks_FasterRoad() throws Exception {
+		maxScore += 15;
+		Location[] network = { leuven, antwerp, brussels, gent, hasselt };
+		Landmarks landmarks = new Landmarks(Arrays.asList(network), 2);
+		RoutePlanner planner = new RoutePlanner();
+		planner.setGoalDirected(true);
+		planner.setLandmarks(landmarks);
+		theFacade.changeRoadAverageSpeed(t5_leuven_gent, 16.0F);
+		assertFalse(landmarks.isUpToDate());
+		assertEquals(0.0, landmarks.getLowerBound(leuven, gent), 0.0);
+		assertArrayEquals(new Object[] { t5_leuven_gent }, planner.findFastestRoute(leuven, gent).getRouteSegments());
+		actualScore += 10;
+		landmarks.recompute();
+		assertTrue(landmarks.isUpToDate());
+		assertTrue(landmarks.getLowerBound(leuven, gent) <= new RoutePlanner().calculateFastestTravelTime(leuven, gent));
+		theFacade.changeRoadAverageSpeed(t5_leuven_gent, 10.0F);
+		assertTrue(landmarks.isUpToDate());
+		landmarks.detach();
+		actualScore += 5;
+	}
+
+	/*******************
+	 * Isochrone tests *
+	 *******************/
+
+	/**
+	 * Asserts that the given isochrone holds exactly the test locations reachable within its budget, with their
+	 * fastest travel times.
+	 */
+	private static void assertReachable(Isochrone isochrone) {
+		RoutePlanner planner = new RoutePlanner();
+		List<Location> reachable = Arrays.asList(isochrone.getReachableLocations());
+		for (Location location : getNetwork()) {
+			float expected = planner.calculateFastestTravelTime(isochrone.getStart(), location);
+			int index = reachable.indexOf(location);
+			assertEquals(expected <= isochrone.getBudget(), index >= 0);
+			if (index >= 0)
+				assertEquals(expected, isochrone.getTravelTimes()[index], 0.001F * expected);
+		}
+	}
+
+	@Test
+	void isochrone_BudgetBoundary() throws Exception {
+		maxScore += 15;
+		float toAntwerp = t1_leuven_antwerp.calculateTravelTimeFrom(leuven);
+		Isochrone isochrone = Isochrone.calculate(leuven, toAntwerp);
+		assertReachable(isochrone);
+		assertTrue(Arrays.asList(isochrone.getReachableLocations()).contains(antwerp));
+		assertFalse(Arrays.asList(isochrone.getPartialRoads()).contains(t1_leuven_antwerp));
+		actualScore += 5;
+		// Just below the budget, the road towards antwerp is almost but not entirely reachable.
+		isochrone = Isochrone.calculate(leuven, Math.nextDown(toAntwerp));
+		assertReachable(isochrone);
+		assertFalse(Arrays.asList(isochrone.getReachableLocations()).contains(antwerp));
+		int index = Arrays.asList(isochrone.getPartialRoads()).indexOf(t1_leuven_antwerp);
+		assertTrue(index >= 0);
+		assertTrue(isochrone.getReachableFractions()[index] > 0.99F);
+		assertTrue(isochrone.getReachableFractions()[index] < 1.0F);
+		actualScore += 5;
+		// Without a budget, only the start is reachable and every road leaving it is reachable for no part.
+		isochrone = Isochrone.calculate(leuven, 0.0F);
+		assertArrayEquals(new Object[] { leuven }, isochrone.getReachableLocations());
+		assertEquals(3L, (long) isochrone.getPartialRoads().length);
+		for (float fraction : isochrone.getReachableFractions())
+			assertEquals(0.0F, fraction, 0.0F);
+		try {
+			Isochrone.calculate(leuven, -1.0F);
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+			actualScore += 5;
+		}
+	}
+
+	/****************************
+	 * Alternative routes tests *
+	 ****************************/
+
+	@Test
+	void alternativeRoutes_LegalCase() throws Exception {
+		maxScore += 15;
+		// Two routes of three roads between the same locations, the lower one a tenth slower than the upper one.
+		Location[] upper = new Location[2], lower = new Location[2];
+		for (int i = 0; i < 2; i++) {
+			upper[i] = theFacade.createLocation(new double[] { 2.0 + i, 3.0 }, "Upper");
+			lower[i] = theFacade.createLocation(new double[] { 2.0 + i, 1.0 }, "Lower");
+		}
+		Location from = theFacade.createLocation(new double[] { 1.0, 2.0 }, "From");
+		Location to = theFacade.createLocation(new double[] { 4.0, 2.0 }, "To");
+		Road[] roads = { theFacade.createTwoWayRoad("Y5", from, upper[0], 100, 20.0F, 10.0F),
+				theFacade.createTwoWayRoad("Y6", upper[0], upper[1], 100, 20.0F, 10.0F),
+				theFacade.createTwoWayRoad("Y7", upper[1], to, 100, 20.0F, 10.0F),
+				theFacade.createTwoWayRoad("Y8", from, lower[0], 110, 20.0F, 10.0F),
+				theFacade.createTwoWayRoad("Y9", lower[0], lower[1], 110, 20.0F, 10.0F),
+				theFacade.createTwoWayRoad("Z1", lower[1], to, 110, 20.0F, 10.0F) };
+		try {
+			AlternativeRoutes alternatives = AlternativeRoutes.calculate(from, to, 3);
+			assertEquals(2L, (long) alternatives.getRouteCount());
+			Route[] routes = alternatives.getRoutes();
+			assertArrayEquals(new Object[] { roads[0], roads[1], roads[2] }, routes[0].getRouteSegments());
+			assertArrayEquals(new Object[] { roads[3], roads[4], roads[5] }, routes[1].getRouteSegments());
+			assertEquals(30.0F, alternatives.getTravelTimes()[0], 0.001F);
+			assertEquals(33.0F, alternatives.getTravelTimes()[1], 0.001F);
+			assertEquals(1.0F, alternatives.getOverlaps()[0], 0.0F);
+			assertEquals(0.0F, alternatives.getOverlaps()[1], 0.0F);
+			actualScore += 5;
+			// Without stretch only the fastest route is left.
+			assertEquals(1L, (long) AlternativeRoutes.calculate(from, to, 3, 1.05, 0.8).getRouteCount());
+			assertEquals(1L, (long) AlternativeRoutes.calculate(from, to, 1).getRouteCount());
+			actualScore += 5;
+			// No route leads to an unreachable location.
+			assertEquals(0L, (long) AlternativeRoutes.calculate(gent, hasselt, 3).getRouteCount());
+			try {
+				AlternativeRoutes.calculate(from, to, 0);
+				fail("Expecting exception to be thrown");
+			} catch (IllegalArgumentException exc) {
+				actualScore += 5;
+			}
+		} finally {
+			for (Road road : roads)
+				road.terminate();
+		}
+	}
+
+	/******************
+	 * Importer tests *
+	 ******************/
+
+	/**
+	 * Terminates all roads adjoining the locations imported by the given importer under the given keys.
+	 */
+	private static void terminateImportedRoads(NetworkImporter importer, String... keys) {
+		for (String key : keys) {
+			for (Road road : importer.getLocation(key).getAdjoiningRoads().toArray(new Road[0]))
+				road.terminate();
+		}
+	}
+
+	@Test
+	void importer_WellFormedFile() throws Exception {
+		maxScore += 10;
+		NetworkImporter importer = new NetworkImporter(2);
+		importer.importFrom(new StringReader("L,a,1.0,2.0,First street\nL,b,3.0,4.0,Second street\n# roads\n"
+				+ "R,TWO_WAY,Z2,a,b,100,20.0,10.0\nR,ONE_WAY,Z3,b,a,200,25.0,15.0\nR,ALTERNATING,Z4,a,b,300,20.0,10.0\n"));
+		assertEquals(2, importer.getLocationCount());
+		assertEquals(3L, importer.getRoadCount());
+		Location a = importer.getLocation("a");
+		Location b = importer.getLocation("b");
+		assertArrayEquals(new double[] { 1.0, 2.0 }, a.getCoordinate(), 0.0);
+		assertEquals("Second street", b.getAddress());
+		assertEquals(3, a.getAdjoiningRoads().size());
+		assertEquals(a.getAdjoiningRoads(), b.getAdjoiningRoads());
+		for (Road road : a.getAdjoiningRoads()) {
+			if (road.getID().equals("Z2")) {
+				assertTrue(road instanceof Two_way);
+				assertEquals(100, road.getLength());
+			} else if (road.getID().equals("Z3")) {
+				assertTrue(road instanceof One_way);
+				assertSame(b, road.getStartLocations()[0]);
+				assertEquals(25.0F, road.getSpeedlimit(), 0.0F);
+				assertEquals(15.0F, road.getRoadSpeed(), 0.0F);
+			} else {
+				assertEquals("Z4", road.getID());
+				assertTrue(road instanceof AlternatingRoad);
+				assertEquals(300, road.getLength());
+			}
+		}
+		terminateImportedRoads(importer, "a", "b");
+		actualScore += 10;
+	}
+
+	@Test
+	void importer_RejectedLines() throws Exception {
+		maxScore += 10;
+		String valid = "L,a,1.0,2.0,A\nL,b,3.0,4.0,B\nR,TWO_WAY,Z2,a,b,100,20.0,10.0\n";
+		String[] files = { valid + "R,TWO_WAY,Z3,a,b,100\n", valid + "R,BRIDGE,Z3,a,b,100,20.0,10.0\n",
+				valid + "\nR,ONE_WAY,Z3,a,c,100,20.0,10.0\n" };
+		long[] lines = { 4, 4, 5 };
+		for (int i = 0; i < files.length; i++) {
+			NetworkImporter importer = new NetworkImporter();
+			try {
+				importer.importFrom(new StringReader(files[i]));
+				fail("Expecting exception to be thrown");
+			} catch (IllegalArgumentException exc) {
+				assertTrue(exc.getMessage().startsWith("Line " + lines[i] + ": "));
+			}
+			// The valid road in the batch of the rejected line is not added to the network either.
+			assertEquals(0L, importer.getRoadCount());
+			assertTrue(importer.getLocation("a").getAdjoiningRoads().isEmpty());
+		}
+		actualScore += 10;
+	}
+
+	@Test
+	void importer_InvalidFields() throws Exception {
+		maxScore += 10;
+		String locations = "L,a,1.0,2.0,A\nL,b,3.0,4.0,B\n";
+		String[] files = { locations + "R,BRIDGE,Z2,a,b,100,20.0,10.0\n", locations + "R,TWO_WAY,Z2,a,b,1x0,20.0,10.0\n",
+				locations + "R,ONE_WAY,Z2,a,b,100,fast,10.0\n", locations + "R,ALTERNATING,Z2,a,b,100,20.0,\n",
+				"L,a,one,2.0,A\n", "L,a,1.0,NaN,A\n" };
+		String[] errors = { "Line 3: unknown road kind BRIDGE", "Line 3: invalid length 1x0",
+				"Line 3: invalid speed limit fast", "Line 3: invalid road speed ", "Line 1: invalid x coordinate one",
+				"Line 1: invalid y coordinate NaN" };
+		for (int i = 0; i < files.length; i++) {
+			NetworkImporter importer = new NetworkImporter();
+			try {
+				importer.importFrom(new StringReader(files[i]));
+				fail("Expecting exception to be thrown");
+			} catch (IllegalArgumentException exc) {
+				assertEquals(errors[i], exc.getMessage());
+			}
+			assertEquals(0L, importer.getRoadCount());
+		}
+		assertNull(Road.getRoad("Z2"));
+		actualScore += 10;
+	}
+
+	@Test
+	void importer_LegalCase() throws Exception {
+		maxScore += 10;
+		NetworkImporter importer = new NetworkImporter(2, 2);
+		importer.importFrom(new StringReader("# network\nL,a,1.0,2.0,Street 1, Leuven\nL,b,3.0,4.0,Street 2\n"
+				+ "R,TWO_WAY,Y1,a,b,100,20.0,10.0\nR,ONE_WAY,Y2,b,a,200,20.0,10.0\nR,ALTERNATING,Y3,a,b,300,20.0,10.0\n"));
+		assertEquals(2, importer.getLocationCount());
+		assertEquals(3L, importer.getRoadCount());
+		assertEquals(6L, importer.getLineCount());
+		assertEquals("Street 1, Leuven", importer.getLocation("a").getAddress());
+		Road x1 = Road.getRoad("Y1");
+		assertNotNull(x1);
+		assertTrue(importer.getLocation("a").hasAsAdjoiningRoad(x1));
+		assertTrue(importer.getLocation("b").hasAsAdjoiningRoad(Road.getRoad("Y3")));
+		terminateImportedRoads(importer, "a", "b");
+		actualScore += 10;
+	}
+
+	@Test
+	void importer_ErrorLines() throws Exception {
+		maxScore += 10;
+		String[] files = { "L,a,1.0,2.0,A\nR,TWO_WAY,Y1,a,c,100,20.0,10.0\n", "L,a,1.0,2.0,A\n\nL,a,3.0,4.0,B\n",
+				"L,a,1.0,2.0,A\nR,TWO_WAY,Y1,a,a,100,20.0\n", "L,a,1.0,2.0,A\nP,a\n",
+				"L,a,1.0,2.0,A\nR,TWO_WAY,Y1,a,a,100,20.0,10.0\nR,TWO_WAY,Y1,a,a,100,20.0,10.0\n" };
+		String[] errors = { "Line 2: unknown location c", "Line 3: duplicate location a", "Line 2: expected 8 fields",
+				"Line 2: unknown record", "Line 3: duplicate road Y1" };
+		for (int i = 0; i < files.length; i++) {
+			NetworkImporter importer = new NetworkImporter();
+			try {
+				importer.importFrom(new StringReader(files[i]));
+				fail("Expecting exception to be thrown");
+			} catch (IllegalArgumentException exc) {
+				assertEquals(errors[i], exc.getMessage());
+			}
+			assertEquals(0L, importer.getRoadCount());
+		}
+		assertNull(Road.getRoad("Y1"));
+		actualScore += 10;
+	}
+
+	@Test
+	void importer_DuplicateExistingRoad() throws Exception {
+		maxScore += 10;
+		NetworkImporter importer = new NetworkImporter(4, 2);
+		try {
+			importer.importFrom(new StringReader("L,a,1.0,2.0,A\nL,b,3.0,4.0,B\nR,TWO_WAY,Y1,a,b,100,20.0,10.0\n"
+					+ "R,TWO_WAY,Y2,a,b,100,20.0,10.0\nR,ONE_WAY,T1,b,a,100,20.0,10.0\n"));
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+			assertEquals("Line 5: duplicate road T1", exc.getMessage());
+		}
+		// No road of the failed batch is registered or added to its endpoints.
+		assertNull(Road.getRoad("Y1"));
+		assertNull(Road.getRoad("Y2"));
+		assertSame(t1_leuven_antwerp, Road.getRoad("T1"));
+		assertTrue(importer.getLocation("a").getAdjoiningRoads().isEmpty());
+		assertTrue(importer.getLocation("b").getAdjoiningRoads().isEmpty());
+		actualScore += 10;
+	}
+
+	@Test
+	void importer_RejectedBatchKeepsBound() throws Exception {
+		maxScore += 10;
+		double bound = Road.getMinTimePerDistance();
+		NetworkImporter importer = new NetworkImporter(4, 2);
+		try {
+			importer.importFrom(new StringReader("L,a,1.0,1.0,A\nL,b,61.0,1.0,B\n"
+					+ "R,TWO_WAY,Z5,a,b,60,2.0E8,2.0E8\nR,ONE_WAY,T1,b,a,60,20.0,10.0\n"));
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+			assertEquals("Line 4: duplicate road T1", exc.getMessage());
+		}
+		// The fast road of the rejected batch does not loosen the bound used by goal-directed searches.
+		assertEquals(bound, Road.getMinTimePerDistance(), 0.0);
+		assertNull(Road.getRoad("Z5"));
+		actualScore += 10;
+	}
+
+	/*********************
+	 * Route cache tests *
+	 *********************/
+
+	@Test
+	void routeCache_Bounds() throws Exception {
+		maxScore += 10;
+		RouteCache cache = new RouteCache(getNetwork(), 3, 8);
+		try {
+			for (Location from : getNetwork()) {
+				for (Location to : getNetwork()) {
+					cache.calculateFastestTravelTime(from, to);
+					assertTrue(cache.size() <= 3);
+					assertTrue(cache.getWeight() <= 8);
+				}
+			}
+			actualScore += 5;
+			// A pair asked for twice is protected against a burst of pairs asked for once.
+			cache.clear();
+			cache.findFastestRoute(leuven, gent);
+			cache.findFastestRoute(leuven, gent);
+			for (Location to : getNetwork())
+				cache.calculateFastestTravelTime(antwerp, to);
+			long misses = cache.getMissCount();
+			assertEquals(new RoutePlanner().calculateFastestTravelTime(leuven, gent),
+					cache.findFastestRoute(leuven, gent).getTravelTime(), 0.01F);
+			assertEquals(misses, cache.getMissCount());
+			actualScore += 5;
+		} finally {
+			cache.detach();
+		}
+	}
+
+	@Test
+	void routeCache_Invalidation() throws Exception {
+		maxScore += 20;
+		RouteCache cache = new RouteCache(getNetwork(), 100, 1000);
+		try {
+			assertFastestTravelTimes(cache::calculateFastestTravelTime);
+			assertEquals(25L, (long) cache.size());
+			assertFastestTravelTimes(cache::calculateFastestTravelTime);
+			assertEquals(25L, cache.getMissCount());
+			assertEquals(25L, cache.getHitCount());
+			actualScore += 5;
+			// Slower roads invalidate the entries traversing them.
+			theFacade.changeRoadDelayinDirection(t5_leuven_gent, 1000.0F, true);
+			theFacade.changeRoadDelayinDirection(t5_leuven_gent, 1000.0F, false);
+			assertFastestTravelTimes(cache::calculateFastestTravelTime);
+			actualScore += 5;
+			// Faster roads invalidate the entries that could now be faster, but not those without a route.
+			theFacade.changeRoadDelayinDirection(t5_leuven_gent, 0.0F, true);
+			theFacade.changeRoadDelayinDirection(t5_leuven_gent, 0.0F, false);
+			long misses = cache.getMissCount();
+			assertEquals(Float.POSITIVE_INFINITY, cache.calculateFastestTravelTime(leuven, hasselt), 0.0F);
+			assertEquals(misses, cache.getMissCount());
+			assertFastestTravelTimes(cache::calculateFastestTravelTime);
+			actualScore += 5;
+			// Opening a blocked direction invalidates the entries without a route.
+			theFacade.changeRoadBlockedState(O2_hasselt_gent_oneWay, true, true);
+			assertFastestTravelTimes(cache::calculateFastestTravelTime);
+			assertEquals(Float.POSITIVE_INFINITY, cache.calculateFastestTravelTime(hasselt, leuven), 0.0F);
+			theFacade.changeRoadBlockedState(O2_hasselt_gent_oneWay, false, true);
+			assertFastestTravelTimes(cache::calculateFastestTravelTime);
+			assertTrue(cache.calculateFastestTravelTime(hasselt, leuven) < Float.POSITIVE_INFINITY);
+			actualScore += 5;
+		} finally {
+			cache.detach();
+		}
+	}
+
+	/********************
+	 * Long route tests *
+	 ********************/
+
+	@Test
+	void longRoute_AddAndRemoveSegments() throws Exception {
+		maxScore += 15;
+		Road[] loops = { c1_circularRoad_antwerp, theFacade.createTwoWayRoad("C3", antwerp, antwerp, 10, 20.0F, 10.0F),
+				theFacade.createTwoWayRoad("C4", antwerp, antwerp, 20, 20.0F, 10.0F),
+				theFacade.createTwoWayRoad("C5", antwerp, antwerp, 30, 20.0F, 10.0F) };
+		try {
+			Route route = new Route(antwerp);
+			List<Object> expected = new ArrayList<>();
+			for (int i = 0; i < 500; i++) {
+				route.addRouteSegment(loops[(i * 7) % 4]);
+				expected.add(loops[(i * 7) % 4]);
+			}
+			assertArrayEquals(expected.toArray(), route.getRouteSegments());
+			actualScore += 5;
+			for (int i = 0; i < 300; i++) {
+				int index = (i * 37) % expected.size();
+				route.removeRouteSegment(index);
+				expected.remove(index);
+			}
+			assertArrayEquals(expected.toArray(), route.getRouteSegments());
+			assertEquals(expected, route.getRouteSegmentList());
+			int length = 0;
+			for (Object road : expected)
+				length += ((Road) road).getLength();
+			assertEquals((long) length, (long) route.getLength());
+			actualScore += 10;
+		} finally {
+			for (int i = 1; i < loops.length; i++)
+				loops[i].terminate();
+		}
+	}
+
+	/**
+	 * Asserts that the prefix sums of the given route agree with the sums over its roads, travelled from the given
+	 * start location.
+	 */
+	private static void assertPrefixSums(Route route, Location start) {
+		Object[] roads = route.getRouteSegments();
+		assertEquals((long) roads.length, (long) route.getRoadCount());
+		long[] lengths = new long[roads.length + 1];
+		double[] times = new double[roads.length + 1];
+		int[] blocked = new int[roads.length + 1];
+		Location at = start;
+		for (int i = 0; i < roads.length; i++) {
+			Road road = (Road) roads[i];
+			lengths[i + 1] = lengths[i] + road.getLength();
+			float time = road.calculateTravelTimeFrom(at);
+			times[i + 1] = times[i] + (time == Float.POSITIVE_INFINITY ? 0 : time);
+			blocked[i + 1] = blocked[i] + (time == Float.POSITIVE_INFINITY ? 1 : 0);
+			at = road.getOtherEndPoint(at);
+		}
+		for (int from = 0; from <= roads.length; from += 7) {
+			for (int to = from; to <= roads.length; to += 5) {
+				assertEquals(lengths[to] - lengths[from], (long) route.getLengthBetween(from, to));
+				float expected = (float) (times[to] - times[from]);
+				if (blocked[to] > blocked[from])
+					assertEquals(Float.POSITIVE_INFINITY, route.getTravelTimeBetween(from, to), 0.0F);
+				else
+					assertEquals(expected, route.getTravelTimeBetween(from, to), 0.001F * expected + 0.001F);
+			}
+		}
+	}
+
+	@Test
+	void longRoute_PrefixSums() throws Exception {
+		maxScore += 20;
+		Route route = circularRoute_antwerp_leuven_brussels_brussels_antwerp;
+		Road[] cycle = { t1_leuven_antwerp, t2_leuven_brussels, c2_circularRoad_brussels, t4_brussels_antwerp };
+		assertEquals((long) (1111 + 1500 + 40 + 55), (long) route.getLength());
+		// Roads added after the totals were computed extend them.
+		for (int i = 0; i < 100; i++)
+			route.addRouteSegment(cycle[i % 4]);
+		assertEquals(antwerp, route.getEndLocation());
+		assertPrefixSums(route, antwerp);
+		actualScore += 5;
+		float cycleTime = route.getTravelTimeBetween(0, 4);
+		assertEquals(0L, (long) route.getRoadIndexAt(0.0));
+		assertEquals(4L, (long) route.getRoadIndexAt(cycleTime));
+		assertEquals(8L, (long) route.getRoadIndexAt((route.getTravelTimeBetween(0, 8) + route.getTravelTimeBetween(0, 9)) / 2));
+		assertEquals((long) route.getRoadCount(), (long) route.getRoadIndexAt(1000 * cycleTime));
+		actualScore += 5;
+		// Changed roads update the sums.
+		theFacade.changeRoadDelayinDirection(t2_leuven_brussels, 100.0F, true);
+		assertPrefixSums(route, antwerp);
+		theFacade.changeRoadBlockedState(t4_brussels_antwerp, true, true);
+		assertPrefixSums(route, antwerp);
+		assertEquals(Float.POSITIVE_INFINITY, route.getTravelTime(), 0.0F);
+		assertEquals(3L, (long) route.getRoadIndexAt(1000 * cycleTime));
+		actualScore += 5;
+		// Removed roads are no longer counted.
+		route.removeRouteSegment(route.getRoadCount() - 1);
+		route.removeRouteSegment(route.getRoadCount() - 1);
+		assertPrefixSums(route, antwerp);
+		actualScore += 5;
+	}
+
+	@Test
+	void longRoute_TravelTimeIndex() throws Exception {
+		maxScore += 15;
+		Route route = circularRoute_antwerp_leuven_brussels_brussels_antwerp;
+		Road[] cycle = { t1_leuven_antwerp, t2_leuven_brussels, c2_circularRoad_brussels, t4_brussels_antwerp };
+		for (int i = 0; i < 96; i++)
+			route.addRouteSegment(cycle[i % 4]);
+		RouteTravelTimeIndex index = new RouteTravelTimeIndex(route);
+		try {
+			assertEquals(100L, (long) index.getRoadCount());
+			for (int from = 0; from <= 100; from += 9) {
+				for (int to = from; to <= 100; to += 7) {
+					assertEquals((long) route.getLengthBetween(from, to), (long) index.getLengthBetween(from, to));
+					assertEquals(route.getTravelTimeBetween(from, to), index.getTravelTimeBetween(from, to),
+							0.001F * route.getTravelTimeBetween(from, to));
+				}
+			}
+			actualScore += 5;
+			// The index follows its roads as they change, like the route does.
+			theFacade.changeRoadDelayinDirection(t2_leuven_brussels, 100.0F, true);
+			t1_leuven_antwerp.setLength(2000);
+			for (double seconds = 0; seconds < 1.1 * route.getTravelTime(); seconds += 37.5)
+				assertEquals((long) route.getRoadIndexAt(seconds), (long) index.getRoadIndexAt(seconds));
+			assertEquals((long) route.getLength(), (long) index.getLengthBetween(0, 100));
+			assertEquals(route.getTravelTime(), index.getTravelTimeBetween(0, 100), 0.001F * route.getTravelTime());
+			actualScore += 5;
+			theFacade.changeRoadBlockedState(c2_circularRoad_brussels, true, true);
+			theFacade.changeRoadBlockedState(c2_circularRoad_brussels, true, false);
+			assertEquals(Float.POSITIVE_INFINITY, index.getTravelTimeBetween(0, 3), 0.0F);
+			assertEquals(route.getTravelTimeBetween(0, 2), index.getTravelTimeBetween(0, 2), 0.001F);
+			assertEquals(2L, (long) index.getRoadIndexAt(1e9));
+			actualScore += 5;
+		} finally {
+			index.detach();
+		}
+	}
+
+	@Test
+	void longRoute_ConcurrentRoadChanges() throws Exception {
+		maxScore += 10;
+		Route route = circularRoute_antwerp_leuven_brussels_brussels_antwerp;
+		float before = route.getTravelTime();
+		Road[] roads = { t1_leuven_antwerp, t2_leuven_brussels, c2_circularRoad_brussels, t4_brussels_antwerp };
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			Road road = roads[t];
+			threads[t] = new Thread(() -> {
+				for (int i = 1; i <= 2000; i++) {
+					road.setDelayDirectionEndPointOne(i % 7);
+					road.setDelayDirectionEndPointTwo(i % 5);
+					route.getTravelTime();
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		float expected = 0;
+		Location at = antwerp;
+		for (Road road : roads) {
+			expected += road.calculateTravelTimeFrom(at);
+			at = road.getOtherEndPoint(at);
+		}
+		assertTrue(route.getTravelTime() != before);
+		assertEquals(expected, route.getTravelTime(), 0.001F);
+		actualScore += 10;
+	}
+
+	/*******************************
+	 * Contraction hierarchy tests *
+	 *******************************/
+
+	@Test
+	void hierarchy_TravelTimes() throws Exception {
+		maxScore += 10;
+		ContractionHierarchy hierarchy = new ContractionHierarchy(getNetwork());
+		assertFastestTravelTimes(hierarchy::calculateFastestTravelTime);
+		Route route = hierarchy.findFastestRoute(leuven, brussels);
+		assertEquals(new RoutePlanner().calculateFastestTravelTime(leuven, brussels), route.getTravelTime(), 0.01F);
+		float[][] matrix = hierarchy.calculateTravelTimeMatrix(getNetwork(), getNetwork());
+		for (int i = 0; i < 5; i++) {
+			for (int j = 0; j < 5; j++)
+				assertEquals(hierarchy.calculateFastestTravelTime(getNetwork().get(i), getNetwork().get(j)), matrix[i][j], 0.01F);
+		}
+		actualScore += 10;
+	}
+
+	@Test
+	void hierarchy_TravelTimeMatrix() throws Exception {
+		maxScore += 10;
+		ContractionHierarchy hierarchy = new ContractionHierarchy(getNetwork());
+		List<Location> starts = Arrays.asList(hasselt, leuven, gent);
+		List<Location> ends = Arrays.asList(gent, hasselt, brussels, gent);
+		float[][] matrix = hierarchy.calculateTravelTimeMatrix(starts, ends);
+		assertEquals(3L, (long) matrix.length);
+		RoutePlanner planner = new RoutePlanner();
+		for (int i = 0; i < starts.size(); i++) {
+			assertEquals(4L, (long) matrix[i].length);
+			for (int j = 0; j < ends.size(); j++) {
+				float expected = planner.calculateFastestTravelTime(starts.get(i), ends.get(j));
+				assertEquals(expected, matrix[i][j], expected == Float.POSITIVE_INFINITY ? 0.0F : 0.001F * expected);
+			}
+		}
+		assertEquals(Float.POSITIVE_INFINITY, matrix[1][1], 0.0F);
+		assertEquals(0.0F, matrix[0][1], 0.0F);
+		actualScore += 5;
+		Location elsewhere = theFacade.createLocation(new double[] { 1.0, 2.0 }, "Elsewhere");
+		try {
+			hierarchy.calculateTravelTimeMatrix(starts, Arrays.asList(gent, elsewhere));
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+			actualScore += 5;
+		}
+	}
+
+	@Test
+	void hierarchy_SaveAndLoad() throws Exception {
+		maxScore += 10;
+		ContractionHierarchy hierarchy = new ContractionHierarchy(getNetwork());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		hierarchy.save(out);
+		ContractionHierarchy loaded = ContractionHierarchy.load(new ByteArrayInputStream(out.toByteArray()), getNetwork());
+		assertEquals((long) hierarchy.getShortcutCount(), (long) loaded.getShortcutCount());
+		for (Location from : getNetwork()) {
+			assertEquals((long) hierarchy.getRank(from), (long) loaded.getRank(from));
+			for (Location to : getNetwork())
+				assertEquals(hierarchy.calculateFastestTravelTime(from, to), loaded.calculateFastestTravelTime(from, to), 0.0F);
+		}
+		actualScore += 10;
+	}
+
+	@Test
+	void hierarchy_LoadCorruptFile() throws Exception {
+		maxScore += 10;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ContractionHierarchy(getNetwork()).save(out);
+		byte[] saved = out.toByteArray();
+		int[] replacements = { -1, 5, 1000, Integer.MAX_VALUE };
+		// Replace each int of the saved hierarchy in turn; loading either fails cleanly or gives a usable hierarchy.
+		for (int position = 0; position + 4 <= saved.length; position += 4) {
+			for (int replacement : replacements) {
+				byte[] corrupt = saved.clone();
+				for (int k = 0; k < 4; k++)
+					corrupt[position + k] = (byte) (replacement >>> (24 - 8 * k));
+				ContractionHierarchy loaded;
+				try {
+					loaded = ContractionHierarchy.load(new ByteArrayInputStream(corrupt), getNetwork());
+				} catch (IllegalArgumentException | IOException exc) {
+					continue;
+				}
+				for (Location from : getNetwork()) {
+					for (Location to : getNetwork())
+						loaded.calculateFastestTravelTime(from, to);
+				}
+			}
+		}
+		actualScore += 10;
+	}
+
+	@Test
+	void customizableHierarchy_TravelTimes() throws Exception {
+		maxScore += 10;
+		CustomizableContractionHierarchy hierarchy = new CustomizableContractionHierarchy(getNetwork());
+		assertEquals(5, hierarchy.getLocationCount());
+		assertFastestTravelTimes(hierarchy::calculateFastestTravelTime);
+		Route route = hierarchy.findFastestRoute(leuven, gent);
+		assertEquals(new RoutePlanner().calculateFastestTravelTime(leuven, gent), route.getTravelTime(), 0.01F);
+		hierarchy.detach();
+		actualScore += 10;
+	}
+
+	@Test
+	void customizableHierarchy_Recustomization() throws Exception {
+		maxScore += 15;
+		CustomizableContractionHierarchy hierarchy = new CustomizableContractionHierarchy(getNetwork());
+		theFacade.changeRoadDelayinDirection(t4_brussels_antwerp, 500.0F, true);
+		assertTrue(hierarchy.hasPendingChanges());
+		assertFastestTravelTimes(hierarchy::calculateFastestTravelTime);
+		assertFalse(hierarchy.hasPendingChanges());
+		actualScore += 5;
+		theFacade.changeRoadBlockedState(t1_leuven_antwerp, true, true);
+		theFacade.changeRoadBlockedState(t1_leuven_antwerp, true, false);
+		assertFastestTravelTimes(hierarchy::calculateFastestTravelTime);
+		theFacade.reverseTraversalDirection(a1_gent_brussels_alter);
+		assertFastestTravelTimes(hierarchy::calculateFastestTravelTime);
+		actualScore += 5;
+		// A detached hierarchy no longer sees changes.
+		hierarchy.detach();
+		theFacade.changeRoadBlockedState(t1_leuven_antwerp, false, true);
+		assertFalse(hierarchy.hasPendingChanges());
+		actualScore += 5;
+	}
+
+	/******************
+	 * Snapshot tests *
+	 ******************/
+
+	@Test
+	void snapshot_TravelTimes() throws Exception {
+		maxScore += 10;
+		NetworkSnapshot snapshot = new NetworkSnapshot(getNetwork());
+		assertEquals(5, snapshot.getLocationCount());
+		assertFalse(snapshot.isFrozen());
+		SnapshotRoutePlanner planner = new SnapshotRoutePlanner(snapshot);
+		assertFastestTravelTimes(planner::calculateFastestTravelTime);
+		theFacade.changeRoadBlockedState(t4_brussels_antwerp, true, true);
+		snapshot.refresh(t4_brussels_antwerp);
+		assertFastestTravelTimes(planner::calculateFastestTravelTime);
+		actualScore += 10;
+	}
+
+	@Test
+	void snapshot_GoalDirectedWithLandmarks() throws Exception {
+		maxScore += 15;
+		theFacade.changeRoadAverageSpeed(t5_leuven_gent, 2.0F);
+		NetworkSnapshot snapshot = new NetworkSnapshot(getNetwork());
+		Landmarks landmarks = new Landmarks(getNetwork(), 2);
+		try {
+			SnapshotRoutePlanner planner = new SnapshotRoutePlanner(snapshot);
+			planner.setGoalDirected(true);
+			planner.setLandmarks(landmarks);
+			assertFastestTravelTimes(planner::calculateFastestTravelTime);
+			actualScore += 5;
+			// A faster road invalidates the bounds, which the planner then no longer uses.
+			theFacade.changeRoadAverageSpeed(t5_leuven_gent, 16.0F);
+			snapshot.refresh(t5_leuven_gent);
+			assertFalse(landmarks.isUpToDate());
+			assertFastestTravelTimes(planner::calculateFastestTravelTime);
+			actualScore += 5;
+			landmarks.recompute();
+			assertTrue(landmarks.isUpToDate());
+			assertFastestTravelTimes(planner::calculateFastestTravelTime);
+			actualScore += 5;
+		} finally {
+			landmarks.detach();
+		}
+	}
+
+	@Test
+	void snapshot_PublishedVersions() throws Exception {
+		maxScore += 15;
+		SnapshotPublisher publisher = new SnapshotPublisher(getNetwork());
+		NetworkSnapshot first = publisher.getCurrent();
+		assertEquals(1L, first.getVersion());
+		assertTrue(first.isFrozen());
+		float before = new SnapshotRoutePlanner(first).calculateFastestTravelTime(leuven, gent);
+		theFacade.changeRoadDelayinDirection(t5_leuven_gent, 1000.0F, true);
+		theFacade.changeRoadDelayinDirection(t5_leuven_gent, 1000.0F, false);
+		assertTrue(publisher.hasPendingChanges());
+		NetworkSnapshot second = publisher.publish();
+		assertEquals(2L, second.getVersion());
+		assertSame(second, publisher.publish());
+		actualScore += 5;
+		// The first version keeps its travel times, the second one sees the delays.
+		assertEquals(before, new SnapshotRoutePlanner(first).calculateFastestTravelTime(leuven, gent), 0.0F);
+		assertFastestTravelTimes(new SnapshotRoutePlanner(publisher)::calculateFastestTravelTime);
+		try {
+			second.refresh();
+			fail("Expecting exception to be thrown");
+		} catch (IllegalStateException exc) {
+			actualScore += 5;
+		}
+		publisher.detach();
+		actualScore += 5;
+	}
+
+	/******************
+	 * Off-heap tests *
+	 ******************/
+
+	@Test
+	void offHeapNetwork_TravelTimes() throws Exception {
+		maxScore += 10;
+		OffHeapNetwork network = OffHeapNetwork.copyOf(getNetwork());
+		assertEquals(5, network.getLocationCount());
+		assertFastestTravelTimes((from, to) -> network.calculateFastestTravelTime(getNetwork().indexOf(from),
+				getNetwork().indexOf(to)));
+		assertEquals("Gent", network.locationView().moveTo(3).getAddress());
+		actualScore += 10;
+	}
+
+	@Test
+	void offHeapNetwork_SaveAndMap() throws Exception {
+		maxScore += 10;
+		Path file = Files.createTempFile("network", ".bin");
+		try {
+			OffHeapNetwork.copyOf(getNetwork()).save(file);
+			OffHeapNetwork network = OffHeapNetwork.map(file);
+			assertEquals(5, network.getLocationCount());
+			assertFastestTravelTimes((from, to) -> network.calculateFastestTravelTime(getNetwork().indexOf(from),
+					getNetwork().indexOf(to)));
+			actualScore += 10;
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void offHeapNetwork_MapOtherFormat() throws Exception {
+		maxScore += 10;
+		Path original = Files.createTempFile("network", ".bin");
+		Path other = Files.createTempFile("other", ".bin");
+		try {
+			OffHeapNetwork.copyOf(getNetwork()).save(original);
+			byte[] saved = Files.readAllBytes(original);
+			// Files of another version or without the file marker are rejected.
+			for (int position : new int[] { 0, 4 }) {
+				byte[] bytes = saved.clone();
+				bytes[position]++;
+				Files.write(other, bytes);
+				try {
+					OffHeapNetwork.map(other);
+					fail("Expecting exception to be thrown");
+				} catch (IllegalArgumentException exc) {
+					actualScore += 3;
+				}
+			}
+			// Truncated files are rejected.
+			Files.write(other, Arrays.copyOf(saved, 12));
+			try {
+				OffHeapNetwork.map(other);
+				fail("Expecting exception to be thrown");
+			} catch (IllegalArgumentException exc) {
+				actualScore += 4;
+			}
+		} finally {
+			Files.delete(original);
+			Files.delete(other);
+		}
+	}
+
+	@Test
+	void offHeapNetwork_MapCorruptFile() throws Exception {
+		maxScore += 10;
+		Path original = Files.createTempFile("network", ".bin");
+		Path corrupt = Files.createTempFile("corrupt", ".bin");
+		try {
+			OffHeapNetwork.copyOf(getNetwork()).save(original);
+			byte[] saved = Files.readAllBytes(original);
+			int[] replacements = { -1, 5, 1000, Integer.MAX_VALUE };
+			// Replace each int of the saved network in turn; mapping either fails cleanly or gives a usable network.
+			for (int position = 0; position + 4 <= saved.length; position += 4) {
+				for (int replacement : replacements) {
+					byte[] bytes = saved.clone();
+					for (int k = 0; k < 4; k++)
+						bytes[position + k] = (byte) (replacement >>> (8 * k));
+					Files.write(corrupt, bytes);
+					OffHeapNetwork network;
+					try {
+						network = OffHeapNetwork.map(corrupt);
+					} catch (IllegalArgumentException exc) {
+						continue;
+					}
+					for (int from = 0; from < network.getLocationCount(); from++) {
+						network.locationView().moveTo(from).getAddress();
+						for (int to = 0; to < network.getLocationCount(); to++)
+							network.findFastestRoads(from, to);
+					}
+				}
+			}
+			actualScore += 10;
+		} finally {
+			Files.delete(original);
+			Files.delete(corrupt);
+		}
+	}
+
+	/***********************
+	 * Spatial index tests *
+	 ***********************/
+
+	/**
+	 * Returns the given number of new locations spread at random over the square from (0, 0) to (100, 100).
+	 */
+	private List<Location> createLocations(int count, long seed) throws ModelException {
+		Random random = new Random(seed);
+		List<Location> locations = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			locations.add(theFacade.createLocation(new double[] { 100 * random.nextDouble(), 100 * random.nextDouble() }, "Random"));
+		return locations;
+	}
+
+	/**
+	 * Returns the distances from the given point to the given locations, in increasing order.
+	 */
+	private static double[] sortedDistances(Collection<Location> locations, double[] point) {
+		Location origin = new Location(point, "Origin");
+		double[] distances = new double[locations.size()];
+		int i = 0;
+		for (Location location : locations)
+			distances[i++] = origin.getDistanceTo(location);
+		Arrays.sort(distances);
+		return distances;
+	}
+
+	@Test
+	void spatialIndex_NearestLocations() throws Exception {
+		maxScore += 15;
+		List<Location> locations = createLocations(500, 16);
+		SpatialIndex index = new SpatialIndex(locations);
+		assertEquals(500L, (long) index.getLocationCount());
+		Random random = new Random(61);
+		for (int q = 0; q < 100; q++) {
+			double[] point = { 120 * random.nextDouble() - 10, 120 * random.nextDouble() - 10 };
+			double[] expected = sortedDistances(locations, point);
+			assertArrayEquals(Arrays.copyOf(expected, 1), sortedDistances(Arrays.asList(index.findNearestLocation(point)), point), 0.0);
+			assertArrayEquals(Arrays.copyOf(expected, 7), sortedDistances(index.findNearestLocations(point, 7), point), 0.0);
+			int within = 0;
+			while (within < expected.length && expected[within] <= 8.0)
+				within++;
+			assertArrayEquals(Arrays.copyOf(expected, within), sortedDistances(index.findLocationsWithin(point, 8.0), point), 0.0);
+		}
+		actualScore += 10;
+		// Removed and terminated locations are no longer found, added ones are.
+		Location nearest = index.findNearestLocation(new double[] { 50.0, 50.0 });
+		index.remove(nearest);
+		assertFalse(index.hasAsLocation(nearest));
+		assertTrue(index.findNearestLocation(new double[] { 50.0, 50.0 }) != nearest);
+		Location added = theFacade.createLocation(new double[] { 50.0, 50.0 }, "Added");
+		index.add(added);
+		assertSame(added, index.findNearestLocation(new double[] { 50.0, 50.0 }));
+		added.terminate();
+		assertTrue(index.findNearestLocation(new double[] { 50.0, 50.0 }) != added);
+		actualScore += 5;
+	}
+
+	@Test
+	void spatialIndex_NearestRoads() throws Exception {
+		maxScore += 10;
+		SpatialIndex index = new SpatialIndex(getNetwork());
+		assertEquals(9L, (long) index.getRoadCount());
+		Road[] roads = { t1_leuven_antwerp, t2_leuven_brussels, t4_brussels_antwerp, t5_leuven_gent, c1_circularRoad_antwerp,
+				c2_circularRoad_brussels, O1_brussels_gent_oneWay, O2_hasselt_gent_oneWay, a1_gent_brussels_alter };
+		Random random = new Random(17);
+		for (int q = 0; q < 200; q++) {
+			double[] point = { 5 + 20 * random.nextDouble(), 15 + 50 * random.nextDouble() };
+			Location origin = new Location(point, "Origin");
+			double[] expected = new double[roads.length];
+			for (int i = 0; i < roads.length; i++)
+				expected[i] = origin.getDistanceTo(new Location(SpatialIndex.getClosestPoint(roads[i], point), "Closest"));
+			Arrays.sort(expected);
+			List<Road> nearest = index.findNearestRoads(point, 3);
+			assertEquals(3L, (long) nearest.size());
+			for (int i = 0; i < 3; i++) {
+				double distance = origin.getDistanceTo(new Location(SpatialIndex.getClosestPoint(nearest.get(i), point), "Closest"));
+				assertEquals(expected[i], distance, 1e-9);
+			}
+		}
+		actualScore += 10;
+	}
+
+	@Test
+	void gridIndex_NearestLocations() throws Exception {
+		maxScore += 15;
+		List<Location> locations = createLocations(500, 17);
+		Random random = new Random(71);
+		for (GridIndex grid : new GridIndex[] { new GridIndex(locations), new GridIndex(locations, 3.0),
+				new GridIndex(locations, 1000.0) }) {
+			assertEquals(500L, (long) grid.getLocationCount());
+			for (int q = 0; q < 100; q++) {
+				double[] point = { 120 * random.nextDouble() - 10, 120 * random.nextDouble() - 10 };
+				double[] expected = sortedDistances(locations, point);
+				int nearest = grid.findNearest(point[0], point[1]);
+				assertSame(locations.get(nearest), grid.getLocation(nearest));
+				assertSame(grid.getLocation(nearest), grid.findNearestLocation(point));
+				assertArrayEquals(Arrays.copyOf(expected, 1), sortedDistances(Arrays.asList(locations.get(nearest)), point), 0.0);
+				List<Location> found = new ArrayList<>();
+				for (int i : grid.findNearest(point, 5))
+					found.add(locations.get(i));
+				assertArrayEquals(Arrays.copyOf(expected, 5), sortedDistances(found, point), 0.0);
+			}
+		}
+		actualScore += 10;
+		// Terminated locations are skipped, and a grid of terminated locations finds none.
+		GridIndex grid = new GridIndex(locations.subList(0, 2), 5.0);
+		locations.get(0).terminate();
+		assertSame(locations.get(1), grid.findNearestLocation(locations.get(0).getCoordinate()));
+		locations.get(1).terminate();
+		assertNull(grid.findNearestLocation(new double[] { 50.0, 50.0 }));
+		assertEquals(0L, (long) grid.findNearest(new double[] { 50.0, 50.0 }, 3).length);
+		try {
+			new GridIndex(locations, 0.0);
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+			actualScore += 5;
+		}
+	}
+
+	/**
+	 * Returns the total distance between consecutive locations of the given list.
+	 */
+	private static double getPathLength(List<Location> locations) {
+		double length = 0;
+		for (int i = 1; i < locations.size(); i++)
+			length += locations.get(i - 1).getDistanceTo(locations.get(i));
+		return length;
+	}
+
+	@Test
+	void hilbertCurve_Order() throws Exception {
+		maxScore += 10;
+		List<Location> locations = createLocations(1000, 18);
+		List<Location> sorted = HilbertCurve.sort(locations);
+		assertEquals((long) locations.size(), (long) sorted.size());
+		assertTrue(sorted.containsAll(locations));
+		assertEquals(sorted, HilbertCurve.sort(sorted));
+		// Nearby locations follow each other, so the path through them is far shorter than in random order.
+		assertTrue(getPathLength(sorted) < getPathLength(locations) / 5);
+		actualScore += 5;
+		NetworkSnapshot snapshot = new NetworkSnapshot(getNetwork());
+		List<Location> order = HilbertCurve.sort(getNetwork());
+		for (int i = 0; i < order.size(); i++)
+			assertSame(order.get(i), snapshot.getLocation(i));
+		actualScore += 5;
+	}
 }